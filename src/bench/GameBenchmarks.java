@@ -0,0 +1,281 @@
+package bench;
+
+import data.Card;
+import data.CardCodes;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.UncheckedIOException;
+import java.net.ProtocolException;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+import java.util.random.RandomGenerator;
+import java.util.regex.Pattern;
+import logic.DealerPolicy;
+import logic.Deck;
+import logic.GameRandom;
+import logic.Hand;
+import logic.RoundEngine;
+import logic.Shoe;
+import logic.strategy.BasicStrategy;
+import network.BalanceLedger;
+import network.GameMessage;
+import network.MessageCodec;
+
+/**
+ * Benchmarks for the core game logic: hand scoring, shuffling, dealing,
+ * full rounds, network message encoding (Java serialization against the
+ * binary codec) and chip settlement. All inputs come from fixed
+ * seeds so runs are comparable.
+ *
+ * Usage: java -cp bin bench.GameBenchmarks [--filter=REGEX] [--warmup=N]
+ *        [--iterations=N] [--time=MS] [--baseline=FILE] [--save=FILE]
+ *
+ * With --baseline, results are compared against a saved run and the exit
+ * code is 1 if any benchmark lost more than 10% throughput.
+ */
+public class GameBenchmarks {
+
+    private static final long SEED = 42;
+    private static final int SAMPLE_HANDS = 1024; // Power of two, indexed with a mask
+
+    private final Harness harness;
+    private final Pattern filter;
+
+    public GameBenchmarks(Harness harness, Pattern filter) {
+        this.harness = harness;
+        this.filter = filter;
+    }
+
+    private void bench(String name, Supplier<?> operation) {
+        if (filter.matcher(name).find()) {
+            System.out.println(Harness.format(harness.run(name, operation)));
+        }
+    }
+
+    public void runAll() {
+        System.out.println(Harness.header());
+        benchHands();
+        benchShuffling();
+        benchRounds();
+        benchMessages();
+        benchLedger();
+    }
+
+    private void benchHands() {
+        // Random 2-5 card hands from a fixed seed
+        RandomGenerator random = GameRandom.create(SEED);
+        byte[][] samples = new byte[SAMPLE_HANDS][];
+        Hand[] hands = new Hand[SAMPLE_HANDS];
+        for (int i = 0; i < SAMPLE_HANDS; i++) {
+            samples[i] = new byte[2 + random.nextInt(4)];
+            hands[i] = new Hand();
+            for (int c = 0; c < samples[i].length; c++) {
+                samples[i][c] = (byte) random.nextInt(CardCodes.DECK_SIZE);
+                hands[i].addCode(samples[i][c]);
+            }
+        }
+
+        int[] next = {0};
+        bench("hand.getValue", () -> {
+            Hand hand = hands[next[0]++ & (SAMPLE_HANDS - 1)];
+            return hand.getValue();
+        });
+
+        Hand scratch = new Hand();
+        bench("hand.buildAndScore", () -> {
+            byte[] codes = samples[next[0]++ & (SAMPLE_HANDS - 1)];
+            scratch.reset();
+            for (byte code : codes) {
+                scratch.addCode(code);
+            }
+            return scratch.isSoft() ? scratch.getValue() : -scratch.getValue();
+        });
+    }
+
+    private void benchShuffling() {
+        RandomGenerator random = GameRandom.create(SEED);
+        Deck deck = new Deck();
+        bench("deck.shuffleAndDrawAll", () -> {
+            deck.shuffle(random);
+            byte last = 0;
+            for (int i = 0; i < CardCodes.DECK_SIZE; i++) {
+                last = deck.drawCode();
+            }
+            return CardCodes.toCard(last);
+        });
+
+        Shoe shoe = new Shoe(RoundEngine.DEFAULT_DECKS, RoundEngine.DEFAULT_PENETRATION, GameRandom.create(SEED));
+        bench("shoe.shuffle", () -> {
+            shoe.shuffle();
+            return shoe;
+        });
+
+        Shoe dealing = new Shoe(RoundEngine.DEFAULT_DECKS, RoundEngine.DEFAULT_PENETRATION, GameRandom.create(SEED));
+        dealing.shuffle();
+        bench("shoe.draw", () -> {
+            if (dealing.isCutCardReached()) {
+                dealing.shuffle();
+            }
+            return dealing.draw();
+        });
+    }
+
+    private void benchRounds() {
+        RoundEngine dealEngine = new RoundEngine(2, 1, SEED);
+        bench("engine.deal", () -> {
+            dealEngine.deal(10);
+            return dealEngine.getPlayerHand();
+        });
+
+        RoundEngine engine = new RoundEngine(2, 1, SEED);
+        RoundEngine.PlayerStrategy basic = BasicStrategy.forPolicy(DealerPolicy.MEDIUM);
+        bench("engine.playRound", () -> engine.playRound(10, basic));
+
+        RoundEngine luckyEngine = new RoundEngine(3, 3, SEED);
+        RoundEngine.PlayerStrategy hardBasic = BasicStrategy.forPolicy(DealerPolicy.HARD);
+        bench("engine.playRound.hardLucky", () -> luckyEngine.playRound(10, hardBasic));
+    }
+
+    private void benchMessages() {
+        GameMessage message = sampleMessage();
+        bench("message.serialize", () -> serialize(message));
+
+        byte[] bytes = serialize(message);
+        bench("message.deserialize", () -> deserialize(bytes));
+
+        // The binary codec the server and client use, against the same message
+        ByteBuffer buffer = ByteBuffer.allocate(1024);
+        bench("message.binary.encode", () -> {
+            buffer.clear();
+            MessageCodec.encode(message, buffer);
+            return buffer;
+        });
+
+        buffer.clear();
+        MessageCodec.encode(message, buffer);
+        ByteBuffer encoded = buffer.flip().slice();
+        bench("message.binary.decode", () -> {
+            try {
+                return MessageCodec.decode(encoded.rewind());
+            } catch (ProtocolException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+
+        if (filter.matcher("message.binary").find()) {
+            System.out.printf("# message size: %d bytes serialized, %d bytes binary%n",
+                    bytes.length, encoded.limit());
+        }
+    }
+
+    private void benchLedger() {
+        // Bet and settlement of one round, spread over many accounts
+        BalanceLedger ledger = new BalanceLedger();
+        String[] accounts = new String[SAMPLE_HANDS];
+        for (int i = 0; i < SAMPLE_HANDS; i++) {
+            accounts[i] = "player" + i;
+            ledger.openAccount(accounts[i], 1_000_000);
+        }
+        int[] next = {0};
+        bench("ledger.betAndSettle", () -> {
+            String account = accounts[next[0]++ & (SAMPLE_HANDS - 1)];
+            ledger.debit(account, ledger.nextTransactionId(), 10);
+            return ledger.credit(account, ledger.nextTransactionId(), 10);
+        });
+    }
+
+    /**
+     * A typical ROUND_END message with both hands.
+     */
+    static GameMessage sampleMessage() {
+        GameMessage message = new GameMessage(GameMessage.MessageType.ROUND_END);
+        List<Card> player = CardCodes.toCards(new byte[] {0, 22, 35}, 3);
+        List<Card> dealer = CardCodes.toCards(new byte[] {12, 45, 7}, 3);
+        message.setCards(player);
+        message.setDealerCards(dealer);
+        message.setPlayerValue(19);
+        message.setDealerValue(25);
+        message.setDealerBust(true);
+        message.setRoundOver(true);
+        message.setBetAmount(20);
+        message.setStatusMessage("Dealer busted! You win $20!");
+        return message;
+    }
+
+    static byte[] serialize(GameMessage message) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(512);
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(message);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    static GameMessage deserialize(byte[] bytes) {
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+            return (GameMessage) in.readObject();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (ClassNotFoundException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        int warmup = 5;
+        int iterations = 5;
+        long time = 1000;
+        String filter = "";
+        String baseline = null;
+        String save = null;
+
+        for (String arg : args) {
+            String[] parts = arg.split("=", 2);
+            if (parts.length != 2) {
+                usage("Unknown argument: " + arg);
+            }
+            try {
+                switch (parts[0]) {
+                    case "--warmup" -> warmup = Integer.parseInt(parts[1]);
+                    case "--iterations" -> iterations = Integer.parseInt(parts[1]);
+                    case "--time" -> time = Long.parseLong(parts[1]);
+                    case "--filter" -> filter = parts[1];
+                    case "--baseline" -> baseline = parts[1];
+                    case "--save" -> save = parts[1];
+                    default -> usage("Unknown argument: " + arg);
+                }
+            } catch (NumberFormatException e) {
+                usage("Invalid number: " + arg);
+            }
+        }
+
+        Harness harness = new Harness(warmup, iterations, time);
+        System.out.printf("%s %s, %d warmup + %d x %d ms iterations%n",
+                System.getProperty("java.vm.name"), System.getProperty("java.version"), warmup, iterations, time);
+        new GameBenchmarks(harness, Pattern.compile(filter)).runAll();
+
+        if (save != null) {
+            harness.save(save);
+            System.out.println("Results saved to " + save);
+        }
+        if (baseline != null) {
+            Map<String, Harness.Result> base = Harness.load(baseline);
+            if (harness.compare(base) > 0) {
+                System.exit(1);
+            }
+        }
+    }
+
+    private static void usage(String error) {
+        System.err.println(error);
+        System.err.println("Usage: GameBenchmarks [--filter=REGEX] [--warmup=N] [--iterations=N] "
+                + "[--time=MS] [--baseline=FILE] [--save=FILE]");
+        System.exit(1);
+    }
+}
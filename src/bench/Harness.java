@@ -0,0 +1,217 @@
+package bench;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Minimal microbenchmark runner. Each benchmark is warmed up, then measured
+ * over several timed iterations; the operation's result is folded into a
+ * sink so the JIT cannot eliminate the work. Allocation per operation comes
+ * from the HotSpot per-thread allocation counter.
+ */
+public class Harness {
+
+    /** Fraction by which a benchmark may fall behind the baseline before it is flagged. */
+    public static final double REGRESSION_THRESHOLD = 0.10;
+
+    private static final long BATCH_TARGET_NANOS = 1_000_000;
+
+    private final int warmupIterations;
+    private final int measurementIterations;
+    private final long iterationNanos;
+    private final com.sun.management.ThreadMXBean threads;
+    private final List<Result> results = new ArrayList<>();
+    private Object sink;
+
+    /**
+     * Measured throughput and allocation of one benchmark.
+     */
+    public record Result(String name, double opsPerSecond, double error, double bytesPerOp) {
+
+        public double allocationMBPerSecond() {
+            return opsPerSecond * bytesPerOp / (1024 * 1024);
+        }
+    }
+
+    public Harness(int warmupIterations, int measurementIterations, long iterationMillis) {
+        this.warmupIterations = warmupIterations;
+        this.measurementIterations = measurementIterations;
+        this.iterationNanos = iterationMillis * 1_000_000;
+        this.threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        threads.setThreadAllocatedMemoryEnabled(true);
+    }
+
+    /**
+     * Benchmark an operation. The supplier is called once per operation and
+     * its result is consumed.
+     */
+    public Result run(String name, Supplier<?> operation) {
+        long batch = calibrate(operation);
+        for (int i = 0; i < warmupIterations; i++) {
+            iteration(operation, batch);
+        }
+
+        double[] rates = new double[measurementIterations];
+        long ops = 0;
+        long threadId = Thread.currentThread().getId();
+        long allocatedBefore = threads.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < measurementIterations; i++) {
+            long start = System.nanoTime();
+            long done = iteration(operation, batch);
+            rates[i] = done * 1e9 / (System.nanoTime() - start);
+            ops += done;
+        }
+        long allocated = threads.getThreadAllocatedBytes(threadId) - allocatedBefore;
+
+        Result result = new Result(name, mean(rates), confidence(rates), (double) allocated / ops);
+        results.add(result);
+        return result;
+    }
+
+    /**
+     * Pick a batch size so that one batch takes about a millisecond, which
+     * keeps timer calls off the measured path.
+     */
+    private long calibrate(Supplier<?> operation) {
+        long batch = 1;
+        while (true) {
+            long start = System.nanoTime();
+            runBatch(operation, batch);
+            long elapsed = System.nanoTime() - start;
+            if (elapsed >= BATCH_TARGET_NANOS || batch >= 1L << 30) {
+                return batch;
+            }
+            batch *= 2;
+        }
+    }
+
+    private long iteration(Supplier<?> operation, long batch) {
+        long deadline = System.nanoTime() + iterationNanos;
+        long ops = 0;
+        do {
+            runBatch(operation, batch);
+            ops += batch;
+        } while (System.nanoTime() < deadline);
+        return ops;
+    }
+
+    private void runBatch(Supplier<?> operation, long batch) {
+        for (long i = 0; i < batch; i++) {
+            // Publishing every result makes it escape, so it cannot be optimized away
+            sink = operation.get();
+        }
+    }
+
+    private static double mean(double[] values) {
+        double sum = 0;
+        for (double v : values) {
+            sum += v;
+        }
+        return sum / values.length;
+    }
+
+    /**
+     * Half-width of the ~99.9% interval across iterations, like JMH's error column.
+     */
+    private static double confidence(double[] values) {
+        if (values.length < 2) {
+            return 0;
+        }
+        double mean = mean(values);
+        double squares = 0;
+        for (double v : values) {
+            squares += (v - mean) * (v - mean);
+        }
+        double stdDev = Math.sqrt(squares / (values.length - 1));
+        return 3.29 * stdDev / Math.sqrt(values.length);
+    }
+
+    public List<Result> getResults() {
+        return results;
+    }
+
+    /**
+     * Last consumed result, so the sink stays observable.
+     */
+    public Object getSink() {
+        return sink;
+    }
+
+    public static String header() {
+        return String.format(Locale.ROOT, "%-28s %16s %14s %12s %12s",
+                "Benchmark", "ops/s", "+/- error", "B/op", "MB/s alloc");
+    }
+
+    public static String format(Result result) {
+        return String.format(Locale.ROOT, "%-28s %16.1f %14.1f %12.1f %12.1f",
+                result.name(), result.opsPerSecond(), result.error(),
+                result.bytesPerOp(), result.allocationMBPerSecond());
+    }
+
+    /**
+     * Write results as tab-separated values: name, ops/s, error, bytes/op.
+     */
+    public void save(String path) throws IOException {
+        try (PrintWriter out = new PrintWriter(new FileWriter(path))) {
+            out.println("# benchmark\tops/s\terror\tbytes/op");
+            for (Result r : results) {
+                out.printf(Locale.ROOT, "%s\t%.1f\t%.1f\t%.1f%n",
+                        r.name(), r.opsPerSecond(), r.error(), r.bytesPerOp());
+            }
+        }
+    }
+
+    public static Map<String, Result> load(String path) throws IOException {
+        Map<String, Result> baseline = new HashMap<>();
+        try (BufferedReader in = new BufferedReader(new FileReader(path))) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (line.isBlank() || line.startsWith("#")) {
+                    continue;
+                }
+                String[] parts = line.split("\t");
+                if (parts.length != 4) {
+                    throw new IOException("Malformed baseline line: " + line);
+                }
+                baseline.put(parts[0], new Result(parts[0], Double.parseDouble(parts[1]),
+                        Double.parseDouble(parts[2]), Double.parseDouble(parts[3])));
+            }
+        }
+        return baseline;
+    }
+
+    /**
+     * Compare against a baseline; returns the number of regressions found.
+     */
+    public int compare(Map<String, Result> baseline) {
+        int regressions = 0;
+        System.out.printf("%n%-28s %16s %16s %9s%n", "Benchmark", "baseline ops/s", "current ops/s", "change");
+        for (Result current : results) {
+            Result base = baseline.get(current.name());
+            if (base == null) {
+                System.out.printf("%-28s %16s %16.1f %9s%n", current.name(), "-", current.opsPerSecond(), "new");
+                continue;
+            }
+            double change = current.opsPerSecond() / base.opsPerSecond() - 1;
+            // Only flag drops that are larger than the threshold and the measurement noise
+            boolean regression = change < -REGRESSION_THRESHOLD
+                    && base.opsPerSecond() - current.opsPerSecond() > base.error() + current.error();
+            if (regression) {
+                regressions++;
+            }
+            System.out.printf("%-28s %16.1f %16.1f %+8.1f%%%s%n", current.name(), base.opsPerSecond(),
+                    current.opsPerSecond(), change * 100, regression ? "  REGRESSION" : "");
+        }
+        return regressions;
+    }
+}
@@ -20,6 +20,20 @@ public class Card implements Serializable {
         return suit;
     }
 
+    /**
+     * Returns the compact byte encoding of this card (see {@link CardCodes}).
+     */
+    public byte getCode() {
+        return CardCodes.encode(rank, suit);
+    }
+
+    /**
+     * Replace deserialized cards with the shared instance for their code.
+     */
+    private Object readResolve() {
+        return CardCodes.toCard(getCode());
+    }
+
     @Override
     public String toString() {
         return rank.name() + " of " + suit.name();
@@ -0,0 +1,102 @@
+package data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compact card encoding: a card is a single byte, {@code suit * 13 + rank}
+ * (using enum ordinals), so decks and hands can be stored as {@code byte[]}.
+ * Lookup tables give the blackjack value, rank and suit of a code without
+ * touching {@link Card} objects, and one shared {@link Card} per code is kept
+ * for the UI and network messages.
+ */
+public final class CardCodes {
+
+    public static final int RANK_COUNT = 13;
+    public static final int DECK_SIZE = 52;
+
+    private static final Rank[] RANKS = Rank.values();
+    private static final Suit[] SUITS = Suit.values();
+
+    private static final byte[] VALUES = new byte[DECK_SIZE];
+    private static final Rank[] RANK_OF = new Rank[DECK_SIZE];
+    private static final Suit[] SUIT_OF = new Suit[DECK_SIZE];
+    private static final Card[] CARDS = new Card[DECK_SIZE];
+
+    static {
+        for (Suit suit : SUITS) {
+            for (Rank rank : RANKS) {
+                int code = suit.ordinal() * RANK_COUNT + rank.ordinal();
+                VALUES[code] = (byte) rank.getValue();
+                RANK_OF[code] = rank;
+                SUIT_OF[code] = suit;
+                CARDS[code] = new Card(rank, suit);
+            }
+        }
+    }
+
+    private CardCodes() {
+        // Prevent instantiation
+    }
+
+    public static byte encode(Rank rank, Suit suit) {
+        return (byte) (suit.ordinal() * RANK_COUNT + rank.ordinal());
+    }
+
+    public static byte encode(Card card) {
+        return encode(card.getRank(), card.getSuit());
+    }
+
+    /**
+     * Returns the shared {@link Card} instance for a code.
+     */
+    public static Card toCard(int code) {
+        return CARDS[code];
+    }
+
+    /**
+     * Blackjack value of a card (ace counts as 11).
+     */
+    public static int value(int code) {
+        return VALUES[code];
+    }
+
+    public static boolean isAce(int code) {
+        return RANK_OF[code] == Rank.ACE;
+    }
+
+    public static Rank rank(int code) {
+        return RANK_OF[code];
+    }
+
+    public static Suit suit(int code) {
+        return SUIT_OF[code];
+    }
+
+    /**
+     * Fill a new array with one ordered 52-card deck per deck requested.
+     */
+    public static byte[] newDecks(int decks) {
+        byte[] codes = new byte[decks * DECK_SIZE];
+        for (int i = 0; i < codes.length; i++) {
+            codes[i] = (byte) (i % DECK_SIZE);
+        }
+        return codes;
+    }
+
+    public static byte[] encode(List<Card> cards) {
+        byte[] codes = new byte[cards.size()];
+        for (int i = 0; i < codes.length; i++) {
+            codes[i] = encode(cards.get(i));
+        }
+        return codes;
+    }
+
+    public static List<Card> toCards(byte[] codes, int length) {
+        List<Card> cards = new ArrayList<>(length);
+        for (int i = 0; i < length; i++) {
+            cards.add(CARDS[codes[i]]);
+        }
+        return cards;
+    }
+}
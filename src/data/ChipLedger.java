@@ -0,0 +1,450 @@
+package data;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only journal of every chip movement. Each change is a fixed-size
+ * binary record (type, delta and resulting balance) appended to the journal
+ * by a background writer, which commits whatever has queued up with a single
+ * write and fsync (group commit), so callers never wait on the disk.
+ *
+ * Once the journal grows past a threshold the writer saves the balance to a
+ * snapshot file and starts a new journal; the old records are appended to a
+ * history file, which keeps the full audit trail. On startup the snapshot is
+ * loaded and only the journal tail after it is replayed. A torn record at
+ * the end of the journal (crash mid-append) is detected by its checksum and
+ * discarded. Snapshot, history and journal records all carry sequence
+ * numbers, so a crash partway through compaction neither applies a record
+ * twice nor copies it into the history twice.
+ *
+ * If the writer fails, the ledger stops accepting records: {@link #record}
+ * and {@link #sync()} throw from then on instead of losing changes silently.
+ */
+public class ChipLedger implements AutoCloseable {
+
+    public static final String JOURNAL_FILE = "chipledger.journal";
+    public static final String SNAPSHOT_FILE = "chipledger.snapshot";
+    public static final String HISTORY_FILE = "chipledger.history";
+    public static final int DEFAULT_COMPACT_THRESHOLD = 10_000;
+
+    /**
+     * Record layout: sequence (8), time (8), balance after (8), delta (4),
+     * type (1), reserved (3), CRC32 of the preceding bytes (4).
+     */
+    public static final int RECORD_SIZE = 36;
+    private static final int SNAPSHOT_SIZE = 28; // sequence, time, balance, CRC32
+
+    /**
+     * Kind of chip movement.
+     */
+    public enum EntryType {
+        BET,        // Chips put on the table (bet or double down)
+        REFUND,     // Bet taken back before the deal
+        WIN,        // Winnings paid on a round
+        PUSH,       // Bet returned on a tie
+        LUCK_BONUS, // Extra paid by the luck level
+        PURCHASE,   // Chips bought
+        SHOP,       // Chips spent on cosmetics
+        ADJUSTMENT  // Direct balance change (migration, reset)
+    }
+
+    /**
+     * One decoded journal record.
+     */
+    public record Entry(long sequence, long timeMillis, EntryType type, int delta, long balance) {
+    }
+
+    private final Path journalPath;
+    private final Path snapshotPath;
+    private final Path historyPath;
+    private final int compactThreshold;
+    private final FileChannel journal;
+    private final Thread writer;
+    private final CRC32 crc = new CRC32();
+
+    // Guarded by this
+    private long balance;
+    private long sequence;
+    private ByteBuffer pending = ByteBuffer.allocate(64 * RECORD_SIZE);
+    private ByteBuffer writing = ByteBuffer.allocate(64 * RECORD_SIZE);
+    private long durableSequence;
+    private boolean closed = false;
+    private IOException writeError;
+
+    // Writer thread only (and the constructor, before it starts)
+    private long journalRecords;
+    private long historySequence; // Last record in the history file
+
+    public ChipLedger(Path directory, long initialBalance) throws IOException {
+        this(directory, initialBalance, DEFAULT_COMPACT_THRESHOLD);
+    }
+
+    /**
+     * Open the ledger in a directory, recovering the balance from its files.
+     *
+     * @param initialBalance    balance to start from when no ledger exists yet
+     * @param compactThreshold  journal records kept before a snapshot is taken
+     */
+    public ChipLedger(Path directory, long initialBalance, int compactThreshold) throws IOException {
+        if (compactThreshold < 1) {
+            throw new IllegalArgumentException("Compaction threshold must be positive.");
+        }
+        this.journalPath = directory.resolve(JOURNAL_FILE);
+        this.snapshotPath = directory.resolve(SNAPSHOT_FILE);
+        this.historyPath = directory.resolve(HISTORY_FILE);
+        this.compactThreshold = compactThreshold;
+
+        boolean existing = Files.exists(snapshotPath) || Files.exists(journalPath);
+        balance = existing ? 0 : initialBalance;
+        loadSnapshot();
+        journal = FileChannel.open(journalPath, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        replayJournal();
+        durableSequence = sequence;
+        historySequence = loadHistorySequence();
+
+        if (!existing) {
+            // Record the starting balance so the history begins from a known value
+            writeSnapshot(sequence, balance);
+        }
+
+        writer = new Thread(this::writeLoop, "ChipLedger-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    // ---------- Recovery ----------
+
+    private void loadSnapshot() throws IOException {
+        if (!Files.exists(snapshotPath)) {
+            return;
+        }
+        ByteBuffer buf = ByteBuffer.wrap(Files.readAllBytes(snapshotPath));
+        if (buf.remaining() != SNAPSHOT_SIZE || checksum(buf.array(), SNAPSHOT_SIZE - 4) != buf.getInt(SNAPSHOT_SIZE - 4)) {
+            throw new IOException("Corrupt ledger snapshot: " + snapshotPath);
+        }
+        sequence = buf.getLong();
+        buf.getLong(); // Time the snapshot was taken
+        balance = buf.getLong();
+    }
+
+    /**
+     * Apply every valid record after the snapshot. The journal is cut at
+     * the first record that fails its checksum or breaks the sequence.
+     */
+    private void replayJournal() throws IOException {
+        ByteBuffer record = ByteBuffer.allocate(RECORD_SIZE);
+        long position = 0;
+        long size = journal.size();
+        while (position + RECORD_SIZE <= size) {
+            record.clear();
+            journal.read(record, position);
+            Entry entry = decode(record.array());
+            if (entry == null) {
+                break;
+            }
+            // Records covered by the snapshot remain if a crash hit mid-compaction
+            if (entry.sequence() > sequence) {
+                if (entry.sequence() != sequence + 1 || entry.balance() != balance + entry.delta()) {
+                    break;
+                }
+                sequence = entry.sequence();
+                balance = entry.balance();
+            }
+            journalRecords++;
+            position += RECORD_SIZE;
+        }
+        if (position != size) {
+            System.err.println("Discarding " + (size - position) + " bytes of damaged ledger journal.");
+            journal.truncate(position);
+        }
+        journal.position(position);
+    }
+
+    /**
+     * Sequence of the last whole record in the history file. A record torn
+     * by a crash while copying is cut off; compaction copies it again.
+     */
+    private long loadHistorySequence() throws IOException {
+        if (!Files.exists(historyPath)) {
+            return 0;
+        }
+        try (FileChannel history = FileChannel.open(historyPath, StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            long size = history.size();
+            long position = size - size % RECORD_SIZE;
+            ByteBuffer record = ByteBuffer.allocate(RECORD_SIZE);
+            Entry last = null;
+            while (position > 0 && last == null) {
+                record.clear();
+                history.read(record, position - RECORD_SIZE);
+                last = decode(record.array());
+                if (last == null) {
+                    position -= RECORD_SIZE;
+                }
+            }
+            if (position != size) {
+                System.err.println("Discarding " + (size - position) + " bytes of damaged ledger history.");
+                history.truncate(position);
+            }
+            return last == null ? 0 : last.sequence();
+        }
+    }
+
+    // ---------- Appending ----------
+
+    /**
+     * Record a chip movement and return the new balance. The record is
+     * written in the background; use {@link #sync()} to wait for it.
+     *
+     * @throws IOException if the writer has failed, so the change could not be saved
+     */
+    public synchronized long record(EntryType type, int delta) throws IOException {
+        if (closed) {
+            throw new IllegalStateException("Ledger is closed.");
+        }
+        if (writeError != null) {
+            throw new IOException("Chip ledger can no longer be written: " + writeError.getMessage(), writeError);
+        }
+        sequence++;
+        balance += delta;
+
+        if (pending.remaining() < RECORD_SIZE) {
+            ByteBuffer larger = ByteBuffer.allocate(pending.capacity() * 2);
+            pending.flip();
+            larger.put(pending);
+            pending = larger;
+        }
+        int start = pending.position();
+        pending.putLong(sequence)
+                .putLong(System.currentTimeMillis())
+                .putLong(balance)
+                .putInt(delta)
+                .put((byte) type.ordinal())
+                .put((byte) 0).put((byte) 0).put((byte) 0);
+        crc.reset();
+        crc.update(pending.array(), start, RECORD_SIZE - 4);
+        pending.putInt((int) crc.getValue());
+
+        notifyAll();
+        return balance;
+    }
+
+    /**
+     * Wait until every record made so far is on disk.
+     *
+     * @throws IOException if the writer has failed
+     */
+    public synchronized void sync() throws IOException {
+        long target = sequence;
+        while (durableSequence < target && writeError == null) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while syncing the ledger.", e);
+            }
+        }
+        if (writeError != null) {
+            throw writeError;
+        }
+    }
+
+    private void writeLoop() {
+        while (true) {
+            ByteBuffer batch;
+            long batchSequence;
+            long batchBalance;
+            synchronized (this) {
+                while (pending.position() == 0 && !closed) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                if (pending.position() == 0) {
+                    return; // Closed and drained
+                }
+                // Swap buffers so callers keep appending while this batch is written
+                batch = pending;
+                pending = writing;
+                writing = batch;
+                batchSequence = sequence;
+                batchBalance = balance;
+            }
+
+            try {
+                batch.flip();
+                journalRecords += batch.remaining() / RECORD_SIZE;
+                while (batch.hasRemaining()) {
+                    journal.write(batch);
+                }
+                journal.force(false);
+                batch.clear();
+
+                // The journal now holds exactly the records up to batchSequence, and
+                // the writer is the only thread touching the files, so compacting here is safe
+                if (journalRecords >= compactThreshold) {
+                    compact(batchSequence, batchBalance);
+                }
+            } catch (IOException e) {
+                System.err.println("Error writing chip ledger: " + e.getMessage());
+                synchronized (this) {
+                    writeError = e;
+                    notifyAll();
+                }
+                return;
+            }
+
+            synchronized (this) {
+                durableSequence = batchSequence;
+                notifyAll();
+            }
+        }
+    }
+
+    // ---------- Compaction ----------
+
+    /**
+     * Save the balance as a snapshot, move the journal's records to the
+     * history file and start an empty journal. Records the history already
+     * has, left in the journal by a crash before it was emptied, are not
+     * copied again.
+     */
+    private void compact(long upToSequence, long balanceAtSequence) throws IOException {
+        writeSnapshot(upToSequence, balanceAtSequence);
+
+        long size = journal.size();
+        long copied = 0;
+        ByteBuffer first = ByteBuffer.allocate(RECORD_SIZE);
+        journal.read(first, 0);
+        Entry firstEntry = decode(first.array());
+        if (firstEntry != null && firstEntry.sequence() <= historySequence) {
+            copied = Math.min(size, (historySequence - firstEntry.sequence() + 1) * RECORD_SIZE);
+        }
+        try (FileChannel history = FileChannel.open(historyPath, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            while (copied < size) {
+                copied += journal.transferTo(copied, size - copied, history);
+            }
+            history.force(false);
+        }
+        historySequence = upToSequence;
+        journal.truncate(0);
+        journal.position(0);
+        journal.force(false);
+        journalRecords = 0;
+    }
+
+    private void writeSnapshot(long snapshotSeq, long snapshotBalance) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(SNAPSHOT_SIZE);
+        buf.putLong(snapshotSeq).putLong(System.currentTimeMillis()).putLong(snapshotBalance);
+        buf.putInt(checksum(buf.array(), SNAPSHOT_SIZE - 4));
+        buf.flip();
+
+        Path temp = snapshotPath.resolveSibling(SNAPSHOT_FILE + ".tmp");
+        try (FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buf.hasRemaining()) {
+                out.write(buf);
+            }
+            out.force(true);
+        }
+        Files.move(temp, snapshotPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // ---------- Reading ----------
+
+    /**
+     * Decode a record, or null if its checksum does not match.
+     */
+    static Entry decode(byte[] record) {
+        if (checksum(record, RECORD_SIZE - 4) != ByteBuffer.wrap(record).getInt(RECORD_SIZE - 4)) {
+            return null;
+        }
+        ByteBuffer buf = ByteBuffer.wrap(record);
+        long seq = buf.getLong();
+        long time = buf.getLong();
+        long balanceAfter = buf.getLong();
+        int delta = buf.getInt();
+        int type = buf.get();
+        if (type < 0 || type >= EntryType.values().length) {
+            return null;
+        }
+        return new Entry(seq, time, EntryType.values()[type], delta, balanceAfter);
+    }
+
+    /**
+     * Read every valid record of a journal or history file, for auditing.
+     */
+    public static List<Entry> readEntries(Path file) throws IOException {
+        List<Entry> entries = new ArrayList<>();
+        byte[] bytes = Files.readAllBytes(file);
+        byte[] record = new byte[RECORD_SIZE];
+        for (int offset = 0; offset + RECORD_SIZE <= bytes.length; offset += RECORD_SIZE) {
+            System.arraycopy(bytes, offset, record, 0, RECORD_SIZE);
+            Entry entry = decode(record);
+            if (entry == null) {
+                break;
+            }
+            entries.add(entry);
+        }
+        return entries;
+    }
+
+    private static int checksum(byte[] bytes, int length) {
+        CRC32 c = new CRC32();
+        c.update(bytes, 0, length);
+        return (int) c.getValue();
+    }
+
+    public synchronized long getBalance() {
+        return balance;
+    }
+
+    public synchronized long getSequence() {
+        return sequence;
+    }
+
+    /**
+     * Sequence number of the last record known to be on disk.
+     */
+    public synchronized long getDurableSequence() {
+        return durableSequence;
+    }
+
+    /**
+     * Flush every pending record, stop the writer and close the journal.
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            notifyAll();
+        }
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        journal.close();
+        synchronized (this) {
+            if (writeError != null) {
+                throw writeError;
+            }
+        }
+    }
+}
@@ -1,82 +1,324 @@
 package data;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
 import java.util.Properties;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.UnaryOperator;
+import java.util.zip.CRC32;
 
 /**
  * Simple database to persist player's chips (fish) amount between game sessions.
  * Uses a properties file for lightweight storage.
+ *
+ * Saves are write-behind: a change only marks the data dirty, and a
+ * background thread writes the file at most once per flush interval. A
+ * shutdown hook flushes whatever is pending, so nothing is lost on exit.
+ *
+ * Each write goes to a temporary file that is synced and then renamed over
+ * the save file, so a crash leaves either the old or the new file, never a
+ * truncated one. The file ends with a CRC32 comment checked on load, and the
+ * previous generation is kept as a backup to fall back on.
+ *
+ * The chip balance itself lives in a {@link ChipLedger} journal next to the
+ * properties file; the properties copy is only refreshed on flush.
+ *
+ * Settings are parsed once into an immutable {@link GameSettings} snapshot
+ * that readers get without locking. Updates take turns, so each change is
+ * saved and announced to listeners in the order it was made, and an update
+ * that changes several settings is saved once.
  */
 public class ChipsDatabase {
+    public static final long DEFAULT_FLUSH_INTERVAL_MS = 2000;
+
     private static final String DB_FILE = "gamedata.properties";
+    private static final String TEMP_FILE = DB_FILE + ".tmp";
+    private static final String BACKUP_FILE = DB_FILE + ".bak";
+    private static final String CHECKSUM_PREFIX = "#crc32=";
     private static final String CHIPS_KEY = "chips";
-    private static final String OWN_GREEN_TABLE_KEY = "ownGreenTable";
-    private static final String OWN_ANIMATED_BG_KEY = "ownAnimatedBackground";
-    private static final String CURRENT_BACKGROUND_KEY = "currentBackground";
-    private static final String VOLUME_LEVEL_KEY = "volumeLevel";
-    private static final String MUSIC_ENABLED_KEY = "musicEnabled";
-    private static final String DIFFICULTY_KEY = "difficulty";
-    private static final String LUCK_LEVEL_KEY = "luckLevel";
+    private static final String LEDGER_FAILED_KEY = "ledgerFailed"; // Chips were kept here after the ledger failed
     private static final int DEFAULT_CHIPS = 100;
-    private static final int DEFAULT_VOLUME = 2; // 0=Off, 1=Low, 2=Medium, 3=High
-    private static final int DEFAULT_DIFFICULTY = 1; // 1=Easy, 2=Medium, 3=Hard
-    private static final int DEFAULT_LUCK_LEVEL = 1; // 1=Normal, 2=Lucky, 3=Very Lucky
 
     private final Properties properties;
+    private final AtomicReference<GameSettings> settings = new AtomicReference<>(GameSettings.defaults());
+    private final List<GameSettings.Listener> listeners = new CopyOnWriteArrayList<>();
+    private final ChipLedger ledger;
+    private final long flushIntervalMillis;
+    private final ScheduledExecutorService flusher;
+    private final AtomicBoolean flushScheduled = new AtomicBoolean(false);
+    private final Object fileLock = new Object();
+    private final Object settingsLock = new Object(); // Orders swap, save and notification of each update
+    private final Thread shutdownHook;
+    private volatile boolean dirty = false;
+    private boolean saveFileValid = true; // False when loading rejected the save file; guarded by fileLock
+    private volatile boolean closed = false;
+    private volatile boolean ledgerFailed = false; // The ledger's writer died; chips are kept in the properties file
 
     public ChipsDatabase() {
+        this(DEFAULT_FLUSH_INTERVAL_MS);
+    }
+
+    /**
+     * @param flushIntervalMillis  longest time a change waits before being
+     *                             written; 0 writes every change immediately
+     */
+    public ChipsDatabase(long flushIntervalMillis) {
+        if (flushIntervalMillis < 0) {
+            throw new IllegalArgumentException("Flush interval cannot be negative.");
+        }
         properties = new Properties();
+        this.flushIntervalMillis = flushIntervalMillis;
+        if (flushIntervalMillis > 0) {
+            flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "ChipsDatabase-flush");
+                t.setDaemon(true);
+                return t;
+            });
+        } else {
+            flusher = null;
+        }
         loadDatabase();
+        ledger = openLedger();
+        shutdownHook = new Thread(this::close, "ChipsDatabase-shutdown");
+        Runtime.getRuntime().addShutdownHook(shutdownHook);
+    }
+
+    /**
+     * Open the chip ledger, starting it from the saved chips on first use.
+     * Without a ledger the balance is kept in the properties file as before.
+     */
+    private ChipLedger openLedger() {
+        try {
+            ChipLedger opened = new ChipLedger(Path.of(DB_FILE).toAbsolutePath().getParent(), parseChips());
+            if (Boolean.parseBoolean(properties.getProperty(LEDGER_FAILED_KEY))) {
+                // The last session kept the balance in the properties file after the ledger failed
+                opened.record(ChipLedger.EntryType.ADJUSTMENT, parseChips() - (int) opened.getBalance());
+                opened.sync();
+                properties.remove(LEDGER_FAILED_KEY);
+                saveDatabase();
+            }
+            return opened;
+        } catch (IOException e) {
+            System.err.println("Error opening chip ledger: " + e.getMessage());
+            return null;
+        }
     }
 
     /**
-     * Load database from file. Creates new file if it doesn't exist.
+     * Load database from file, falling back to the backup if the file is
+     * missing or damaged. Creates new file if neither exists.
      */
     private void loadDatabase() {
-        File file = new File(DB_FILE);
+        if (!new File(DB_FILE).exists() && !new File(BACKUP_FILE).exists()) {
+            initializeDefaults();
+            saveDatabase();
+            return;
+        }
 
-        if (file.exists()) {
-            try (FileInputStream fis = new FileInputStream(file)) {
-                properties.load(fis);
-            } catch (IOException e) {
-                System.err.println("Error loading database: " + e.getMessage());
-                initializeDefaults();
-            }
+        saveFileValid = readChecked(DB_FILE);
+        if (saveFileValid || readChecked(BACKUP_FILE)) {
+            settings.set(GameSettings.fromProperties(properties));
         } else {
+            System.err.println("Error loading database: no valid save file, starting from defaults");
             initializeDefaults();
-            saveDatabase();
         }
     }
 
+    /**
+     * Load a save file if its checksum matches. Files from older versions
+     * without a checksum are accepted if they are not empty.
+     */
+    private boolean readChecked(String fileName) {
+        try {
+            byte[] bytes = Files.readAllBytes(Path.of(fileName));
+            String text = new String(bytes, StandardCharsets.ISO_8859_1);
+            int line = text.lastIndexOf(CHECKSUM_PREFIX);
+            if (line >= 0 && (line == 0 || text.charAt(line - 1) == '\n')) {
+                String stored = text.substring(line + CHECKSUM_PREFIX.length()).trim();
+                if (!stored.equals(checksum(bytes, line))) {
+                    System.err.println("Checksum mismatch in " + fileName);
+                    return false;
+                }
+            } else if (text.isBlank()) {
+                System.err.println("Empty save file " + fileName);
+                return false;
+            }
+            Properties loaded = new Properties();
+            loaded.load(new ByteArrayInputStream(bytes));
+            properties.clear();
+            properties.putAll(loaded);
+            return true;
+        } catch (NoSuchFileException e) {
+            return false;
+        } catch (IOException | IllegalArgumentException e) {
+            System.err.println("Error loading " + fileName + ": " + e.getMessage());
+            return false;
+        }
+    }
+
+    private static String checksum(byte[] bytes, int length) {
+        CRC32 crc = new CRC32();
+        crc.update(bytes, 0, length);
+        return String.format("%08x", crc.getValue());
+    }
+
     /**
      * Initialize default values
      */
     private void initializeDefaults() {
         properties.setProperty(CHIPS_KEY, String.valueOf(DEFAULT_CHIPS));
-        properties.setProperty(OWN_GREEN_TABLE_KEY, "false");
-        properties.setProperty(OWN_ANIMATED_BG_KEY, "false");
-        properties.setProperty(CURRENT_BACKGROUND_KEY, "default");
-        properties.setProperty(VOLUME_LEVEL_KEY, String.valueOf(DEFAULT_VOLUME));
-        properties.setProperty(MUSIC_ENABLED_KEY, "true");
-        properties.setProperty(DIFFICULTY_KEY, String.valueOf(DEFAULT_DIFFICULTY));
-        properties.setProperty(LUCK_LEVEL_KEY, String.valueOf(DEFAULT_LUCK_LEVEL));
+        GameSettings defaults = GameSettings.defaults();
+        defaults.toProperties(properties);
+        settings.set(defaults);
     }
 
     /**
-     * Save database to file
+     * Mark the data as changed. The file is written by the background
+     * flusher, or right away when write-behind is off or the database is closed.
      */
     private void saveDatabase() {
-        try (FileOutputStream fos = new FileOutputStream(DB_FILE)) {
-            properties.store(fos, "Blackjack Game Data");
+        dirty = true;
+        if (flusher == null || closed) {
+            flush();
+        } else if (flushScheduled.compareAndSet(false, true)) {
+            flusher.schedule(() -> {
+                flushScheduled.set(false);
+                flush();
+            }, flushIntervalMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Write pending changes to disk now.
+     */
+    public void flush() {
+        synchronized (fileLock) {
+            if (!dirty) {
+                return;
+            }
+            // Clear first: a change made while writing marks the data dirty again
+            dirty = false;
+            try {
+                writeAtomically();
+            } catch (IOException e) {
+                dirty = true;
+                System.err.println("Error saving database: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Write the properties and their checksum to a temporary file, sync it,
+     * keep the current file as the backup and rename the new one into place.
+     */
+    private void writeAtomically() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(1024);
+        properties.store(out, "Blackjack Game Data");
+        byte[] content = out.toByteArray();
+        byte[] trailer = (CHECKSUM_PREFIX + checksum(content, content.length) + "\n")
+                .getBytes(StandardCharsets.ISO_8859_1);
+
+        Path file = Path.of(DB_FILE).toAbsolutePath();
+        Path temp = file.resolveSibling(TEMP_FILE);
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buf = ByteBuffer.allocate(content.length + trailer.length).put(content).put(trailer);
+            buf.flip();
+            while (buf.hasRemaining()) {
+                channel.write(buf);
+            }
+            channel.force(true);
+        }
+
+        // A damaged save file must not replace a good backup
+        if (saveFileValid && Files.exists(file)) {
+            Files.move(file, file.resolveSibling(BACKUP_FILE), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        syncDirectory(file.getParent());
+        saveFileValid = true;
+    }
+
+    /**
+     * Make the renames durable. Not every platform can open a directory,
+     * in which case the rename is left to the file system.
+     */
+    private static void syncDirectory(Path directory) {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
         } catch (IOException e) {
-            System.err.println("Error saving database: " + e.getMessage());
+            // Directory sync unsupported here
         }
     }
 
+    /**
+     * Flush pending changes and stop the background flusher. Later saves
+     * are written immediately.
+     */
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        if (flusher != null) {
+            flusher.shutdown();
+        }
+        if (ledger != null) {
+            try {
+                ledger.close();
+            } catch (IOException e) {
+                System.err.println("Error closing chip ledger: " + e.getMessage());
+                if (!ledgerFailed) {
+                    // The writer died without a later record noticing; keep the balance as recordChips does
+                    ledgerFailed = true;
+                    properties.setProperty(CHIPS_KEY, String.valueOf(ledger.getBalance()));
+                    properties.setProperty(LEDGER_FAILED_KEY, "true");
+                    dirty = true;
+                }
+            }
+            if (!ledgerFailed) {
+                // Leave the final balance readable in the properties file too
+                properties.setProperty(CHIPS_KEY, String.valueOf(ledger.getBalance()));
+                dirty = true;
+            }
+        }
+        flush();
+        try {
+            Runtime.getRuntime().removeShutdownHook(shutdownHook);
+        } catch (IllegalStateException e) {
+            // Already shutting down; the hook flushes again harmlessly
+        }
+    }
+
+    public boolean isDirty() {
+        return dirty;
+    }
+
     /**
      * Get the current chips amount
      */
     public int getChips() {
+        if (ledger != null && !ledgerFailed) {
+            return (int) ledger.getBalance();
+        }
+        return parseChips();
+    }
+
+    private int parseChips() {
         String chipsStr = properties.getProperty(CHIPS_KEY, String.valueOf(DEFAULT_CHIPS));
         try {
             return Integer.parseInt(chipsStr);
@@ -86,141 +328,178 @@ public class ChipsDatabase {
     }
 
     /**
-     * Save the chips amount
+     * Record a change to the chips amount in the ledger
      */
-    public void saveChips(int chips) {
-        properties.setProperty(CHIPS_KEY, String.valueOf(chips));
+    public void recordChips(ChipLedger.EntryType type, int delta) {
+        if (delta == 0) {
+            return;
+        }
+        if (ledger != null && !closed && !ledgerFailed) {
+            try {
+                long balance = ledger.record(type, delta);
+                // Mirrored in the properties file on the next flush, without forcing one
+                properties.setProperty(CHIPS_KEY, String.valueOf(balance));
+                return;
+            } catch (IOException e) {
+                // Keep the balance in the properties file from now on rather than lose changes;
+                // the ledger takes it back as an adjustment when it is next opened
+                System.err.println("Error recording chips: " + e.getMessage());
+                ledgerFailed = true;
+                properties.setProperty(CHIPS_KEY, String.valueOf(ledger.getBalance()));
+                properties.setProperty(LEDGER_FAILED_KEY, "true");
+            }
+        }
+        properties.setProperty(CHIPS_KEY, String.valueOf(parseChips() + delta));
         saveDatabase();
     }
 
+    /**
+     * Save the chips amount. Recorded in the ledger as an adjustment;
+     * prefer {@link #recordChips} so the ledger says where the chips went.
+     */
+    public void saveChips(int chips) {
+        recordChips(ChipLedger.EntryType.ADJUSTMENT, chips - getChips());
+    }
+
+    /**
+     * Current settings snapshot
+     */
+    public GameSettings getSettings() {
+        return settings.get();
+    }
+
+    /**
+     * Apply a change to the settings as one atomic swap, save it once and
+     * notify listeners. Updates run one at a time, listeners included. Combine several {@code with} calls in one update to
+     * change several settings with a single write.
+     */
+    public GameSettings updateSettings(UnaryOperator<GameSettings> change) {
+        synchronized (settingsLock) {
+            GameSettings oldSettings = settings.get();
+            GameSettings newSettings = change.apply(oldSettings);
+            if (!newSettings.equals(oldSettings)) {
+                settings.set(newSettings);
+                newSettings.toProperties(properties);
+                saveDatabase();
+                for (GameSettings.Listener listener : listeners) {
+                    listener.settingsChanged(oldSettings, newSettings);
+                }
+            }
+            return newSettings;
+        }
+    }
+
+    public void addSettingsListener(GameSettings.Listener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeSettingsListener(GameSettings.Listener listener) {
+        listeners.remove(listener);
+    }
+
     /**
      * Get whether player owns green table
      */
     public boolean getOwnGreenTable() {
-        String value = properties.getProperty(OWN_GREEN_TABLE_KEY, "false");
-        return Boolean.parseBoolean(value);
+        return settings.get().ownGreenTable();
     }
 
     /**
      * Save whether player owns green table
      */
     public void saveOwnGreenTable(boolean owns) {
-        properties.setProperty(OWN_GREEN_TABLE_KEY, String.valueOf(owns));
-        saveDatabase();
+        updateSettings(s -> s.withOwnGreenTable(owns));
     }
 
     /**
      * Get whether player owns animated background
      */
     public boolean getOwnAnimatedBackground() {
-        String value = properties.getProperty(OWN_ANIMATED_BG_KEY, "false");
-        return Boolean.parseBoolean(value);
+        return settings.get().ownAnimatedBackground();
     }
 
     /**
      * Save whether player owns animated background
      */
     public void saveOwnAnimatedBackground(boolean owns) {
-        properties.setProperty(OWN_ANIMATED_BG_KEY, String.valueOf(owns));
-        saveDatabase();
+        updateSettings(s -> s.withOwnAnimatedBackground(owns));
     }
 
     /**
      * Get current background
      */
     public String getCurrentBackground() {
-        return properties.getProperty(CURRENT_BACKGROUND_KEY, "default");
+        return settings.get().currentBackground();
     }
 
     /**
      * Save current background
      */
     public void saveCurrentBackground(String background) {
-        properties.setProperty(CURRENT_BACKGROUND_KEY, background);
-        saveDatabase();
+        updateSettings(s -> s.withCurrentBackground(background));
     }
 
     /**
      * Get volume level (0=Off, 1=Low, 2=Medium, 3=High)
      */
     public int getVolumeLevel() {
-        String value = properties.getProperty(VOLUME_LEVEL_KEY, String.valueOf(DEFAULT_VOLUME));
-        try {
-            return Integer.parseInt(value);
-        } catch (NumberFormatException e) {
-            return DEFAULT_VOLUME;
-        }
+        return settings.get().volumeLevel();
     }
 
     /**
      * Save volume level
      */
     public void saveVolumeLevel(int level) {
-        properties.setProperty(VOLUME_LEVEL_KEY, String.valueOf(level));
-        saveDatabase();
+        updateSettings(s -> s.withVolumeLevel(level));
     }
 
     /**
      * Get whether background music is enabled
      */
     public boolean isMusicEnabled() {
-        String value = properties.getProperty(MUSIC_ENABLED_KEY, "true");
-        return Boolean.parseBoolean(value);
+        return settings.get().musicEnabled();
     }
 
     /**
      * Save whether background music is enabled
      */
     public void saveMusicEnabled(boolean enabled) {
-        properties.setProperty(MUSIC_ENABLED_KEY, String.valueOf(enabled));
-        saveDatabase();
+        updateSettings(s -> s.withMusicEnabled(enabled));
     }
 
     /**
      * Reset all data to defaults
      */
     public void resetToDefaults() {
-        initializeDefaults();
-        saveDatabase();
+        saveChips(DEFAULT_CHIPS);
+        updateSettings(s -> GameSettings.defaults());
     }
 
     /**
      * Get difficulty level (1=Easy, 2=Medium, 3=Hard)
      */
     public int getDifficulty() {
-        String value = properties.getProperty(DIFFICULTY_KEY, String.valueOf(DEFAULT_DIFFICULTY));
-        try {
-            return Integer.parseInt(value);
-        } catch (NumberFormatException e) {
-            return DEFAULT_DIFFICULTY;
-        }
+        return settings.get().difficulty();
     }
 
     /**
      * Save difficulty level
      */
     public void saveDifficulty(int difficulty) {
-        properties.setProperty(DIFFICULTY_KEY, String.valueOf(difficulty));
-        saveDatabase();
+        updateSettings(s -> s.withDifficulty(difficulty));
     }
 
     /**
      * Get luck level (1=Normal, 2=Lucky, 3=Very Lucky)
      */
     public int getLuckLevel() {
-        String value = properties.getProperty(LUCK_LEVEL_KEY, String.valueOf(DEFAULT_LUCK_LEVEL));
-        try {
-            return Integer.parseInt(value);
-        } catch (NumberFormatException e) {
-            return DEFAULT_LUCK_LEVEL;
-        }
+        return settings.get().luckLevel();
     }
 
     /**
      * Save luck level
      */
     public void saveLuckLevel(int luckLevel) {
-        properties.setProperty(LUCK_LEVEL_KEY, String.valueOf(luckLevel));
-        saveDatabase();
+        updateSettings(s -> s.withLuckLevel(luckLevel));
     }
 }
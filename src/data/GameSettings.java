@@ -0,0 +1,114 @@
+package data;
+
+import java.util.Properties;
+
+/**
+ * Immutable snapshot of the player's saved settings. Values are parsed once
+ * when loaded; a change produces a new snapshot through the {@code with}
+ * methods, so several changes can be combined before they are saved.
+ */
+public record GameSettings(boolean ownGreenTable, boolean ownAnimatedBackground, String currentBackground,
+                           int volumeLevel, boolean musicEnabled, int difficulty, int luckLevel) {
+
+    public static final int DEFAULT_VOLUME = 2; // 0=Off, 1=Low, 2=Medium, 3=High
+    public static final int DEFAULT_DIFFICULTY = 1; // 1=Easy, 2=Medium, 3=Hard
+    public static final int DEFAULT_LUCK_LEVEL = 1; // 1=Normal, 2=Lucky, 3=Very Lucky
+    public static final String DEFAULT_BACKGROUND = "default";
+
+    static final String OWN_GREEN_TABLE_KEY = "ownGreenTable";
+    static final String OWN_ANIMATED_BG_KEY = "ownAnimatedBackground";
+    static final String CURRENT_BACKGROUND_KEY = "currentBackground";
+    static final String VOLUME_LEVEL_KEY = "volumeLevel";
+    static final String MUSIC_ENABLED_KEY = "musicEnabled";
+    static final String DIFFICULTY_KEY = "difficulty";
+    static final String LUCK_LEVEL_KEY = "luckLevel";
+
+    /**
+     * Notified after the settings have been replaced.
+     */
+    public interface Listener {
+        void settingsChanged(GameSettings oldSettings, GameSettings newSettings);
+    }
+
+    public GameSettings {
+        if (currentBackground == null) {
+            currentBackground = DEFAULT_BACKGROUND;
+        }
+    }
+
+    public static GameSettings defaults() {
+        return new GameSettings(false, false, DEFAULT_BACKGROUND, DEFAULT_VOLUME, true,
+                DEFAULT_DIFFICULTY, DEFAULT_LUCK_LEVEL);
+    }
+
+    /**
+     * Parse settings from properties, using the default for any missing or
+     * malformed value.
+     */
+    public static GameSettings fromProperties(Properties properties) {
+        return new GameSettings(
+                Boolean.parseBoolean(properties.getProperty(OWN_GREEN_TABLE_KEY, "false")),
+                Boolean.parseBoolean(properties.getProperty(OWN_ANIMATED_BG_KEY, "false")),
+                properties.getProperty(CURRENT_BACKGROUND_KEY, DEFAULT_BACKGROUND),
+                parseInt(properties, VOLUME_LEVEL_KEY, DEFAULT_VOLUME),
+                Boolean.parseBoolean(properties.getProperty(MUSIC_ENABLED_KEY, "true")),
+                parseInt(properties, DIFFICULTY_KEY, DEFAULT_DIFFICULTY),
+                parseInt(properties, LUCK_LEVEL_KEY, DEFAULT_LUCK_LEVEL));
+    }
+
+    private static int parseInt(Properties properties, String key, int defaultValue) {
+        try {
+            return Integer.parseInt(properties.getProperty(key, String.valueOf(defaultValue)));
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+
+    /**
+     * Write these settings into properties for saving.
+     */
+    public void toProperties(Properties properties) {
+        properties.setProperty(OWN_GREEN_TABLE_KEY, String.valueOf(ownGreenTable));
+        properties.setProperty(OWN_ANIMATED_BG_KEY, String.valueOf(ownAnimatedBackground));
+        properties.setProperty(CURRENT_BACKGROUND_KEY, currentBackground);
+        properties.setProperty(VOLUME_LEVEL_KEY, String.valueOf(volumeLevel));
+        properties.setProperty(MUSIC_ENABLED_KEY, String.valueOf(musicEnabled));
+        properties.setProperty(DIFFICULTY_KEY, String.valueOf(difficulty));
+        properties.setProperty(LUCK_LEVEL_KEY, String.valueOf(luckLevel));
+    }
+
+    public GameSettings withOwnGreenTable(boolean owns) {
+        return new GameSettings(owns, ownAnimatedBackground, currentBackground, volumeLevel, musicEnabled,
+                difficulty, luckLevel);
+    }
+
+    public GameSettings withOwnAnimatedBackground(boolean owns) {
+        return new GameSettings(ownGreenTable, owns, currentBackground, volumeLevel, musicEnabled,
+                difficulty, luckLevel);
+    }
+
+    public GameSettings withCurrentBackground(String background) {
+        return new GameSettings(ownGreenTable, ownAnimatedBackground, background, volumeLevel, musicEnabled,
+                difficulty, luckLevel);
+    }
+
+    public GameSettings withVolumeLevel(int level) {
+        return new GameSettings(ownGreenTable, ownAnimatedBackground, currentBackground, level, musicEnabled,
+                difficulty, luckLevel);
+    }
+
+    public GameSettings withMusicEnabled(boolean enabled) {
+        return new GameSettings(ownGreenTable, ownAnimatedBackground, currentBackground, volumeLevel, enabled,
+                difficulty, luckLevel);
+    }
+
+    public GameSettings withDifficulty(int level) {
+        return new GameSettings(ownGreenTable, ownAnimatedBackground, currentBackground, volumeLevel, musicEnabled,
+                level, luckLevel);
+    }
+
+    public GameSettings withLuckLevel(int level) {
+        return new GameSettings(ownGreenTable, ownAnimatedBackground, currentBackground, volumeLevel, musicEnabled,
+                difficulty, level);
+    }
+}
@@ -0,0 +1,443 @@
+package data;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Store of many player profiles (balance, unlocks and settings) for a
+ * server. Profiles are fixed-size binary records in a memory-mapped file,
+ * found through an open-addressing hash index that is also memory-mapped,
+ * so a lookup or balance update touches a couple of pages and nothing is
+ * loaded onto the heap up front.
+ *
+ * The record file is mapped in fixed segments, so it can grow past the 2 GB
+ * limit of a single mapping; the index doubles and is rebuilt from the
+ * records when it gets half full. A rebuilt index is written to a new file
+ * and moved over the old one, so the old file is never deleted while it is
+ * still mapped. Record 0 is the file header.
+ */
+public class ProfileStore implements AutoCloseable {
+
+    public static final String DATA_FILE = "profiles.dat";
+    public static final String INDEX_FILE = "profiles.idx";
+
+    public static final int RECORD_SIZE = 64;
+    public static final int MAX_ID_BYTES = 31;
+
+    /** Unlock flags. */
+    public static final int UNLOCK_GREEN_TABLE = 1;
+    public static final int UNLOCK_ANIMATED_BACKGROUND = 1 << 1;
+
+    private static final int MAGIC = 0x424A5046; // "BJPF"
+    private static final int VERSION = 1;
+    private static final int SEGMENT_RECORDS = 1 << 16; // 4 MB per mapped segment
+    private static final long SEGMENT_BYTES = (long) SEGMENT_RECORDS * RECORD_SIZE;
+    private static final int MIN_INDEX_SLOTS = 1 << 10;
+    // One mapping holds the whole index, and slot * Long.BYTES stays an int
+    private static final int MAX_INDEX_SLOTS = 1 << 27;
+    private static final String[] BACKGROUNDS = {"default", "green_table", "animated"};
+
+    // Record layout
+    private static final int ID_LENGTH = 0;
+    private static final int ID_BYTES = 1;
+    private static final int BALANCE = 32;
+    private static final int UNLOCKS = 40;
+    private static final int VOLUME = 44;
+    private static final int MUSIC = 45;
+    private static final int DIFFICULTY = 46;
+    private static final int LUCK = 47;
+    private static final int BACKGROUND = 48;
+    private static final int BEST_STREAK = 52;
+    private static final int UPDATED = 56;
+
+    // Header layout (record 0)
+    private static final int HEADER_MAGIC = 0;
+    private static final int HEADER_VERSION = 4;
+    private static final int HEADER_COUNT = 8;
+
+    /**
+     * Copy of one profile.
+     */
+    public record Profile(String id, long balance, int unlocks, GameSettings settings, int bestWinStreak,
+                          long updatedMillis) {
+    }
+
+    private final Path directory;
+    private final Path indexPath;
+    private final FileChannel data;
+    private final List<MappedByteBuffer> segments = new ArrayList<>();
+    private FileChannel indexChannel;
+    private MappedByteBuffer index; // One long per slot: fingerprint << 32 | record number, 0 = empty
+    private int indexMask;
+    private int count;
+
+    public ProfileStore(Path directory) throws IOException {
+        this.directory = directory;
+        this.indexPath = directory.resolve(INDEX_FILE);
+        this.data = FileChannel.open(directory.resolve(DATA_FILE), StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+        MappedByteBuffer first = segment(0);
+        if (first.getInt(HEADER_MAGIC) == 0) {
+            first.putInt(HEADER_MAGIC, MAGIC);
+            first.putInt(HEADER_VERSION, VERSION);
+            first.putInt(HEADER_COUNT, 0);
+        } else if (first.getInt(HEADER_MAGIC) != MAGIC || first.getInt(HEADER_VERSION) != VERSION) {
+            throw new IOException("Not a profile store: " + directory.resolve(DATA_FILE));
+        }
+        count = first.getInt(HEADER_COUNT);
+        segment(count / SEGMENT_RECORDS);
+        deleteStaleIndexes();
+        openIndex();
+    }
+
+    // ---------- Mapping ----------
+
+    private MappedByteBuffer segment(int number) throws IOException {
+        while (segments.size() <= number) {
+            MappedByteBuffer segment = data.map(FileChannel.MapMode.READ_WRITE,
+                    segments.size() * SEGMENT_BYTES, SEGMENT_BYTES);
+            segment.order(ByteOrder.LITTLE_ENDIAN);
+            segments.add(segment);
+        }
+        return segments.get(number);
+    }
+
+    private MappedByteBuffer segmentOf(int record) {
+        return segments.get(record / SEGMENT_RECORDS);
+    }
+
+    private static int offsetOf(int record) {
+        return (record % SEGMENT_RECORDS) * RECORD_SIZE;
+    }
+
+    /**
+     * Map the index, rebuilding it from the records if it is missing or
+     * does not match the record count.
+     */
+    private void openIndex() throws IOException {
+        int slots = slotsFor(count);
+        if (Files.exists(indexPath) && Files.size(indexPath) >= (long) slots * Long.BYTES) {
+            long size = Files.size(indexPath);
+            int existing = (int) (size / Long.BYTES);
+            if (Integer.bitCount(existing) == 1 && existing >= slots) {
+                mapIndex(existing);
+                if (countIndexed() == count) {
+                    return;
+                }
+            }
+        }
+        rebuildIndex(slots);
+    }
+
+    private static int slotsFor(int records) throws IOException {
+        int slots = MIN_INDEX_SLOTS;
+        while (slots < 2L * (records + 1)) {
+            if (slots == MAX_INDEX_SLOTS) {
+                throw new IOException("Profile store is full: at most " + (MAX_INDEX_SLOTS / 2 - 1) + " profiles.");
+            }
+            slots <<= 1;
+        }
+        return slots;
+    }
+
+    private void mapIndex(int slots) throws IOException {
+        if (indexChannel != null) {
+            indexChannel.close();
+        }
+        indexChannel = FileChannel.open(indexPath, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        index = indexChannel.map(FileChannel.MapMode.READ_WRITE, 0, (long) slots * Long.BYTES);
+        index.order(ByteOrder.LITTLE_ENDIAN);
+        indexMask = slots - 1;
+    }
+
+    private int countIndexed() {
+        int used = 0;
+        for (int slot = 0; slot <= indexMask; slot++) {
+            if (index.getLong(slot * Long.BYTES) != 0) {
+                used++;
+            }
+        }
+        return used;
+    }
+
+    /**
+     * Build an index of the given size in a new file and swap it in. The
+     * old mapping is dropped before its file is replaced; where the system
+     * still refuses (Windows keeps the file until the mapping is collected),
+     * the new file stays in use under its temporary name and the index is
+     * rebuilt at the next start.
+     */
+    private void rebuildIndex(int slots) throws IOException {
+        Path temp = Files.createTempFile(directory, INDEX_FILE, ".tmp");
+        FileChannel channel = FileChannel.open(temp, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        MappedByteBuffer built = channel.map(FileChannel.MapMode.READ_WRITE, 0, (long) slots * Long.BYTES);
+        built.order(ByteOrder.LITTLE_ENDIAN);
+        for (int record = 1; record <= count; record++) {
+            insertSlot(built, slots - 1, hash(readIdBytes(record)), record);
+        }
+        built.force();
+
+        if (indexChannel != null) {
+            indexChannel.close();
+        }
+        index = built;
+        indexChannel = channel;
+        indexMask = slots - 1;
+        try {
+            Files.move(temp, indexPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            System.err.println("Could not replace the profile index, using " + temp.getFileName() + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Remove index files left under a temporary name by an earlier run.
+     */
+    private void deleteStaleIndexes() {
+        try (DirectoryStream<Path> stale = Files.newDirectoryStream(directory, INDEX_FILE + "*.tmp")) {
+            for (Path path : stale) {
+                Files.deleteIfExists(path);
+            }
+        } catch (IOException e) {
+            System.err.println("Could not remove old profile index files: " + e.getMessage());
+        }
+    }
+
+    // ---------- Index ----------
+
+    private static long hash(byte[] id) {
+        long h = 0xcbf29ce484222325L; // FNV-1a
+        for (byte b : id) {
+            h ^= b & 0xff;
+            h *= 0x100000001b3L;
+        }
+        return h ^ (h >>> 29);
+    }
+
+    private static void insertSlot(MappedByteBuffer index, int mask, long hash, int record) {
+        int slot = (int) hash & mask;
+        while (index.getLong(slot * Long.BYTES) != 0) {
+            slot = (slot + 1) & mask;
+        }
+        index.putLong(slot * Long.BYTES, (hash >>> 32) << 32 | record);
+    }
+
+    /**
+     * Record number of a profile, or -1 if there is none.
+     */
+    public synchronized int find(String id) {
+        return find(encodeId(id));
+    }
+
+    private int find(byte[] id) {
+        long hash = hash(id);
+        long fingerprint = hash >>> 32;
+        int slot = (int) hash & indexMask;
+        long entry;
+        while ((entry = index.getLong(slot * Long.BYTES)) != 0) {
+            int record = (int) entry;
+            // The fingerprint skips most mismatches without touching the record
+            if (entry >>> 32 == fingerprint && Arrays.equals(readIdBytes(record), id)) {
+                return record;
+            }
+            slot = (slot + 1) & indexMask;
+        }
+        return -1;
+    }
+
+    private static byte[] encodeId(String id) {
+        byte[] bytes = id.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length == 0 || bytes.length > MAX_ID_BYTES) {
+            throw new IllegalArgumentException("Profile id must be 1-" + MAX_ID_BYTES + " bytes.");
+        }
+        return bytes;
+    }
+
+    private byte[] readIdBytes(int record) {
+        MappedByteBuffer segment = segmentOf(record);
+        int offset = offsetOf(record);
+        byte[] id = new byte[segment.get(offset + ID_LENGTH)];
+        segment.get(offset + ID_BYTES, id);
+        return id;
+    }
+
+    // ---------- Profiles ----------
+
+    /**
+     * Record number of a profile, creating it with default settings if needed.
+     */
+    public synchronized int getOrCreate(String id, long initialBalance) throws IOException {
+        byte[] idBytes = encodeId(id);
+        int record = find(idBytes);
+        if (record >= 0) {
+            return record;
+        }
+
+        if (2L * (count + 2) > indexMask + 1) {
+            rebuildIndex(slotsFor(count + 1));
+        }
+        record = count + 1;
+        MappedByteBuffer segment = segment(record / SEGMENT_RECORDS);
+        int offset = offsetOf(record);
+        segment.put(offset + ID_LENGTH, (byte) idBytes.length);
+        segment.put(offset + ID_BYTES, idBytes);
+        segment.putLong(offset + BALANCE, initialBalance);
+        segment.putInt(offset + UNLOCKS, 0);
+        writeSettings(segment, offset, GameSettings.defaults());
+        segment.putInt(offset + BEST_STREAK, 0);
+        segment.putLong(offset + UPDATED, System.currentTimeMillis());
+
+        count = record;
+        segments.get(0).putInt(HEADER_COUNT, count);
+        insertSlot(index, indexMask, hash(idBytes), record);
+        return record;
+    }
+
+    private void checkRecord(int record) {
+        if (record < 1 || record > count) {
+            throw new IllegalArgumentException("No profile record " + record + ".");
+        }
+    }
+
+    public synchronized long getBalance(int record) {
+        checkRecord(record);
+        return segmentOf(record).getLong(offsetOf(record) + BALANCE);
+    }
+
+    /**
+     * Add to a balance and return the new value.
+     */
+    public synchronized long addBalance(int record, long delta) {
+        checkRecord(record);
+        MappedByteBuffer segment = segmentOf(record);
+        int offset = offsetOf(record);
+        long balance = segment.getLong(offset + BALANCE) + delta;
+        segment.putLong(offset + BALANCE, balance);
+        segment.putLong(offset + UPDATED, System.currentTimeMillis());
+        return balance;
+    }
+
+    public synchronized void setBalance(int record, long balance) {
+        addBalance(record, balance - getBalance(record));
+    }
+
+    public synchronized int getUnlocks(int record) {
+        checkRecord(record);
+        return segmentOf(record).getInt(offsetOf(record) + UNLOCKS);
+    }
+
+    public synchronized boolean hasUnlock(int record, int flag) {
+        return (getUnlocks(record) & flag) != 0;
+    }
+
+    public synchronized void unlock(int record, int flag) {
+        checkRecord(record);
+        MappedByteBuffer segment = segmentOf(record);
+        int offset = offsetOf(record);
+        segment.putInt(offset + UNLOCKS, segment.getInt(offset + UNLOCKS) | flag);
+        segment.putLong(offset + UPDATED, System.currentTimeMillis());
+    }
+
+    public synchronized int getBestWinStreak(int record) {
+        checkRecord(record);
+        return segmentOf(record).getInt(offsetOf(record) + BEST_STREAK);
+    }
+
+    /**
+     * Raise the stored best win streak if this one is longer.
+     */
+    public synchronized void recordWinStreak(int record, int streak) {
+        checkRecord(record);
+        MappedByteBuffer segment = segmentOf(record);
+        int offset = offsetOf(record);
+        if (streak > segment.getInt(offset + BEST_STREAK)) {
+            segment.putInt(offset + BEST_STREAK, streak);
+        }
+    }
+
+    public synchronized GameSettings getSettings(int record) {
+        checkRecord(record);
+        MappedByteBuffer segment = segmentOf(record);
+        int offset = offsetOf(record);
+        int unlocks = segment.getInt(offset + UNLOCKS);
+        int background = segment.get(offset + BACKGROUND);
+        return new GameSettings(
+                (unlocks & UNLOCK_GREEN_TABLE) != 0,
+                (unlocks & UNLOCK_ANIMATED_BACKGROUND) != 0,
+                background >= 0 && background < BACKGROUNDS.length ? BACKGROUNDS[background] : BACKGROUNDS[0],
+                segment.get(offset + VOLUME),
+                segment.get(offset + MUSIC) != 0,
+                segment.get(offset + DIFFICULTY),
+                segment.get(offset + LUCK));
+    }
+
+    /**
+     * Save settings, including the unlocks they carry.
+     */
+    public synchronized void putSettings(int record, GameSettings settings) {
+        checkRecord(record);
+        MappedByteBuffer segment = segmentOf(record);
+        int offset = offsetOf(record);
+        writeSettings(segment, offset, settings);
+        int unlocks = segment.getInt(offset + UNLOCKS);
+        if (settings.ownGreenTable()) {
+            unlocks |= UNLOCK_GREEN_TABLE;
+        }
+        if (settings.ownAnimatedBackground()) {
+            unlocks |= UNLOCK_ANIMATED_BACKGROUND;
+        }
+        segment.putInt(offset + UNLOCKS, unlocks);
+        segment.putLong(offset + UPDATED, System.currentTimeMillis());
+    }
+
+    private static void writeSettings(MappedByteBuffer segment, int offset, GameSettings settings) {
+        segment.put(offset + VOLUME, (byte) settings.volumeLevel());
+        segment.put(offset + MUSIC, (byte) (settings.musicEnabled() ? 1 : 0));
+        segment.put(offset + DIFFICULTY, (byte) settings.difficulty());
+        segment.put(offset + LUCK, (byte) settings.luckLevel());
+        segment.put(offset + BACKGROUND, (byte) Math.max(0, Arrays.asList(BACKGROUNDS).indexOf(settings.currentBackground())));
+    }
+
+    public synchronized Profile read(int record) {
+        checkRecord(record);
+        MappedByteBuffer segment = segmentOf(record);
+        int offset = offsetOf(record);
+        return new Profile(new String(readIdBytes(record), StandardCharsets.UTF_8),
+                segment.getLong(offset + BALANCE), segment.getInt(offset + UNLOCKS), getSettings(record),
+                segment.getInt(offset + BEST_STREAK), segment.getLong(offset + UPDATED));
+    }
+
+    public synchronized int size() {
+        return count;
+    }
+
+    /**
+     * Write every mapped page to disk.
+     */
+    public synchronized void force() {
+        for (MappedByteBuffer segment : segments) {
+            segment.force();
+        }
+        index.force();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        force();
+        data.close();
+        indexChannel.close();
+    }
+}
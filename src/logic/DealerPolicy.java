@@ -0,0 +1,51 @@
+package logic;
+
+/**
+ * Dealer drawing rules for each difficulty level.
+ */
+public enum DealerPolicy {
+    EASY(16, false),   // Dealer stands on 16 or more
+    MEDIUM(17, false), // Standard rules: dealer stands on all 17s
+    HARD(17, true);    // Dealer also hits soft 17
+
+    private final int standThreshold;
+    private final boolean hitsSoft17;
+
+    DealerPolicy(int standThreshold, boolean hitsSoft17) {
+        this.standThreshold = standThreshold;
+        this.hitsSoft17 = hitsSoft17;
+    }
+
+    /**
+     * Get the policy for a difficulty level (1=Easy, 2=Medium, 3=Hard)
+     */
+    public static DealerPolicy forDifficulty(int difficulty) {
+        return switch (difficulty) {
+            case 1 -> EASY;
+            case 3 -> HARD;
+            default -> MEDIUM;
+        };
+    }
+
+    public int getStandThreshold() {
+        return standThreshold;
+    }
+
+    public boolean hitsSoft17() {
+        return hitsSoft17;
+    }
+
+    /**
+     * Returns whether the dealer draws another card on the given total.
+     */
+    public boolean shouldHit(int value, boolean soft) {
+        if (value < standThreshold) {
+            return true;
+        }
+        return hitsSoft17 && value == 17 && soft;
+    }
+
+    public boolean shouldHit(Hand hand) {
+        return shouldHit(hand.getValue(), hand.isSoft());
+    }
+}
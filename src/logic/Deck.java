@@ -1,34 +1,53 @@
 package logic;
 
 import data.Card;
-import data.Rank;
-import data.Suit;
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
+import data.CardCodes;
+import java.util.random.RandomGenerator;
 
+/**
+ * A single 52-card deck. Shuffling is lazy: each draw swaps a random
+ * remaining card into place (Fisher-Yates one step at a time), so a round
+ * only pays for the cards it actually uses while the order is distributed
+ * exactly like a full shuffle.
+ */
 public class Deck {
-    private final List<Card> cards;
+    private final byte[] cards;
     private int currentIndex = 0;
+    private RandomGenerator random;
 
     public Deck() {
-        cards = new ArrayList<>();
-        for (Suit suit : Suit.values()) {
-            for (Rank rank : Rank.values()) {
-                cards.add(new Card(rank, suit));
-            }
-        }
+        cards = CardCodes.newDecks(1);
     }
 
     public void shuffle() {
-        Collections.shuffle(cards);
+        shuffle(GameRandom.current());
+    }
+
+    /**
+     * Put every card back; the order is drawn lazily from the generator.
+     */
+    public void shuffle(RandomGenerator random) {
+        this.random = random;
         currentIndex = 0;
     }
 
     public Card drawCard() {
-        if (currentIndex >= cards.size()) {
+        return CardCodes.toCard(drawCode());
+    }
+
+    /**
+     * Draw the next card as its byte code.
+     */
+    public byte drawCode() {
+        if (currentIndex >= cards.length) {
             throw new IllegalStateException("No more cards in the deck.");
         }
-        return cards.get(currentIndex++);
+        if (random != null) {
+            int j = currentIndex + random.nextInt(cards.length - currentIndex);
+            byte tmp = cards[j];
+            cards[j] = cards[currentIndex];
+            cards[currentIndex] = tmp;
+        }
+        return cards[currentIndex++];
     }
-}
\ No newline at end of file
+}
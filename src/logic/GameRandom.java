@@ -0,0 +1,55 @@
+package logic;
+
+import java.util.SplittableRandom;
+import java.util.random.RandomGenerator;
+import java.util.random.RandomGeneratorFactory;
+
+/**
+ * Source of random generators for shuffles and luck rolls. Generators are
+ * splittable ({@code L64X128MixRandom}, or {@link SplittableRandom} where that
+ * algorithm is unavailable), so every table, thread or simulation worker gets
+ * its own independent stream instead of contending on one shared generator.
+ * Seeded generators make any shuffle reproducible.
+ */
+public final class GameRandom {
+
+    public static final String ALGORITHM = "L64X128MixRandom";
+
+    private static final RandomGeneratorFactory<RandomGenerator.SplittableGenerator> FACTORY = findFactory();
+    private static final RandomGenerator.SplittableGenerator ROOT = FACTORY.create();
+    private static final ThreadLocal<RandomGenerator> THREAD_STREAM = ThreadLocal.withInitial(GameRandom::split);
+
+    private GameRandom() {
+        // Prevent instantiation
+    }
+
+    private static RandomGeneratorFactory<RandomGenerator.SplittableGenerator> findFactory() {
+        try {
+            return RandomGeneratorFactory.of(ALGORITHM);
+        } catch (IllegalArgumentException e) {
+            return RandomGeneratorFactory.of("SplittableRandom");
+        }
+    }
+
+    /**
+     * New generator with an explicit seed, for reproducible rounds.
+     */
+    public static RandomGenerator.SplittableGenerator create(long seed) {
+        return FACTORY.create(seed);
+    }
+
+    /**
+     * New independent generator split off the shared root stream.
+     */
+    public static synchronized RandomGenerator.SplittableGenerator split() {
+        return ROOT.split();
+    }
+
+    /**
+     * Generator for the calling thread, for occasional rolls outside a table
+     * (UI effects and the like). Never shared between threads.
+     */
+    public static RandomGenerator current() {
+        return THREAD_STREAM.get();
+    }
+}
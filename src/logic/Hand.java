@@ -1,46 +1,93 @@
 package logic;
 
 import data.Card;
-import data.Rank;
-import java.util.ArrayList;
+import data.CardCodes;
+import java.util.Arrays;
 import java.util.List;
 
+/**
+ * A blackjack hand. Totals are kept up to date as cards are added, so value,
+ * soft, bust and blackjack checks are constant-time reads.
+ */
 public class Hand {
-    private final List<Card> cards = new ArrayList<>();
+    private byte[] codes = new byte[12];
+    private int size = 0;
+
+    private int hardTotal = 0; // Aces counted as 1
+    private int aces = 0;
 
     public void addCard(Card card) {
-        cards.add(card);
+        addCode(card.getCode());
+    }
+
+    public void addCode(byte code) {
+        if (size == codes.length) {
+            codes = Arrays.copyOf(codes, size * 2);
+        }
+        codes[size++] = code;
+
+        if (CardCodes.isAce(code)) {
+            hardTotal += 1;
+            aces++;
+        } else {
+            hardTotal += CardCodes.value(code);
+        }
+    }
+
+    /**
+     * Empty the hand so it can be reused for the next round.
+     */
+    public void reset() {
+        size = 0;
+        hardTotal = 0;
+        aces = 0;
     }
 
+    /**
+     * Returns the cards as shared {@link Card} instances, for display and messages.
+     */
     public List<Card> getCards() {
-        return cards;
+        return CardCodes.toCards(codes, size);
     }
 
-    public int getValue() {
-        int total = 0;
-        int aces = 0;
-
-        for (Card card : cards) {
-            int value = card.getRank().getValue();
-            total += value;
-            if (card.getRank() == Rank.ACE) {
-                aces++;
-            }
-        }
+    public int getCardCount() {
+        return size;
+    }
 
-        while (total > 21 && aces > 0) {
-            total -= 10;
-            aces--;
+    public byte getCode(int index) {
+        if (index >= size) {
+            throw new IndexOutOfBoundsException("Card " + index + " of " + size);
         }
+        return codes[index];
+    }
+
+    public int getValue() {
+        return isSoft() ? hardTotal + 10 : hardTotal;
+    }
+
+    /**
+     * Total with every ace counted as 1.
+     */
+    public int getHardTotal() {
+        return hardTotal;
+    }
+
+    public int getAceCount() {
+        return aces;
+    }
 
-        return total;
+    /**
+     * Returns whether an ace is currently counted as 11.
+     */
+    public boolean isSoft() {
+        return aces > 0 && hardTotal <= 11;
     }
 
     public boolean isBlackjack() {
-        return cards.size() == 2 && getValue() == 21;
+        return size == 2 && hardTotal == 11 && aces > 0;
     }
 
     public boolean isBust() {
-        return getValue() > 21;
+        return hardTotal > 21;
     }
-}
\ No newline at end of file
+}
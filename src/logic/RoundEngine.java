@@ -0,0 +1,336 @@
+package logic;
+
+import data.Card;
+import data.CardCodes;
+import java.util.Arrays;
+import java.util.random.RandomGenerator;
+
+/**
+ * Headless blackjack round: deals, applies player actions, runs the dealer
+ * and settles the bet. It has no UI or network dependency, so the single
+ * player GUI, the multiplayer server and batch tools all share these rules.
+ */
+public class RoundEngine {
+
+    public enum Action {
+        HIT,
+        STAND,
+        DOUBLE_DOWN
+    }
+
+    /**
+     * Chooses the player's next move for {@link #playRound(int, PlayerStrategy)}.
+     */
+    public interface PlayerStrategy {
+        /**
+         * @param dealerUpcard the dealer's face-up card as a {@link CardCodes} byte code
+         */
+        Action decide(Hand playerHand, int dealerUpcard, boolean canDouble);
+    }
+
+    // Luck payouts (1=Normal, 2=Lucky, 3=Very Lucky)
+    private static final double[] WIN_MULTIPLIERS = {1.0, 1.0, 1.1, 1.25};
+    private static final double[] PUSH_BONUS_CHANCES = {0.0, 0.0, 0.15, 0.25};
+    private static final double VERY_LUCKY_REFUND_CHANCE = 0.1;
+
+    public static final int DEFAULT_DECKS = 6;
+    public static final double DEFAULT_PENETRATION = 0.75;
+
+    private final RandomGenerator random;
+    private DealerPolicy dealerPolicy;
+    private int luckLevel;
+
+    private final Shoe shoe;
+    private final Hand playerHand = new Hand();
+    private final Hand dealerHand = new Hand();
+    private byte[] actions = new byte[8]; // Action ordinals taken this round
+    private int actionCount;
+    private int bet;
+    private boolean roundStarted = false;
+    private boolean playerTurn = false;
+
+    public RoundEngine(int difficulty, int luckLevel) {
+        this(difficulty, luckLevel, GameRandom.split());
+    }
+
+    /**
+     * Engine whose shuffles and luck rolls are fully determined by the seed.
+     */
+    public RoundEngine(int difficulty, int luckLevel, long seed) {
+        this(difficulty, luckLevel, GameRandom.create(seed));
+    }
+
+    public RoundEngine(int difficulty, int luckLevel, RandomGenerator random) {
+        this(difficulty, luckLevel, new Shoe(DEFAULT_DECKS, DEFAULT_PENETRATION, random), random);
+    }
+
+    public RoundEngine(int difficulty, int luckLevel, Shoe shoe, RandomGenerator random) {
+        this.shoe = shoe;
+        this.random = random;
+        setDifficulty(difficulty);
+        setLuckLevel(luckLevel);
+    }
+
+    /**
+     * Set difficulty level (1=Easy, 2=Medium, 3=Hard)
+     */
+    public void setDifficulty(int difficulty) {
+        this.dealerPolicy = DealerPolicy.forDifficulty(difficulty);
+    }
+
+    /**
+     * Set luck level (1=Normal, 2=Lucky, 3=Very Lucky)
+     */
+    public void setLuckLevel(int luckLevel) {
+        this.luckLevel = Math.max(1, Math.min(3, luckLevel));
+    }
+
+    public DealerPolicy getDealerPolicy() {
+        return dealerPolicy;
+    }
+
+    /**
+     * Start a round: deal two cards each to player and dealer from the shoe,
+     * reshuffling first if the cut card came out last round.
+     */
+    public void deal(int bet) {
+        if (bet <= 0) {
+            throw new IllegalArgumentException("Bet must be positive.");
+        }
+
+        shoe.beginRound();
+        playerHand.reset();
+        dealerHand.reset();
+        actionCount = 0;
+        this.bet = bet;
+
+        playerHand.addCode(shoe.drawCode());
+        dealerHand.addCode(shoe.drawCode());
+        playerHand.addCode(shoe.drawCode());
+        dealerHand.addCode(shoe.drawCode());
+
+        roundStarted = true;
+        playerTurn = true;
+    }
+
+    /**
+     * Player takes a card. The player's turn ends on a bust.
+     */
+    public Card hit() {
+        requirePlayerTurn();
+        recordAction(Action.HIT);
+        byte code = shoe.drawCode();
+        playerHand.addCode(code);
+        if (playerHand.isBust()) {
+            playerTurn = false;
+        }
+        return CardCodes.toCard(code);
+    }
+
+    public boolean canDouble() {
+        return playerTurn && playerHand.getCardCount() == 2;
+    }
+
+    /**
+     * Player doubles the bet and takes exactly one more card.
+     */
+    public Card doubleDown() {
+        if (!canDouble()) {
+            throw new IllegalStateException("Double down is only allowed on the first two cards.");
+        }
+        recordAction(Action.DOUBLE_DOWN);
+        bet *= 2;
+        byte code = shoe.drawCode();
+        playerHand.addCode(code);
+        playerTurn = false;
+        return CardCodes.toCard(code);
+    }
+
+    public void stand() {
+        requirePlayerTurn();
+        recordAction(Action.STAND);
+        playerTurn = false;
+    }
+
+    /**
+     * Returns whether the dealer policy wants another card. False while the
+     * player is still acting, after a player bust, or with a blackjack on the table.
+     */
+    public boolean dealerShouldHit() {
+        if (!roundStarted || playerTurn || playerHand.isBust()) {
+            return false;
+        }
+        if (playerHand.isBlackjack() || dealerHand.isBlackjack()) {
+            return false;
+        }
+        return dealerPolicy.shouldHit(dealerHand);
+    }
+
+    /**
+     * Dealer takes a card, regardless of policy (used by a human dealer).
+     */
+    public Card dealerHit() {
+        if (!roundStarted || playerTurn) {
+            throw new IllegalStateException("Dealer cannot draw before the player's turn is over.");
+        }
+        byte code = shoe.drawCode();
+        dealerHand.addCode(code);
+        return CardCodes.toCard(code);
+    }
+
+    /**
+     * Draw dealer cards until the dealer policy stands.
+     */
+    public void playDealer() {
+        while (dealerShouldHit()) {
+            dealerHit();
+        }
+    }
+
+    /**
+     * Resolve the round and compute the payout, including luck bonuses.
+     */
+    public RoundResult settle() {
+        if (!roundStarted || playerTurn) {
+            throw new IllegalStateException("Round cannot be settled while the player is acting.");
+        }
+        roundStarted = false;
+
+        int playerValue = playerHand.getValue();
+        int dealerValue = dealerHand.getValue();
+        RoundResult.Outcome outcome = resolveOutcome(playerValue, dealerValue);
+
+        int payout;
+        boolean luckBonus = false;
+        double multiplier = WIN_MULTIPLIERS[luckLevel];
+
+        switch (outcome) {
+            case PLAYER_BLACKJACK -> payout = (int) (bet * 2.5 * multiplier); // Blackjack pays 3:2 + luck bonus
+            case PLAYER_WIN, DEALER_BUST -> payout = (int) (bet * 2 * multiplier);
+            case PUSH, BLACKJACK_PUSH -> {
+                payout = bet;
+                // Lucky and Very Lucky sometimes turn a push into a win
+                if (random.nextDouble() < PUSH_BONUS_CHANCES[luckLevel]) {
+                    payout += bet;
+                    luckBonus = true;
+                }
+            }
+            default -> {
+                payout = 0;
+                // Very Lucky can sometimes save you from a loss
+                if (luckLevel == 3 && random.nextDouble() < VERY_LUCKY_REFUND_CHANCE) {
+                    payout = bet;
+                    luckBonus = true;
+                }
+            }
+        }
+
+        return new RoundResult(outcome, bet, payout, luckBonus, playerValue, dealerValue);
+    }
+
+    /**
+     * Play a whole round without any UI: deal, let the strategy act, run the
+     * dealer and settle.
+     */
+    public RoundResult playRound(int bet, PlayerStrategy strategy) {
+        deal(bet);
+        int upcard = dealerHand.getCode(0);
+
+        // A hard 21 cannot improve, so the player stands automatically (as in the GUI)
+        while (playerTurn && playerHand.getValue() < 21) {
+            Action action = strategy.decide(playerHand, upcard, canDouble());
+            switch (action) {
+                case HIT -> hit();
+                case DOUBLE_DOWN -> {
+                    if (canDouble()) {
+                        doubleDown();
+                    } else {
+                        hit();
+                    }
+                }
+                case STAND -> stand();
+            }
+        }
+        playerTurn = false;
+
+        playDealer();
+        return settle();
+    }
+
+    private RoundResult.Outcome resolveOutcome(int playerValue, int dealerValue) {
+        if (playerHand.isBust()) {
+            return RoundResult.Outcome.PLAYER_BUST;
+        }
+        boolean playerBlackjack = playerHand.isBlackjack();
+        boolean dealerBlackjack = dealerHand.isBlackjack();
+        if (playerBlackjack && dealerBlackjack) {
+            return RoundResult.Outcome.BLACKJACK_PUSH;
+        } else if (playerBlackjack) {
+            return RoundResult.Outcome.PLAYER_BLACKJACK;
+        } else if (dealerBlackjack) {
+            return RoundResult.Outcome.DEALER_BLACKJACK;
+        } else if (dealerHand.isBust()) {
+            return RoundResult.Outcome.DEALER_BUST;
+        } else if (playerValue > dealerValue) {
+            return RoundResult.Outcome.PLAYER_WIN;
+        } else if (playerValue < dealerValue) {
+            return RoundResult.Outcome.DEALER_WIN;
+        }
+        return RoundResult.Outcome.PUSH;
+    }
+
+    private void recordAction(Action action) {
+        if (actionCount == actions.length) {
+            actions = Arrays.copyOf(actions, actionCount * 2);
+        }
+        actions[actionCount++] = (byte) action.ordinal();
+    }
+
+    private void requirePlayerTurn() {
+        if (!playerTurn) {
+            throw new IllegalStateException("It is not the player's turn.");
+        }
+    }
+
+    public Shoe getShoe() {
+        return shoe;
+    }
+
+    public Hand getPlayerHand() {
+        return playerHand;
+    }
+
+    public Hand getDealerHand() {
+        return dealerHand;
+    }
+
+    public int getLuckLevel() {
+        return luckLevel;
+    }
+
+    /**
+     * Number of player actions taken this round.
+     */
+    public int getActionCount() {
+        return actionCount;
+    }
+
+    public Action getAction(int index) {
+        if (index < 0 || index >= actionCount) {
+            throw new IndexOutOfBoundsException("Action " + index + " of " + actionCount);
+        }
+        return Action.values()[actions[index]];
+    }
+
+    public int getBet() {
+        return bet;
+    }
+
+    public boolean isRoundStarted() {
+        return roundStarted;
+    }
+
+    public boolean isPlayerTurn() {
+        return playerTurn;
+    }
+}
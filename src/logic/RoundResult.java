@@ -0,0 +1,45 @@
+package logic;
+
+/**
+ * Settlement of a finished round.
+ *
+ * @param outcome      how the round was decided
+ * @param bet          the final stake, including any double down
+ * @param payout       chips returned to the player (0 on a plain loss)
+ * @param luckBonus    whether a random luck bonus changed the payout
+ * @param playerValue  final player hand value
+ * @param dealerValue  final dealer hand value
+ */
+public record RoundResult(Outcome outcome, int bet, int payout, boolean luckBonus,
+                          int playerValue, int dealerValue) {
+
+    public enum Outcome {
+        PLAYER_BLACKJACK,
+        PLAYER_WIN,
+        DEALER_BUST,
+        PUSH,
+        BLACKJACK_PUSH,
+        DEALER_BLACKJACK,
+        DEALER_WIN,
+        PLAYER_BUST;
+
+        public boolean isPlayerWin() {
+            return this == PLAYER_BLACKJACK || this == PLAYER_WIN || this == DEALER_BUST;
+        }
+
+        public boolean isPush() {
+            return this == PUSH || this == BLACKJACK_PUSH;
+        }
+
+        public boolean isPlayerLoss() {
+            return !isPlayerWin() && !isPush();
+        }
+    }
+
+    /**
+     * Net chip change for the player (payout minus stake).
+     */
+    public int net() {
+        return payout - bet;
+    }
+}
@@ -0,0 +1,250 @@
+package logic;
+
+import data.CardCodes;
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Live statistics for a playing session: rounds and outcomes, net result,
+ * bet sizes, time per decision and the dealer's bust rate for each upcard.
+ *
+ * Every counter is a {@link LongAdder} and histograms have fixed buckets,
+ * so recording allocates nothing and never takes a lock; any thread (a
+ * stats screen, a server's monitoring) can take a {@link #snapshot()}
+ * without stalling the game. A snapshot taken while a round is being
+ * recorded may count part of that round.
+ */
+public class SessionStats {
+
+    /** Upper bounds of the bet size buckets; the last bucket is open-ended. */
+    public static final long[] BET_BUCKETS = {5, 10, 25, 50, 100, 250, 500, 1000};
+    /** Upper bounds of the decision time buckets in milliseconds. */
+    public static final long[] DECISION_MS_BUCKETS = {250, 500, 1000, 2000, 5000, 10_000, 30_000};
+
+    private static final int UPCARDS = 10; // Dealer upcard values 2-11
+
+    /**
+     * Counts of values falling into fixed buckets.
+     */
+    public static final class Histogram {
+        private final long[] bounds;
+        private final LongAdder[] counts;
+        private final LongAdder sum = new LongAdder();
+
+        /**
+         * @param bounds  inclusive upper bound of each bucket, ascending; one
+         *                more bucket holds everything above the last bound
+         */
+        public Histogram(long[] bounds) {
+            this.bounds = bounds.clone();
+            this.counts = new LongAdder[bounds.length + 1];
+            for (int i = 0; i < counts.length; i++) {
+                counts[i] = new LongAdder();
+            }
+        }
+
+        public void record(long value) {
+            int bucket = Arrays.binarySearch(bounds, value);
+            counts[bucket >= 0 ? bucket : -bucket - 1].increment();
+            sum.add(value);
+        }
+
+        public HistogramSnapshot snapshot() {
+            long[] snapshot = new long[counts.length];
+            for (int i = 0; i < counts.length; i++) {
+                snapshot[i] = counts[i].sum();
+            }
+            return new HistogramSnapshot(bounds.clone(), snapshot, sum.sum());
+        }
+    }
+
+    /**
+     * Bucket counts at one moment.
+     *
+     * @param bounds  inclusive upper bound of each bucket but the last
+     */
+    public record HistogramSnapshot(long[] bounds, long[] counts, long sum) {
+        public long total() {
+            long total = 0;
+            for (long count : counts) {
+                total += count;
+            }
+            return total;
+        }
+
+        public double mean() {
+            long total = total();
+            return total == 0 ? 0 : (double) sum / total;
+        }
+
+        /**
+         * Upper bound of the bucket holding the given percentile, or -1 if
+         * it falls in the open-ended last bucket or nothing was recorded.
+         */
+        public long percentileBound(double percentile) {
+            long total = total();
+            if (total == 0) {
+                return -1;
+            }
+            long target = (long) Math.ceil(total * percentile / 100);
+            long seen = 0;
+            for (int i = 0; i < bounds.length; i++) {
+                seen += counts[i];
+                if (seen >= target) {
+                    return bounds[i];
+                }
+            }
+            return -1;
+        }
+    }
+
+    /**
+     * All statistics at one moment.
+     *
+     * @param dealerRounds  rounds the dealer played out, by upcard value 2-11
+     * @param dealerBusts   of those, rounds the dealer busted
+     */
+    public record Snapshot(long rounds, long wins, long pushes, long losses, long blackjacks, long luckBonuses,
+                           long totalBet, long net, HistogramSnapshot bets, HistogramSnapshot decisionMillis,
+                           long[] dealerRounds, long[] dealerBusts) {
+        public double winRate() {
+            return rounds == 0 ? 0 : (double) wins / rounds;
+        }
+
+        /**
+         * Fraction of played-out rounds the dealer busted with this upcard value (2-11).
+         */
+        public double dealerBustRate(int upcardValue) {
+            int index = upcardValue - 2;
+            return dealerRounds[index] == 0 ? 0 : (double) dealerBusts[index] / dealerRounds[index];
+        }
+
+        /**
+         * Multi-line text for a stats screen or a server log.
+         */
+        public String format() {
+            StringBuilder text = new StringBuilder();
+            text.append(String.format("Rounds played:   %d%n", rounds));
+            text.append(String.format("Won / push / lost: %d / %d / %d (%.1f%% won)%n",
+                    wins, pushes, losses, 100 * winRate()));
+            text.append(String.format("Blackjacks:      %d%n", blackjacks));
+            text.append(String.format("Luck bonuses:    %d%n", luckBonuses));
+            text.append(String.format("Total bet:       $%d%n", totalBet));
+            text.append(String.format("Net result:      %s$%d%n", net < 0 ? "-" : "+", Math.abs(net)));
+            text.append(String.format("Average bet:     $%.2f%n", bets.mean()));
+
+            text.append(String.format("%nBet sizes:%n"));
+            appendHistogram(text, bets, "$", "");
+            text.append(String.format("%nTime per decision (average %.1f s):%n", decisionMillis.mean() / 1000));
+            appendHistogram(text, decisionMillis, "", " ms");
+
+            text.append(String.format("%nDealer bust rate by upcard:%n"));
+            for (int value = 2; value <= 11; value++) {
+                long played = dealerRounds[value - 2];
+                text.append(String.format("  %-3s %5.1f%%  (%d rounds)%n", value == 11 ? "A" : String.valueOf(value),
+                        100 * dealerBustRate(value), played));
+            }
+            return text.toString();
+        }
+
+        private static void appendHistogram(StringBuilder text, HistogramSnapshot histogram, String prefix,
+                                            String suffix) {
+            long total = histogram.total();
+            long[] bounds = histogram.bounds();
+            long[] counts = histogram.counts();
+            for (int i = 0; i < counts.length; i++) {
+                String label = i < bounds.length
+                        ? "<= " + prefix + bounds[i] + suffix
+                        : "> " + prefix + bounds[bounds.length - 1] + suffix;
+                text.append(String.format("  %-12s %6d  %5.1f%%%n", label, counts[i],
+                        total == 0 ? 0.0 : 100.0 * counts[i] / total));
+            }
+        }
+    }
+
+    private final LongAdder rounds = new LongAdder();
+    private final LongAdder wins = new LongAdder();
+    private final LongAdder pushes = new LongAdder();
+    private final LongAdder losses = new LongAdder();
+    private final LongAdder blackjacks = new LongAdder();
+    private final LongAdder luckBonuses = new LongAdder();
+    private final LongAdder totalBet = new LongAdder();
+    private final LongAdder net = new LongAdder();
+    private final Histogram bets = new Histogram(BET_BUCKETS);
+    private final Histogram decisionMillis = new Histogram(DECISION_MS_BUCKETS);
+    private final LongAdder[] dealerRounds = new LongAdder[UPCARDS];
+    private final LongAdder[] dealerBusts = new LongAdder[UPCARDS];
+
+    public SessionStats() {
+        for (int i = 0; i < UPCARDS; i++) {
+            dealerRounds[i] = new LongAdder();
+            dealerBusts[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * Record a settled round.
+     *
+     * @param dealerUpcard  the dealer's face-up card as a {@link CardCodes} byte code
+     * @param dealerPlayed  whether the dealer drew out the hand (not after a
+     *                      player bust or a blackjack on the table)
+     * @param dealerBust    whether the dealer's hand busted
+     */
+    public void recordRound(RoundResult result, int dealerUpcard, boolean dealerPlayed, boolean dealerBust) {
+        rounds.increment();
+        RoundResult.Outcome outcome = result.outcome();
+        if (outcome.isPlayerWin()) {
+            wins.increment();
+        } else if (outcome.isPush()) {
+            pushes.increment();
+        } else {
+            losses.increment();
+        }
+        if (outcome == RoundResult.Outcome.PLAYER_BLACKJACK) {
+            blackjacks.increment();
+        }
+        if (result.luckBonus()) {
+            luckBonuses.increment();
+        }
+        totalBet.add(result.bet());
+        net.add(result.net());
+        bets.record(result.bet());
+
+        if (dealerPlayed) {
+            int index = CardCodes.value(dealerUpcard) - 2;
+            dealerRounds[index].increment();
+            if (dealerBust) {
+                dealerBusts[index].increment();
+            }
+        }
+    }
+
+    /**
+     * Record the round the engine has just settled.
+     */
+    public void recordRound(RoundEngine engine, RoundResult result) {
+        Hand player = engine.getPlayerHand();
+        Hand dealer = engine.getDealerHand();
+        boolean dealerPlayed = !player.isBust() && !player.isBlackjack() && !dealer.isBlackjack();
+        recordRound(result, dealer.getCode(0), dealerPlayed, dealer.isBust());
+    }
+
+    /**
+     * Record how long the player took to choose an action.
+     */
+    public void recordDecision(long nanos) {
+        decisionMillis.record(nanos / 1_000_000);
+    }
+
+    public Snapshot snapshot() {
+        long[] played = new long[UPCARDS];
+        long[] busted = new long[UPCARDS];
+        for (int i = 0; i < UPCARDS; i++) {
+            played[i] = dealerRounds[i].sum();
+            busted[i] = dealerBusts[i].sum();
+        }
+        return new Snapshot(rounds.sum(), wins.sum(), pushes.sum(), losses.sum(), blackjacks.sum(),
+                luckBonuses.sum(), totalBet.sum(), net.sum(), bets.snapshot(), decisionMillis.snapshot(),
+                played, busted);
+    }
+}
@@ -0,0 +1,192 @@
+package logic;
+
+import data.Card;
+import data.CardCodes;
+import java.util.Arrays;
+import java.util.random.RandomGenerator;
+
+/**
+ * Multi-deck dealing shoe with a cut card. The shoe persists across rounds
+ * and is only reshuffled at the start of a round once the cut card has come
+ * out, like at a real table. Remaining composition is tracked per rank so
+ * counting and simulation tools can observe the shoe.
+ *
+ * Shuffling is lazy: each draw swaps a random undealt card into place
+ * (Fisher-Yates one step at a time), so the order is distributed exactly
+ * like a full shuffle but a round only pays for the cards it deals.
+ *
+ * Every shuffle draws a fresh seed, so a shoe can be replayed exactly with
+ * {@link #shuffle(long)} and the seed from {@link #getShuffleSeed()}.
+ */
+public class Shoe {
+    public static final int MIN_DECKS = 1;
+    public static final int MAX_DECKS = 8;
+
+    private final byte[] cards;
+    private final int cutCardPosition;
+    private final RandomGenerator random;
+    private RandomGenerator shuffleRandom;
+    private long shuffleSeed;
+    private final int[] remainingByRank = new int[CardCodes.RANK_COUNT];
+
+    private int position = 0;   // Next card to deal
+    private int roundStart = 0; // First card dealt in the current round
+    private boolean cutCardReached = false;
+    private boolean reshuffleNeeded = true;
+    private int shuffleCount = 0;
+
+    /**
+     * @param decks        number of 52-card decks (1-8)
+     * @param penetration  fraction of the shoe dealt before the cut card (0-1]
+     */
+    public Shoe(int decks, double penetration, RandomGenerator random) {
+        if (decks < MIN_DECKS || decks > MAX_DECKS) {
+            throw new IllegalArgumentException("Decks must be between " + MIN_DECKS + " and " + MAX_DECKS + ".");
+        }
+        if (!(penetration > 0 && penetration <= 1)) {
+            throw new IllegalArgumentException("Penetration must be in (0, 1].");
+        }
+        this.cards = CardCodes.newDecks(decks);
+        this.cutCardPosition = Math.max(1, (int) Math.round(cards.length * penetration));
+        this.random = random;
+    }
+
+    /**
+     * Call before dealing a round: reshuffles if the cut card came out.
+     */
+    public void beginRound() {
+        if (reshuffleNeeded || cutCardReached) {
+            shuffle();
+        }
+        roundStart = position;
+    }
+
+    /**
+     * Gather every card and shuffle the whole shoe with a new seed.
+     */
+    public void shuffle() {
+        shuffle(random.nextLong());
+    }
+
+    /**
+     * Gather every card and shuffle the whole shoe from a known seed.
+     */
+    public void shuffle(long seed) {
+        // Start from the ordered shoe so the seed alone determines the order
+        for (int i = 0; i < cards.length; i++) {
+            cards[i] = (byte) (i % CardCodes.DECK_SIZE);
+        }
+        shuffleSeed = seed;
+        shuffleRandom = GameRandom.create(seed);
+        position = 0;
+        roundStart = 0;
+        cutCardReached = false;
+        reshuffleNeeded = false;
+        shuffleCount++;
+        Arrays.fill(remainingByRank, cards.length / CardCodes.RANK_COUNT);
+    }
+
+    public Card draw() {
+        return CardCodes.toCard(drawCode());
+    }
+
+    public byte drawCode() {
+        if (position >= cards.length) {
+            reshuffleDiscards();
+        }
+        // Lazy Fisher-Yates step: pick any undealt card
+        int j = position + shuffleRandom.nextInt(cards.length - position);
+        byte code = cards[j];
+        cards[j] = cards[position];
+        cards[position++] = code;
+        remainingByRank[code % CardCodes.RANK_COUNT]--;
+        if (position == cutCardPosition) {
+            cutCardReached = true;
+        }
+        return code;
+    }
+
+    /**
+     * The shoe ran out mid-round: keep the cards on the table and reshuffle
+     * only the discards from earlier rounds. The full shoe is reshuffled
+     * before the next round.
+     */
+    private void reshuffleDiscards() {
+        int inPlay = position - roundStart;
+        if (roundStart == 0) {
+            throw new IllegalStateException("No more cards in the shoe.");
+        }
+
+        // Move the cards on the table to the front, discards after them
+        byte[] table = new byte[inPlay];
+        System.arraycopy(cards, roundStart, table, 0, inPlay);
+        System.arraycopy(cards, 0, cards, inPlay, roundStart);
+        System.arraycopy(table, 0, cards, 0, inPlay);
+
+        // Draws pick randomly among the discards, so no shuffle pass is needed
+        position = inPlay;
+        roundStart = 0;
+        reshuffleNeeded = true;
+        recount();
+    }
+
+    private void recount() {
+        Arrays.fill(remainingByRank, 0);
+        for (int i = position; i < cards.length; i++) {
+            remainingByRank[cards[i] % CardCodes.RANK_COUNT]++;
+        }
+    }
+
+    public int getDeckCount() {
+        return cards.length / CardCodes.DECK_SIZE;
+    }
+
+    public int getSize() {
+        return cards.length;
+    }
+
+    public int getCutCardPosition() {
+        return cutCardPosition;
+    }
+
+    public boolean isCutCardReached() {
+        return cutCardReached;
+    }
+
+    public int getCardsDealt() {
+        return position;
+    }
+
+    public int getCardsRemaining() {
+        return cards.length - position;
+    }
+
+    /**
+     * Undealt cards of a rank, indexed by {@link data.Rank} ordinal.
+     */
+    public int getRemaining(int rankOrdinal) {
+        return remainingByRank[rankOrdinal];
+    }
+
+    /**
+     * Seed of the last full shuffle.
+     */
+    public long getShuffleSeed() {
+        return shuffleSeed;
+    }
+
+    /**
+     * Position of the first card of the current round. Together with the
+     * shuffle seed this identifies the hand for replay.
+     */
+    public int getRoundStart() {
+        return roundStart;
+    }
+
+    /**
+     * Number of times the whole shoe has been shuffled.
+     */
+    public int getShuffleCount() {
+        return shuffleCount;
+    }
+}
@@ -0,0 +1,766 @@
+package logic.history;
+
+import data.CardCodes;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+import logic.DealerPolicy;
+import logic.Hand;
+import logic.RoundEngine;
+import logic.RoundResult;
+import logic.strategy.BasicStrategy;
+
+/**
+ * Append-only history of played rounds. Rounds are buffered into blocks of
+ * a few thousand and each block is written column by column (player ids,
+ * times, bets, outcomes, cards, ...) with variable-length integers, so a
+ * round takes around twenty bytes and an analytics query only decodes the
+ * columns it needs.
+ *
+ * Every block header lists its time range and the players in it. The
+ * headers are read into memory when the store opens and act as the index:
+ * a query for one player or time range skips every block that cannot match
+ * without reading it. Block bodies carry a CRC32, and a block cut short by a
+ * crash is dropped on open.
+ *
+ * A partial block is written at least every flush interval and when the
+ * JVM shuts down, so a crash loses at most the last few seconds of rounds.
+ * If a block cannot be written its rounds stay buffered, and the write is
+ * retried by the next append or flush before anything else is accepted.
+ *
+ * Usage: java -cp bin logic.history.HandHistoryStore [--dir=PATH]
+ *        [--player=ID | --name=NAME] [--from=MILLIS] [--to=MILLIS] [--generate=N]
+ */
+public class HandHistoryStore implements AutoCloseable {
+
+    public static final String DATA_FILE = "handhistory.dat";
+    public static final int DEFAULT_BLOCK_ROUNDS = 4096;
+    public static final long DEFAULT_FLUSH_INTERVAL_MS = 5000;
+    public static final int ANY_PLAYER = -1;
+    public static final int LOCAL_PLAYER = 0; // The single player of the desktop game
+
+    private static final int MAGIC = 0x424A4848; // "BJHH"
+    /** magic, rounds, min time, max time, player count, body length, body CRC32 */
+    private static final int HEADER_SIZE = 36;
+
+    // Column order within a block body; each column is prefixed by its length
+    private static final int PLAYERS = 0;   // varint
+    private static final int TIMES = 1;     // zigzag varint delta from the previous round (from 0 for the first)
+    private static final int POLICY = 2;    // DealerPolicy ordinal
+    private static final int LUCK = 3;      // luck level
+    private static final int BET = 4;       // varint
+    private static final int PAYOUT = 5;    // varint
+    private static final int OUTCOME = 6;   // Outcome ordinal, high bit set for a luck bonus
+    private static final int VALUES = 7;    // player value, dealer value
+    private static final int COUNTS = 8;    // player cards, dealer cards, actions
+    private static final int CARDS = 9;     // CardCodes bytes, player's then dealer's
+    private static final int ACTIONS = 10;  // Action ordinals
+    private static final int COLUMNS = 11;
+
+    private static final RoundResult.Outcome[] OUTCOMES = RoundResult.Outcome.values();
+    private static final RoundEngine.Action[] ACTIONS_BY_ORDINAL = RoundEngine.Action.values();
+    private static final DealerPolicy[] POLICIES = DealerPolicy.values();
+
+    /**
+     * One stored round.
+     *
+     * @param playerCards  {@link CardCodes} byte codes in dealing order
+     * @param dealerCards  {@link CardCodes} byte codes in dealing order
+     */
+    public record Round(int playerId, long timeMillis, DealerPolicy policy, int luckLevel, int bet, int payout,
+                        RoundResult.Outcome outcome, boolean luckBonus, int playerValue, int dealerValue,
+                        byte[] playerCards, byte[] dealerCards, List<RoundEngine.Action> actions) {
+    }
+
+    /**
+     * Rounds to scan: one player or {@link #ANY_PLAYER}, within an
+     * inclusive time range.
+     */
+    public record Query(int playerId, long fromMillis, long toMillis) {
+        public static Query all() {
+            return new Query(ANY_PLAYER, Long.MIN_VALUE, Long.MAX_VALUE);
+        }
+
+        public static Query player(int playerId) {
+            return new Query(playerId, Long.MIN_VALUE, Long.MAX_VALUE);
+        }
+
+        public Query between(long from, long to) {
+            return new Query(playerId, from, to);
+        }
+
+        boolean matches(int player, long time) {
+            return (playerId == ANY_PLAYER || player == playerId) && time >= fromMillis && time <= toMillis;
+        }
+    }
+
+    /**
+     * Totals over a set of rounds.
+     */
+    public record Summary(long rounds, long wins, long pushes, long losses, long luckBonuses,
+                          long totalBet, long totalPayout) {
+        public double winRate() {
+            return rounds == 0 ? 0 : (double) wins / rounds;
+        }
+
+        public double averageBet() {
+            return rounds == 0 ? 0 : (double) totalBet / rounds;
+        }
+
+        /**
+         * Net chips won by the players (negative when the house is ahead).
+         */
+        public long net() {
+            return totalPayout - totalBet;
+        }
+    }
+
+    /**
+     * Header of a written block, kept in memory as the index.
+     */
+    private record BlockInfo(long offset, int rounds, long minTime, long maxTime, int[] players, int bodyLength,
+                             int checksum) {
+        boolean mayMatch(Query query) {
+            return maxTime >= query.fromMillis() && minTime <= query.toMillis()
+                    && (query.playerId() == ANY_PLAYER || Arrays.binarySearch(players, query.playerId()) >= 0);
+        }
+
+        long bodyOffset() {
+            return offset + HEADER_SIZE + (long) players.length * Integer.BYTES;
+        }
+    }
+
+    private final FileChannel channel;
+    private final int blockRounds;
+    private final List<BlockInfo> blocks = new ArrayList<>();
+    private final CRC32 crc = new CRC32();
+    private final ScheduledExecutorService flusher;
+    private final Thread shutdownHook;
+    private boolean closed = false;
+
+    // Block being filled
+    private final ColumnWriter[] columns = new ColumnWriter[COLUMNS];
+    private int[] pendingPlayers;
+    private int pendingRounds;
+    private long pendingMinTime;
+    private long pendingMaxTime;
+    private long lastTime;
+
+    private long size;
+
+    public HandHistoryStore(Path directory) throws IOException {
+        this(directory, DEFAULT_BLOCK_ROUNDS, DEFAULT_FLUSH_INTERVAL_MS);
+    }
+
+    /**
+     * Open the history in a directory, reading the block headers.
+     *
+     * @param blockRounds          rounds buffered in memory before a block is written
+     * @param flushIntervalMillis  longest a round stays only in memory, or 0
+     *                             to write partial blocks only on flush and close
+     */
+    public HandHistoryStore(Path directory, int blockRounds, long flushIntervalMillis) throws IOException {
+        if (blockRounds < 1) {
+            throw new IllegalArgumentException("Block size must be positive.");
+        }
+        if (flushIntervalMillis < 0) {
+            throw new IllegalArgumentException("Flush interval cannot be negative.");
+        }
+        this.blockRounds = blockRounds;
+        this.pendingPlayers = new int[blockRounds];
+        for (int i = 0; i < COLUMNS; i++) {
+            columns[i] = new ColumnWriter();
+        }
+        channel = FileChannel.open(directory.resolve(DATA_FILE), StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        loadIndex();
+
+        if (flushIntervalMillis > 0) {
+            flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "HandHistoryStore-flush");
+                t.setDaemon(true);
+                return t;
+            });
+            flusher.scheduleWithFixedDelay(this::flushPending, flushIntervalMillis, flushIntervalMillis,
+                    TimeUnit.MILLISECONDS);
+        } else {
+            flusher = null;
+        }
+        shutdownHook = new Thread(this::closeQuietly, "HandHistoryStore-shutdown");
+        Runtime.getRuntime().addShutdownHook(shutdownHook);
+    }
+
+    private void loadIndex() throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        long fileSize = channel.size();
+        long position = 0;
+        while (position + HEADER_SIZE <= fileSize) {
+            header.clear();
+            channel.read(header, position);
+            header.flip();
+            if (header.getInt() != MAGIC) {
+                break;
+            }
+            int rounds = header.getInt();
+            long minTime = header.getLong();
+            long maxTime = header.getLong();
+            int playerCount = header.getInt();
+            int bodyLength = header.getInt();
+            int checksum = header.getInt();
+            long end = position + HEADER_SIZE + (long) playerCount * Integer.BYTES + bodyLength;
+            if (rounds <= 0 || playerCount <= 0 || bodyLength <= 0 || end > fileSize) {
+                break;
+            }
+            ByteBuffer ids = ByteBuffer.allocate(playerCount * Integer.BYTES);
+            channel.read(ids, position + HEADER_SIZE);
+            ids.flip();
+            int[] players = new int[playerCount];
+            ids.asIntBuffer().get(players);
+            blocks.add(new BlockInfo(position, rounds, minTime, maxTime, players, bodyLength, checksum));
+            position = end;
+        }
+        if (position != fileSize) {
+            System.err.println("Discarding " + (fileSize - position) + " bytes of damaged hand history.");
+            channel.truncate(position);
+        }
+        size = position;
+    }
+
+    // ---------- Writing ----------
+
+    /**
+     * Player id of a named player, the same in every run. Distinct names
+     * share an id only on a rare hash collision.
+     *
+     * @return a positive id, never {@link #LOCAL_PLAYER}
+     */
+    public static int playerId(String name) {
+        int id = name.hashCode() & Integer.MAX_VALUE;
+        return id == LOCAL_PLAYER ? 1 : id;
+    }
+
+    /**
+     * Record the round the engine has just settled.
+     */
+    public void record(int playerId, RoundEngine engine, RoundResult result) throws IOException {
+        Hand player = engine.getPlayerHand();
+        Hand dealer = engine.getDealerHand();
+        byte[] playerCards = new byte[player.getCardCount()];
+        for (int i = 0; i < playerCards.length; i++) {
+            playerCards[i] = player.getCode(i);
+        }
+        byte[] dealerCards = new byte[dealer.getCardCount()];
+        for (int i = 0; i < dealerCards.length; i++) {
+            dealerCards[i] = dealer.getCode(i);
+        }
+        List<RoundEngine.Action> actions = new ArrayList<>(engine.getActionCount());
+        for (int i = 0; i < engine.getActionCount(); i++) {
+            actions.add(engine.getAction(i));
+        }
+        append(new Round(playerId, System.currentTimeMillis(), engine.getDealerPolicy(), engine.getLuckLevel(),
+                result.bet(), result.payout(), result.outcome(), result.luckBonus(),
+                result.playerValue(), result.dealerValue(), playerCards, dealerCards, actions));
+    }
+
+    /**
+     * Add a round. It is buffered and written when its block fills; use
+     * {@link #flush()} to write and sync a partial block.
+     *
+     * @throws IOException if a full block could not be written; the round
+     *                     is kept if it was already buffered, and is not
+     *                     added if an earlier block still cannot be written
+     */
+    public synchronized void append(Round round) throws IOException {
+        if (round.playerId() < 0) {
+            throw new IllegalArgumentException("Player id cannot be negative.");
+        }
+        if (closed) {
+            throw new IllegalStateException("Hand history is closed.");
+        }
+        if (pendingRounds == blockRounds) {
+            writeBlock(); // Retry a block whose write failed
+        }
+        long time = round.timeMillis();
+        if (pendingRounds == 0) {
+            pendingMinTime = time;
+            pendingMaxTime = time;
+            lastTime = 0;
+        }
+        pendingMinTime = Math.min(pendingMinTime, time);
+        pendingMaxTime = Math.max(pendingMaxTime, time);
+        pendingPlayers[pendingRounds++] = round.playerId();
+
+        columns[PLAYERS].putVarint(round.playerId());
+        columns[TIMES].putVarLong(zigzag(time - lastTime));
+        lastTime = time;
+        columns[POLICY].put(round.policy().ordinal());
+        columns[LUCK].put(round.luckLevel());
+        columns[BET].putVarint(round.bet());
+        columns[PAYOUT].putVarint(round.payout());
+        columns[OUTCOME].put(round.outcome().ordinal() | (round.luckBonus() ? 0x80 : 0));
+        columns[VALUES].put(round.playerValue());
+        columns[VALUES].put(round.dealerValue());
+        columns[COUNTS].put(round.playerCards().length);
+        columns[COUNTS].put(round.dealerCards().length);
+        columns[COUNTS].put(round.actions().size());
+        columns[CARDS].put(round.playerCards());
+        columns[CARDS].put(round.dealerCards());
+        for (RoundEngine.Action action : round.actions()) {
+            columns[ACTIONS].put(action.ordinal());
+        }
+
+        if (pendingRounds == blockRounds) {
+            writeBlock();
+        }
+    }
+
+    /**
+     * Write the buffered rounds as a block at the end of the file. On failure
+     * nothing is cleared, and a retry writes over whatever part was written.
+     */
+    private void writeBlock() throws IOException {
+        byte[] body = encodeBody();
+        int[] players = distinctPlayers();
+        crc.reset();
+        crc.update(body);
+        int checksum = (int) crc.getValue();
+
+        ByteBuffer block = ByteBuffer.allocate(HEADER_SIZE + players.length * Integer.BYTES + body.length);
+        block.putInt(MAGIC).putInt(pendingRounds).putLong(pendingMinTime).putLong(pendingMaxTime)
+                .putInt(players.length).putInt(body.length).putInt(checksum);
+        for (int player : players) {
+            block.putInt(player);
+        }
+        block.put(body);
+        block.flip();
+
+        long position = size;
+        while (block.hasRemaining()) {
+            position += channel.write(block, position);
+        }
+        blocks.add(new BlockInfo(size, pendingRounds, pendingMinTime, pendingMaxTime, players, body.length, checksum));
+        size = position;
+
+        pendingRounds = 0;
+        for (ColumnWriter column : columns) {
+            column.clear();
+        }
+    }
+
+    private byte[] encodeBody() {
+        int length = 0;
+        for (ColumnWriter column : columns) {
+            length += Integer.BYTES + column.size;
+        }
+        ByteBuffer body = ByteBuffer.allocate(length);
+        for (ColumnWriter column : columns) {
+            body.putInt(column.size).put(column.bytes, 0, column.size);
+        }
+        return body.array();
+    }
+
+    private int[] distinctPlayers() {
+        int[] sorted = Arrays.copyOf(pendingPlayers, pendingRounds);
+        Arrays.sort(sorted);
+        int distinct = 0;
+        for (int i = 0; i < sorted.length; i++) {
+            if (i == 0 || sorted[i] != sorted[i - 1]) {
+                sorted[distinct++] = sorted[i];
+            }
+        }
+        return Arrays.copyOf(sorted, distinct);
+    }
+
+    /**
+     * Write the partial block, if any, and sync the file.
+     */
+    public synchronized void flush() throws IOException {
+        if (pendingRounds > 0) {
+            writeBlock();
+        }
+        channel.force(false);
+    }
+
+    private synchronized void flushPending() {
+        if (closed || pendingRounds == 0) {
+            return;
+        }
+        try {
+            flush();
+        } catch (IOException e) {
+            System.err.println("Error writing hand history: " + e.getMessage());
+        }
+    }
+
+    // ---------- Reading ----------
+
+    /**
+     * Visit every round matching the query, oldest block first.
+     */
+    public void forEach(Query query, Consumer<Round> visitor) throws IOException {
+        scan(query, reader -> {
+            int player = reader.varint(PLAYERS);
+            long time = reader.time();
+            DealerPolicy policy = POLICIES[reader.next(POLICY)];
+            int luck = reader.next(LUCK);
+            int bet = reader.varint(BET);
+            int payout = reader.varint(PAYOUT);
+            int outcome = reader.next(OUTCOME);
+            int playerValue = reader.next(VALUES);
+            int dealerValue = reader.next(VALUES);
+            byte[] playerCards = reader.bytes(CARDS, reader.next(COUNTS));
+            byte[] dealerCards = reader.bytes(CARDS, reader.next(COUNTS));
+            int actionCount = reader.next(COUNTS);
+            RoundEngine.Action[] actions = new RoundEngine.Action[actionCount];
+            for (int i = 0; i < actionCount; i++) {
+                actions[i] = ACTIONS_BY_ORDINAL[reader.next(ACTIONS)];
+            }
+            if (query.matches(player, time)) {
+                visitor.accept(new Round(player, time, policy, luck, bet, payout, OUTCOMES[outcome & 0x7f],
+                        (outcome & 0x80) != 0, playerValue, dealerValue, playerCards, dealerCards,
+                        Collections.unmodifiableList(Arrays.asList(actions))));
+            }
+        });
+    }
+
+    /**
+     * Totals per dealer policy for the rounds matching the query. Only the
+     * player, time, policy, bet, payout and outcome columns are decoded.
+     */
+    public Map<DealerPolicy, Summary> summarizeByPolicy(Query query) throws IOException {
+        long[][] tallies = new long[POLICIES.length][7];
+        scan(query, reader -> {
+            int player = reader.varint(PLAYERS);
+            long time = reader.time();
+            int policy = reader.next(POLICY);
+            int bet = reader.varint(BET);
+            int payout = reader.varint(PAYOUT);
+            int outcome = reader.next(OUTCOME);
+            if (query.matches(player, time)) {
+                long[] tally = tallies[policy];
+                RoundResult.Outcome result = OUTCOMES[outcome & 0x7f];
+                tally[0]++;
+                tally[result.isPlayerWin() ? 1 : result.isPush() ? 2 : 3]++;
+                tally[4] += outcome >>> 7;
+                tally[5] += bet;
+                tally[6] += payout;
+            }
+        });
+
+        Map<DealerPolicy, Summary> summaries = new EnumMap<>(DealerPolicy.class);
+        for (DealerPolicy policy : POLICIES) {
+            long[] t = tallies[policy.ordinal()];
+            if (t[0] > 0) {
+                summaries.put(policy, new Summary(t[0], t[1], t[2], t[3], t[4], t[5], t[6]));
+            }
+        }
+        return summaries;
+    }
+
+    /**
+     * Totals over every policy for the rounds matching the query.
+     */
+    public Summary summarize(Query query) throws IOException {
+        long[] t = new long[7];
+        for (Summary s : summarizeByPolicy(query).values()) {
+            t[0] += s.rounds();
+            t[1] += s.wins();
+            t[2] += s.pushes();
+            t[3] += s.losses();
+            t[4] += s.luckBonuses();
+            t[5] += s.totalBet();
+            t[6] += s.totalPayout();
+        }
+        return new Summary(t[0], t[1], t[2], t[3], t[4], t[5], t[6]);
+    }
+
+    /**
+     * Run the row visitor over each block the index says may match, then
+     * over the rounds that were buffered in memory when the scan started.
+     * Only taking that snapshot holds the lock, so a long scan never holds
+     * up appends; written blocks never change and are read without it.
+     */
+    private void scan(Query query, Consumer<BlockReader> row) throws IOException {
+        List<BlockInfo> written;
+        byte[] pendingBody;
+        int pendingCount;
+        synchronized (this) {
+            written = List.copyOf(blocks);
+            pendingCount = pendingRounds;
+            pendingBody = pendingCount > 0 ? encodeBody() : null;
+        }
+
+        byte[] buffer = new byte[0];
+        CRC32 checksum = new CRC32();
+        for (BlockInfo block : written) {
+            if (!block.mayMatch(query)) {
+                continue;
+            }
+            if (buffer.length < block.bodyLength()) {
+                buffer = new byte[block.bodyLength()];
+            }
+            if (!readBody(block, buffer, checksum)) {
+                continue;
+            }
+            BlockReader reader = new BlockReader(buffer);
+            for (int i = 0; i < block.rounds(); i++) {
+                row.accept(reader);
+            }
+        }
+        if (pendingBody != null) {
+            BlockReader reader = new BlockReader(pendingBody);
+            for (int i = 0; i < pendingCount; i++) {
+                row.accept(reader);
+            }
+        }
+    }
+
+    private boolean readBody(BlockInfo block, byte[] buffer, CRC32 checksum) throws IOException {
+        ByteBuffer buf = ByteBuffer.wrap(buffer, 0, block.bodyLength());
+        long position = block.bodyOffset();
+        while (buf.hasRemaining()) {
+            int read = channel.read(buf, position);
+            if (read < 0) {
+                throw new IOException("Hand history ends inside a block.");
+            }
+            position += read;
+        }
+        checksum.reset();
+        checksum.update(buffer, 0, block.bodyLength());
+        if ((int) checksum.getValue() != block.checksum()) {
+            System.err.println("Skipping corrupt hand history block at " + block.offset() + ".");
+            return false;
+        }
+        return true;
+    }
+
+    public synchronized long getRoundCount() {
+        long rounds = pendingRounds;
+        for (BlockInfo block : blocks) {
+            rounds += block.rounds();
+        }
+        return rounds;
+    }
+
+    public synchronized int getBlockCount() {
+        return blocks.size();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        if (flusher != null) {
+            flusher.shutdown();
+        }
+        try {
+            Runtime.getRuntime().removeShutdownHook(shutdownHook);
+        } catch (IllegalStateException e) {
+            // Already shutting down; this is the hook
+        }
+        try {
+            flush();
+        } finally {
+            closed = true;
+            channel.close();
+        }
+    }
+
+    private void closeQuietly() {
+        try {
+            close();
+        } catch (IOException e) {
+            System.err.println("Error closing hand history: " + e.getMessage());
+        }
+    }
+
+    // ---------- Encoding ----------
+
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    /**
+     * Growable byte column.
+     */
+    private static final class ColumnWriter {
+        byte[] bytes = new byte[1024];
+        int size;
+
+        void put(int b) {
+            if (size == bytes.length) {
+                bytes = Arrays.copyOf(bytes, size * 2);
+            }
+            bytes[size++] = (byte) b;
+        }
+
+        void put(byte[] values) {
+            if (size + values.length > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, size + values.length));
+            }
+            System.arraycopy(values, 0, bytes, size, values.length);
+            size += values.length;
+        }
+
+        void putVarint(int value) {
+            putVarLong(value & 0xffffffffL);
+        }
+
+        void putVarLong(long value) {
+            while ((value & ~0x7fL) != 0) {
+                put((int) (value & 0x7f) | 0x80);
+                value >>>= 7;
+            }
+            put((int) value);
+        }
+
+        void clear() {
+            size = 0;
+        }
+    }
+
+    /**
+     * Cursor over each column of a block body.
+     */
+    private static final class BlockReader {
+        private final byte[] body;
+        private final int[] position = new int[COLUMNS];
+        private long previousTime;
+
+        BlockReader(byte[] body) {
+            this.body = body;
+            int offset = 0;
+            for (int i = 0; i < COLUMNS; i++) {
+                int length = ByteBuffer.wrap(body, offset, Integer.BYTES).getInt();
+                position[i] = offset + Integer.BYTES;
+                offset += Integer.BYTES + length;
+            }
+        }
+
+        int next(int column) {
+            return body[position[column]++] & 0xff;
+        }
+
+        byte[] bytes(int column, int count) {
+            byte[] values = Arrays.copyOfRange(body, position[column], position[column] + count);
+            position[column] += count;
+            return values;
+        }
+
+        long varLong(int column) {
+            long value = 0;
+            int shift = 0;
+            int b;
+            do {
+                b = body[position[column]++];
+                value |= (long) (b & 0x7f) << shift;
+                shift += 7;
+            } while ((b & 0x80) != 0);
+            return value;
+        }
+
+        int varint(int column) {
+            return (int) varLong(column);
+        }
+
+        long time() {
+            previousTime += unzigzag(varLong(TIMES));
+            return previousTime;
+        }
+    }
+
+    // ---------- Command line ----------
+
+    public static void main(String[] args) throws IOException {
+        Path dir = Path.of(".");
+        Query query = Query.all();
+        long generate = 0;
+
+        for (String arg : args) {
+            String[] parts = arg.split("=", 2);
+            if (parts.length != 2) {
+                usage("Unknown argument: " + arg);
+            }
+            try {
+                switch (parts[0]) {
+                    case "--dir" -> dir = Path.of(parts[1]);
+                    case "--player" -> query = new Query(Integer.parseInt(parts[1]), query.fromMillis(), query.toMillis());
+                    case "--name" -> query = new Query(playerId(parts[1]), query.fromMillis(), query.toMillis());
+                    case "--from" -> query = query.between(Long.parseLong(parts[1]), query.toMillis());
+                    case "--to" -> query = query.between(query.fromMillis(), Long.parseLong(parts[1]));
+                    case "--generate" -> generate = Long.parseLong(parts[1]);
+                    default -> usage("Unknown argument: " + arg);
+                }
+            } catch (NumberFormatException e) {
+                usage("Invalid number: " + arg);
+            }
+        }
+
+        try (HandHistoryStore store = new HandHistoryStore(dir)) {
+            if (generate > 0) {
+                generate(store, generate);
+            }
+            long start = System.nanoTime();
+            Map<DealerPolicy, Summary> summaries = store.summarizeByPolicy(query);
+            double seconds = (System.nanoTime() - start) / 1e9;
+
+            System.out.printf("%-8s %10s %8s %8s %10s %12s%n", "Policy", "Rounds", "Win %", "Push %", "Avg bet", "Net");
+            for (Map.Entry<DealerPolicy, Summary> entry : summaries.entrySet()) {
+                Summary s = entry.getValue();
+                System.out.printf("%-8s %10d %7.2f%% %7.2f%% %10.2f %12d%n", entry.getKey(), s.rounds(),
+                        100.0 * s.winRate(), 100.0 * s.pushes() / s.rounds(), s.averageBet(), s.net());
+            }
+            System.out.printf("Scanned %d rounds in %d blocks in %.2f s%n",
+                    store.getRoundCount(), store.getBlockCount(), seconds);
+        }
+    }
+
+    /**
+     * Append simulated rounds from a few players with basic strategy, for
+     * trying queries on a large history.
+     */
+    private static void generate(HandHistoryStore store, long rounds) throws IOException {
+        RoundEngine[] engines = new RoundEngine[POLICIES.length];
+        for (int i = 0; i < engines.length; i++) {
+            engines[i] = new RoundEngine(i + 1, 1 + i % 3, i);
+        }
+        long time = System.currentTimeMillis();
+        long start = System.nanoTime();
+        for (long n = 0; n < rounds; n++) {
+            RoundEngine engine = engines[(int) (n % engines.length)];
+            RoundResult result = engine.playRound(5 + (int) (n % 10) * 5, BasicStrategy.forPolicy(engine.getDealerPolicy()));
+            store.record((int) (n % 100), engine, result);
+        }
+        store.flush();
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("Generated %d rounds in %.2f s (%.0f rounds/s including play)%n",
+                rounds, seconds, rounds / seconds);
+        System.out.printf("History file: %d blocks, %.1f bytes per round%n", store.getBlockCount(),
+                (double) store.size / store.getRoundCount());
+    }
+
+    private static void usage(String error) {
+        System.err.println(error);
+        System.err.println("Usage: HandHistoryStore [--dir=PATH] [--player=ID | --name=NAME] "
+                + "[--from=MILLIS] [--to=MILLIS] [--generate=N]");
+        System.exit(1);
+    }
+}
@@ -0,0 +1,322 @@
+package logic.history;
+
+import data.CardCodes;
+import java.io.BufferedWriter;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+import logic.RoundEngine;
+
+/**
+ * Streams rounds from a {@link HandHistoryStore} to a gzip-compressed CSV
+ * or NDJSON file. A reader thread decodes the history block by block into
+ * a bounded queue and the calling thread formats and compresses, so memory
+ * stays constant however long the history is, and decoding overlaps with
+ * compression.
+ *
+ * Usage: java -cp bin logic.history.HistoryExporter --out=FILE
+ *        [--format=csv|ndjson] [--dir=PATH] [--player=ID | --name=NAME] [--from=MILLIS] [--to=MILLIS]
+ */
+public class HistoryExporter {
+
+    public static final int DEFAULT_BUFFER_ROUNDS = 8192;
+
+    public enum Format {
+        CSV,
+        NDJSON
+    }
+
+    /**
+     * Totals of one export.
+     *
+     * @param bytesWritten  size of the compressed output
+     */
+    public record Report(long rounds, long bytesWritten, double seconds) {
+        public double roundsPerSecond() {
+            return seconds == 0 ? 0 : rounds / seconds;
+        }
+
+        public double megabytesPerSecond() {
+            return seconds == 0 ? 0 : bytesWritten / seconds / (1024 * 1024);
+        }
+    }
+
+    private static final String CSV_HEADER = "player,time,policy,luck,bet,payout,outcome,luck_bonus,"
+            + "player_value,dealer_value,player_cards,dealer_cards,actions";
+    private static final String[] CARD_LABELS = new String[CardCodes.DECK_SIZE];
+    private static final String[] RANK_LABELS = {"A", "2", "3", "4", "5", "6", "7", "8", "9", "10", "J", "Q", "K"};
+    private static final String[] SUIT_LABELS = {"H", "D", "C", "S"};
+
+    static {
+        for (int code = 0; code < CardCodes.DECK_SIZE; code++) {
+            CARD_LABELS[code] = RANK_LABELS[CardCodes.rank(code).ordinal()] + SUIT_LABELS[CardCodes.suit(code).ordinal()];
+        }
+    }
+
+    /** Marks the end of the stream in the queue. */
+    private static final HandHistoryStore.Round END = new HandHistoryStore.Round(0, 0, null, 0, 0, 0, null,
+            false, 0, 0, new byte[0], new byte[0], List.of());
+
+    /** Stops the reader when the export is abandoned. */
+    private static final class Cancelled extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        Cancelled() {
+            super(null, null, false, false);
+        }
+    }
+
+    private final HandHistoryStore store;
+    private final int bufferRounds;
+
+    public HistoryExporter(HandHistoryStore store) {
+        this(store, DEFAULT_BUFFER_ROUNDS);
+    }
+
+    /**
+     * @param bufferRounds  rounds the reader may decode ahead of the writer
+     */
+    public HistoryExporter(HandHistoryStore store, int bufferRounds) {
+        if (bufferRounds < 1) {
+            throw new IllegalArgumentException("Buffer size must be positive.");
+        }
+        this.store = store;
+        this.bufferRounds = bufferRounds;
+    }
+
+    /**
+     * Write the rounds matching the query to a gzip file.
+     */
+    public Report export(HandHistoryStore.Query query, Format format, Path output) throws IOException {
+        BlockingQueue<HandHistoryStore.Round> queue = new ArrayBlockingQueue<>(bufferRounds);
+        IOException[] readError = new IOException[1];
+        AtomicBoolean cancelled = new AtomicBoolean(false);
+        // Not interrupted to stop it: an interrupt would close the store's file channel
+        Thread reader = new Thread(() -> {
+            try {
+                store.forEach(query, round -> enqueue(queue, round, cancelled));
+            } catch (IOException e) {
+                readError[0] = e;
+            } catch (Cancelled e) {
+                return;
+            }
+            try {
+                enqueue(queue, END, cancelled);
+            } catch (Cancelled e) {
+                // Writer gave up; nobody is waiting for the end marker
+            }
+        }, "HistoryExporter-reader");
+
+        long start = System.nanoTime();
+        long rounds = 0;
+        CountingOutputStream counter;
+        reader.start();
+        try (CountingOutputStream file = new CountingOutputStream(Files.newOutputStream(output));
+             Writer out = new BufferedWriter(new OutputStreamWriter(
+                     new FastGzipOutputStream(file), StandardCharsets.UTF_8), 1 << 16)) {
+            counter = file;
+            StringBuilder line = new StringBuilder(256);
+            if (format == Format.CSV) {
+                out.write(CSV_HEADER);
+                out.write('\n');
+            }
+            while (true) {
+                HandHistoryStore.Round round = queue.take();
+                if (round == END) {
+                    break;
+                }
+                line.setLength(0);
+                if (format == Format.CSV) {
+                    appendCsv(line, round);
+                } else {
+                    appendJson(line, round);
+                }
+                line.append('\n');
+                out.append(line);
+                rounds++;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Export interrupted.", e);
+        } finally {
+            // Stops the reader if writing failed before the end
+            cancelled.set(true);
+        }
+
+        try {
+            reader.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (readError[0] != null) {
+            throw readError[0];
+        }
+        return new Report(rounds, counter.count, (System.nanoTime() - start) / 1e9);
+    }
+
+    /**
+     * Wait for room in the queue, giving up once the writer has stopped.
+     */
+    private static void enqueue(BlockingQueue<HandHistoryStore.Round> queue, HandHistoryStore.Round round,
+                                AtomicBoolean cancelled) {
+        try {
+            while (!queue.offer(round, 50, TimeUnit.MILLISECONDS)) {
+                if (cancelled.get()) {
+                    throw new Cancelled();
+                }
+            }
+        } catch (InterruptedException e) {
+            throw new Cancelled();
+        }
+    }
+
+    private static void appendCsv(StringBuilder line, HandHistoryStore.Round round) {
+        line.append(round.playerId()).append(',')
+                .append(round.timeMillis()).append(',')
+                .append(round.policy()).append(',')
+                .append(round.luckLevel()).append(',')
+                .append(round.bet()).append(',')
+                .append(round.payout()).append(',')
+                .append(round.outcome()).append(',')
+                .append(round.luckBonus()).append(',')
+                .append(round.playerValue()).append(',')
+                .append(round.dealerValue()).append(',');
+        appendCards(line, round.playerCards(), ' ', "");
+        line.append(',');
+        appendCards(line, round.dealerCards(), ' ', "");
+        line.append(',');
+        appendActions(line, round.actions(), ' ', "");
+    }
+
+    private static void appendJson(StringBuilder line, HandHistoryStore.Round round) {
+        line.append("{\"player\":").append(round.playerId())
+                .append(",\"time\":").append(round.timeMillis())
+                .append(",\"policy\":\"").append(round.policy())
+                .append("\",\"luck\":").append(round.luckLevel())
+                .append(",\"bet\":").append(round.bet())
+                .append(",\"payout\":").append(round.payout())
+                .append(",\"outcome\":\"").append(round.outcome())
+                .append("\",\"luckBonus\":").append(round.luckBonus())
+                .append(",\"playerValue\":").append(round.playerValue())
+                .append(",\"dealerValue\":").append(round.dealerValue())
+                .append(",\"playerCards\":[");
+        appendCards(line, round.playerCards(), ',', "\"");
+        line.append("],\"dealerCards\":[");
+        appendCards(line, round.dealerCards(), ',', "\"");
+        line.append("],\"actions\":[");
+        appendActions(line, round.actions(), ',', "\"");
+        line.append("]}");
+    }
+
+    private static void appendCards(StringBuilder line, byte[] cards, char separator, String quote) {
+        for (int i = 0; i < cards.length; i++) {
+            if (i > 0) {
+                line.append(separator);
+            }
+            line.append(quote).append(CARD_LABELS[cards[i]]).append(quote);
+        }
+    }
+
+    private static void appendActions(StringBuilder line, List<RoundEngine.Action> actions, char separator,
+                                      String quote) {
+        for (int i = 0; i < actions.size(); i++) {
+            if (i > 0) {
+                line.append(separator);
+            }
+            line.append(quote).append(actions.get(i)).append(quote);
+        }
+    }
+
+    /**
+     * Gzip at the fastest level: the rows are highly repetitive, so it still
+     * compresses well and the export is not limited by deflate.
+     */
+    private static final class FastGzipOutputStream extends GZIPOutputStream {
+        FastGzipOutputStream(OutputStream out) throws IOException {
+            super(out, 1 << 16);
+            def.setLevel(Deflater.BEST_SPEED);
+        }
+    }
+
+    /**
+     * Counts the compressed bytes written.
+     */
+    private static final class CountingOutputStream extends FilterOutputStream {
+        long count;
+
+        CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        Path dir = Path.of(".");
+        Path output = null;
+        Format format = Format.CSV;
+        HandHistoryStore.Query query = HandHistoryStore.Query.all();
+
+        for (String arg : args) {
+            String[] parts = arg.split("=", 2);
+            if (parts.length != 2) {
+                usage("Unknown argument: " + arg);
+            }
+            try {
+                switch (parts[0]) {
+                    case "--dir" -> dir = Path.of(parts[1]);
+                    case "--out" -> output = Path.of(parts[1]);
+                    case "--format" -> format = Format.valueOf(parts[1].toUpperCase());
+                    case "--player" -> query = new HandHistoryStore.Query(Integer.parseInt(parts[1]),
+                            query.fromMillis(), query.toMillis());
+                    case "--name" -> query = new HandHistoryStore.Query(HandHistoryStore.playerId(parts[1]),
+                            query.fromMillis(), query.toMillis());
+                    case "--from" -> query = query.between(Long.parseLong(parts[1]), query.toMillis());
+                    case "--to" -> query = query.between(query.fromMillis(), Long.parseLong(parts[1]));
+                    default -> usage("Unknown argument: " + arg);
+                }
+            } catch (IllegalArgumentException e) {
+                usage("Invalid value: " + arg);
+            }
+        }
+        if (output == null) {
+            usage("Missing --out");
+        }
+
+        try (HandHistoryStore store = new HandHistoryStore(dir)) {
+            Report report = new HistoryExporter(store).export(query, format, output);
+            System.out.printf("Exported %d rounds to %s (%.1f MB) in %.2f s: %.0f rounds/s, %.1f MB/s compressed%n",
+                    report.rounds(), output, report.bytesWritten() / (1024.0 * 1024), report.seconds(),
+                    report.roundsPerSecond(), report.megabytesPerSecond());
+        }
+    }
+
+    private static void usage(String error) {
+        System.err.println(error);
+        System.err.println("Usage: HistoryExporter --out=FILE [--format=csv|ndjson] [--dir=PATH] "
+                + "[--player=ID | --name=NAME] [--from=MILLIS] [--to=MILLIS]");
+        System.exit(1);
+    }
+}
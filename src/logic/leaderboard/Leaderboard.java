@@ -0,0 +1,291 @@
+package logic.leaderboard;
+
+import data.ProfileStore;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongConsumer;
+import logic.RoundResult;
+
+/**
+ * Live rankings of players by chip balance and by best win streak, kept
+ * up to date from round settlements.
+ *
+ * Callers on the round path only queue an event, which never blocks. A
+ * single writer thread applies the events to an order-statistic index per
+ * board, so top-N and rank-of-player queries take logarithmic time and
+ * nothing is ever recomputed by scanning every player. Readers share a short
+ * lock with the writer, never with the round loop.
+ *
+ * With a {@link ProfileStore} the boards start from the stored profiles and
+ * the writer saves balances and best streaks back to it. It saves a batch
+ * of events after releasing the lock, so readers never wait on the disk.
+ */
+public class Leaderboard implements AutoCloseable {
+
+    public enum Board {
+        BALANCE,
+        BEST_STREAK
+    }
+
+    /**
+     * A player's place on a board; rank 1 is the leader.
+     */
+    public record Standing(String playerId, long score, int rank) {
+    }
+
+    /**
+     * A settlement or balance change waiting for the writer, or with a
+     * reply, a request for the player's balance with a default.
+     */
+    private record Event(String playerId, long balance, RoundResult.Outcome outcome, LongConsumer reply) {
+    }
+
+    private static final Event STOP = new Event("", 0, null, null);
+
+    /**
+     * Scores of one player; only the writer changes them, under the lock,
+     * and only the writer uses the profile record.
+     */
+    private static final class PlayerState {
+        long balance;
+        int currentStreak;
+        int bestStreak;
+        int profileRecord = -1;
+    }
+
+    private final LinkedBlockingQueue<Event> queue = new LinkedBlockingQueue<>();
+    private final Map<Board, RankTree> boards = new EnumMap<>(Board.class);
+    private final Map<String, PlayerState> players = new HashMap<>(); // Guarded by this
+    private final ProfileStore store;
+    private final Thread writer;
+    private final AtomicLong submitted = new AtomicLong();
+    private long applied; // Events applied so far, guarded by this
+
+    public Leaderboard() {
+        this(null);
+    }
+
+    /**
+     * @param store  profiles to load and to save balances and best streaks
+     *               to, or null for a board that lives only in memory
+     */
+    public Leaderboard(ProfileStore store) {
+        this.store = store;
+        for (Board board : Board.values()) {
+            boards.put(board, new RankTree());
+        }
+        if (store != null) {
+            loadProfiles();
+        }
+        writer = new Thread(this::writeLoop, "Leaderboard-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    private void loadProfiles() {
+        for (int record = 1; record <= store.size(); record++) {
+            ProfileStore.Profile profile = store.read(record);
+            PlayerState state = new PlayerState();
+            state.balance = profile.balance();
+            state.bestStreak = profile.bestWinStreak();
+            state.profileRecord = record;
+            players.put(profile.id(), state);
+            boards.get(Board.BALANCE).insert(state.balance, profile.id());
+            boards.get(Board.BEST_STREAK).insert(state.bestStreak, profile.id());
+        }
+    }
+
+    // ---------- Updates (never block) ----------
+
+    /**
+     * Record a settled round: the player's balance after it and how it ended.
+     * A win extends the streak, a push keeps it and a loss ends it.
+     */
+    public void recordRound(String playerId, long balance, RoundResult.Outcome outcome) {
+        submit(new Event(playerId, balance, outcome, null));
+    }
+
+    /**
+     * Record a balance change outside a round, such as a purchase.
+     */
+    public void updateBalance(String playerId, long balance) {
+        submit(new Event(playerId, balance, null, null));
+    }
+
+    /**
+     * Ask for a player's balance once every update submitted before has
+     * been applied. The reply runs on the writer thread and must not block.
+     *
+     * @param defaultBalance  replied if the player has no balance
+     */
+    public void requestBalance(String playerId, long defaultBalance, LongConsumer reply) {
+        submit(new Event(playerId, defaultBalance, null, reply));
+    }
+
+    private void submit(Event event) {
+        submitted.incrementAndGet();
+        queue.offer(event);
+    }
+
+    private void writeLoop() {
+        List<Event> batch = new ArrayList<>();
+        Map<String, PlayerState> changed = new LinkedHashMap<>();
+        List<Runnable> replies = new ArrayList<>();
+        while (true) {
+            try {
+                batch.add(queue.take());
+            } catch (InterruptedException e) {
+                return;
+            }
+            queue.drainTo(batch);
+            boolean stop = false;
+            int count = 0;
+            synchronized (this) {
+                for (Event event : batch) {
+                    if (event == STOP) {
+                        stop = true;
+                    } else if (event.reply() != null) {
+                        PlayerState state = players.get(event.playerId());
+                        long balance = state == null ? event.balance() : state.balance;
+                        LongConsumer reply = event.reply();
+                        replies.add(() -> reply.accept(balance));
+                        count++;
+                    } else {
+                        changed.put(event.playerId(), apply(event));
+                        count++;
+                    }
+                }
+            }
+            for (Runnable reply : replies) {
+                reply.run();
+            }
+            // Only this thread changes the states, so they can be read without the lock
+            if (store != null) {
+                for (Map.Entry<String, PlayerState> entry : changed.entrySet()) {
+                    save(entry.getKey(), entry.getValue());
+                }
+            }
+            // Counted once saved, so awaitApplied also waits for the store
+            synchronized (this) {
+                applied += count;
+                notifyAll();
+            }
+            batch.clear();
+            changed.clear();
+            replies.clear();
+            if (stop) {
+                return;
+            }
+        }
+    }
+
+    private PlayerState apply(Event event) {
+        PlayerState state = players.get(event.playerId());
+        if (state == null) {
+            state = new PlayerState();
+            state.balance = event.balance();
+            players.put(event.playerId(), state);
+            boards.get(Board.BALANCE).insert(state.balance, event.playerId());
+            boards.get(Board.BEST_STREAK).insert(0, event.playerId());
+        }
+
+        if (state.balance != event.balance()) {
+            boards.get(Board.BALANCE).remove(state.balance, event.playerId());
+            state.balance = event.balance();
+            boards.get(Board.BALANCE).insert(state.balance, event.playerId());
+        }
+
+        RoundResult.Outcome outcome = event.outcome();
+        if (outcome != null && outcome.isPlayerWin()) {
+            state.currentStreak++;
+            if (state.currentStreak > state.bestStreak) {
+                boards.get(Board.BEST_STREAK).remove(state.bestStreak, event.playerId());
+                state.bestStreak = state.currentStreak;
+                boards.get(Board.BEST_STREAK).insert(state.bestStreak, event.playerId());
+            }
+        } else if (outcome != null && outcome.isPlayerLoss()) {
+            state.currentStreak = 0;
+        }
+        return state;
+    }
+
+    private void save(String playerId, PlayerState state) {
+        try {
+            if (state.profileRecord < 0) {
+                state.profileRecord = store.getOrCreate(playerId, state.balance);
+            }
+            store.setBalance(state.profileRecord, state.balance);
+            store.recordWinStreak(state.profileRecord, state.bestStreak);
+        } catch (IOException | IllegalArgumentException e) {
+            System.err.println("Error saving profile " + playerId + ": " + e.getMessage());
+        }
+    }
+
+    // ---------- Queries ----------
+
+    /**
+     * The first {@code count} players on a board.
+     */
+    public synchronized List<Standing> top(Board board, int count) {
+        List<Standing> standings = new ArrayList<>(Math.min(count, players.size()));
+        boards.get(board).top(count, (score, playerId, rank) ->
+                standings.add(new Standing(playerId, score, rank + 1)));
+        return standings;
+    }
+
+    /**
+     * A player's standing on a board, or null if they have not played.
+     */
+    public synchronized Standing standingOf(Board board, String playerId) {
+        PlayerState state = players.get(playerId);
+        if (state == null) {
+            return null;
+        }
+        long score = board == Board.BALANCE ? state.balance : state.bestStreak;
+        return new Standing(playerId, score, boards.get(board).rank(score, playerId) + 1);
+    }
+
+    public synchronized int getBestStreak(String playerId) {
+        PlayerState state = players.get(playerId);
+        return state == null ? 0 : state.bestStreak;
+    }
+
+    public synchronized int getCurrentStreak(String playerId) {
+        PlayerState state = players.get(playerId);
+        return state == null ? 0 : state.currentStreak;
+    }
+
+    public synchronized int getPlayerCount() {
+        return players.size();
+    }
+
+    /**
+     * Wait until every update submitted so far has been applied.
+     */
+    public synchronized void awaitApplied() throws InterruptedException {
+        long target = submitted.get();
+        while (applied < target && writer.isAlive()) {
+            wait();
+        }
+    }
+
+    /**
+     * Apply the queued updates and stop the writer.
+     */
+    @Override
+    public void close() {
+        queue.offer(STOP);
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package logic.leaderboard;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Order-statistic index of (score, player) pairs, highest score first and
+ * ties broken by player id. It is a treap whose nodes count their subtree,
+ * so insert, remove and rank are O(log n) and the top n entries take
+ * O(log size + n). Not thread-safe.
+ */
+final class RankTree {
+
+    private static final class Node {
+        final long score;
+        final String playerId;
+        final int priority;
+        int size = 1;
+        Node left;
+        Node right;
+
+        Node(long score, String playerId, int priority) {
+            this.score = score;
+            this.playerId = playerId;
+            this.priority = priority;
+        }
+    }
+
+    private final SplittableRandom random = new SplittableRandom();
+    private Node root;
+
+    private static int compare(long score, String playerId, Node node) {
+        if (score != node.score) {
+            return score > node.score ? -1 : 1;
+        }
+        return playerId.compareTo(node.playerId);
+    }
+
+    private static int size(Node node) {
+        return node == null ? 0 : node.size;
+    }
+
+    private static void update(Node node) {
+        node.size = 1 + size(node.left) + size(node.right);
+    }
+
+    private static Node rotateRight(Node node) {
+        Node left = node.left;
+        node.left = left.right;
+        left.right = node;
+        update(node);
+        update(left);
+        return left;
+    }
+
+    private static Node rotateLeft(Node node) {
+        Node right = node.right;
+        node.right = right.left;
+        right.left = node;
+        update(node);
+        update(right);
+        return right;
+    }
+
+    public void insert(long score, String playerId) {
+        root = insert(root, score, playerId);
+    }
+
+    private Node insert(Node node, long score, String playerId) {
+        if (node == null) {
+            return new Node(score, playerId, random.nextInt());
+        }
+        int cmp = compare(score, playerId, node);
+        if (cmp == 0) {
+            return node;
+        }
+        if (cmp < 0) {
+            node.left = insert(node.left, score, playerId);
+            if (node.left.priority > node.priority) {
+                node = rotateRight(node);
+            }
+        } else {
+            node.right = insert(node.right, score, playerId);
+            if (node.right.priority > node.priority) {
+                node = rotateLeft(node);
+            }
+        }
+        update(node);
+        return node;
+    }
+
+    public void remove(long score, String playerId) {
+        root = remove(root, score, playerId);
+    }
+
+    private Node remove(Node node, long score, String playerId) {
+        if (node == null) {
+            return null;
+        }
+        int cmp = compare(score, playerId, node);
+        if (cmp < 0) {
+            node.left = remove(node.left, score, playerId);
+        } else if (cmp > 0) {
+            node.right = remove(node.right, score, playerId);
+        } else {
+            if (node.left == null) {
+                return node.right;
+            }
+            if (node.right == null) {
+                return node.left;
+            }
+            // Rotate the higher-priority child up and keep removing below it
+            if (node.left.priority > node.right.priority) {
+                node = rotateRight(node);
+                node.right = remove(node.right, score, playerId);
+            } else {
+                node = rotateLeft(node);
+                node.left = remove(node.left, score, playerId);
+            }
+        }
+        update(node);
+        return node;
+    }
+
+    /**
+     * Number of entries ranked ahead of the given one (0 for the leader).
+     */
+    public int rank(long score, String playerId) {
+        int ahead = 0;
+        Node node = root;
+        while (node != null) {
+            int cmp = compare(score, playerId, node);
+            if (cmp <= 0) {
+                if (cmp == 0) {
+                    return ahead + size(node.left);
+                }
+                node = node.left;
+            } else {
+                ahead += size(node.left) + 1;
+                node = node.right;
+            }
+        }
+        return ahead;
+    }
+
+    /**
+     * Visit the first {@code count} entries in rank order.
+     */
+    public void top(int count, Visitor visitor) {
+        List<Node> stack = new ArrayList<>();
+        Node node = root;
+        int visited = 0;
+        while (visited < count && (node != null || !stack.isEmpty())) {
+            while (node != null) {
+                stack.add(node);
+                node = node.left;
+            }
+            node = stack.remove(stack.size() - 1);
+            visitor.visit(node.score, node.playerId, visited++);
+            node = node.right;
+        }
+    }
+
+    public int size() {
+        return size(root);
+    }
+
+    interface Visitor {
+        void visit(long score, String playerId, int rank);
+    }
+}
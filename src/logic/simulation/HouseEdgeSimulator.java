@@ -0,0 +1,256 @@
+package logic.simulation;
+
+import data.CardCodes;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Function;
+import java.util.random.RandomGenerator;
+import logic.DealerPolicy;
+import logic.GameRandom;
+import logic.Hand;
+import logic.RoundEngine;
+import logic.RoundResult;
+import logic.Shoe;
+import logic.strategy.BasicStrategy;
+
+/**
+ * Command-line Monte Carlo simulator that measures the player's expected
+ * value for every (difficulty, luck level) combination. Rounds are split
+ * across all cores with fork/join; every worker plays with its own split
+ * random stream, shoe and {@link RoundEngine}, so nothing is shared on the
+ * hot path. A run is reproducible from its seed.
+ *
+ * The player follows the basic-strategy chart for the dealer policy of each
+ * difficulty, or the simple total-based strategy with --strategy=simple.
+ *
+ * Usage: java -cp bin logic.simulation.HouseEdgeSimulator
+ *        [--rounds=N] [--threads=N] [--seed=N] [--decks=N] [--penetration=F] [--bet=N]
+ *        [--strategy=basic|simple]
+ */
+public class HouseEdgeSimulator {
+
+    private static final long LEAF_ROUNDS = 1_000_000;
+    private static final double Z_95 = 1.959964;
+
+    private final long rounds;
+    private final int decks;
+    private final double penetration;
+    private final int bet;
+    private final Function<DealerPolicy, RoundEngine.PlayerStrategy> strategy;
+
+    /**
+     * @param strategy  player strategy to use against each dealer policy
+     */
+    public HouseEdgeSimulator(long rounds, int decks, double penetration, int bet,
+                              Function<DealerPolicy, RoundEngine.PlayerStrategy> strategy) {
+        this.rounds = rounds;
+        this.decks = decks;
+        this.penetration = penetration;
+        this.bet = bet;
+        this.strategy = strategy;
+    }
+
+    /**
+     * Running totals of the net result per round, measured in initial bets.
+     */
+    public static class Stats {
+        private long count;
+        private double sum;
+        private double sumOfSquares;
+
+        void add(double x) {
+            count++;
+            sum += x;
+            sumOfSquares += x * x;
+        }
+
+        void merge(Stats other) {
+            count += other.count;
+            sum += other.sum;
+            sumOfSquares += other.sumOfSquares;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        /**
+         * Expected value per round, as a fraction of the initial bet.
+         */
+        public double getMean() {
+            return count == 0 ? 0 : sum / count;
+        }
+
+        public double getVariance() {
+            if (count < 2) {
+                return 0;
+            }
+            double mean = getMean();
+            return (sumOfSquares - count * mean * mean) / (count - 1);
+        }
+
+        /**
+         * Half-width of the 95% confidence interval around the mean.
+         */
+        public double getConfidence95() {
+            return count == 0 ? 0 : Z_95 * Math.sqrt(getVariance() / count);
+        }
+    }
+
+    /**
+     * Simulate all rounds for one setting, in parallel on the given pool.
+     */
+    public Stats run(ForkJoinPool pool, int difficulty, int luckLevel, long seed) {
+        return pool.invoke(new SimulationTask(difficulty, luckLevel, rounds, GameRandom.create(seed)));
+    }
+
+    private class SimulationTask extends RecursiveTask<Stats> {
+        private static final long serialVersionUID = 1L;
+
+        private final int difficulty;
+        private final int luckLevel;
+        private final long taskRounds;
+        private final RandomGenerator.SplittableGenerator random;
+
+        SimulationTask(int difficulty, int luckLevel, long taskRounds,
+                       RandomGenerator.SplittableGenerator random) {
+            this.difficulty = difficulty;
+            this.luckLevel = luckLevel;
+            this.taskRounds = taskRounds;
+            this.random = random;
+        }
+
+        @Override
+        protected Stats compute() {
+            if (taskRounds <= LEAF_ROUNDS) {
+                return simulate();
+            }
+            long half = taskRounds / 2;
+            SimulationTask left = new SimulationTask(difficulty, luckLevel, half, random.split());
+            SimulationTask right = new SimulationTask(difficulty, luckLevel, taskRounds - half, random.split());
+            left.fork();
+            Stats stats = right.compute();
+            stats.merge(left.join());
+            return stats;
+        }
+
+        private Stats simulate() {
+            Shoe shoe = new Shoe(decks, penetration, random);
+            RoundEngine engine = new RoundEngine(difficulty, luckLevel, shoe, random);
+            RoundEngine.PlayerStrategy player = strategy.apply(engine.getDealerPolicy());
+            Stats stats = new Stats();
+            double unit = bet;
+
+            for (long i = 0; i < taskRounds; i++) {
+                RoundResult result = engine.playRound(bet, player);
+                stats.add(result.net() / unit);
+            }
+            return stats;
+        }
+    }
+
+    /**
+     * Simple total-based strategy: double 10/11 against weak upcards, stand
+     * on stiff hands against 2-6, and draw to 17 otherwise.
+     */
+    public static RoundEngine.Action simpleStrategy(Hand hand, int dealerUpcard, boolean canDouble) {
+        int value = hand.getValue();
+        int upcard = CardCodes.value(dealerUpcard);
+
+        if (hand.isSoft()) {
+            if (value >= 19 || (value == 18 && upcard <= 8)) {
+                return RoundEngine.Action.STAND;
+            }
+            return RoundEngine.Action.HIT;
+        }
+        if (value >= 17) {
+            return RoundEngine.Action.STAND;
+        }
+        if (value >= 12) {
+            return upcard <= 6 ? RoundEngine.Action.STAND : RoundEngine.Action.HIT;
+        }
+        if (canDouble && value >= 10 && upcard < value) {
+            return RoundEngine.Action.DOUBLE_DOWN;
+        }
+        return RoundEngine.Action.HIT;
+    }
+
+    public static void main(String[] args) {
+        long rounds = 10_000_000;
+        int threads = Runtime.getRuntime().availableProcessors();
+        long seed = System.nanoTime();
+        int decks = RoundEngine.DEFAULT_DECKS;
+        double penetration = RoundEngine.DEFAULT_PENETRATION;
+        int bet = 10;
+        String strategyName = "basic";
+
+        for (String arg : args) {
+            String[] parts = arg.split("=", 2);
+            if (parts.length != 2) {
+                usage("Unknown argument: " + arg);
+            }
+            try {
+                switch (parts[0]) {
+                    case "--rounds" -> rounds = Long.parseLong(parts[1]);
+                    case "--threads" -> threads = Integer.parseInt(parts[1]);
+                    case "--seed" -> seed = Long.parseLong(parts[1]);
+                    case "--decks" -> decks = Integer.parseInt(parts[1]);
+                    case "--penetration" -> penetration = Double.parseDouble(parts[1]);
+                    case "--bet" -> bet = Integer.parseInt(parts[1]);
+                    case "--strategy" -> strategyName = parts[1];
+                    default -> usage("Unknown argument: " + arg);
+                }
+            } catch (NumberFormatException e) {
+                usage("Invalid number: " + arg);
+            }
+        }
+        if (rounds <= 0) {
+            usage("Rounds must be positive: " + rounds);
+        }
+        if (bet <= 0) {
+            usage("Bet must be positive: " + bet);
+        }
+
+        Function<DealerPolicy, RoundEngine.PlayerStrategy> strategy = switch (strategyName) {
+            case "basic" -> BasicStrategy::forPolicy;
+            case "simple" -> policy -> HouseEdgeSimulator::simpleStrategy;
+            default -> {
+                usage("Unknown strategy: " + strategyName);
+                yield null;
+            }
+        };
+
+        HouseEdgeSimulator simulator = new HouseEdgeSimulator(rounds, decks, penetration, bet, strategy);
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        String[] difficulties = {"Easy", "Medium", "Hard"};
+        String[] luckLevels = {"Normal", "Lucky", "Very Lucky"};
+
+        System.out.printf("%,d rounds per setting, %d threads, %d decks, bet %d, %s strategy, seed %d%n",
+                rounds, threads, decks, bet, strategyName, seed);
+        System.out.printf("%-8s %-11s %10s %10s %12s %10s%n",
+                "Diff", "Luck", "EV %", "+/- 95%", "Variance", "Edge %");
+
+        long start = System.nanoTime();
+        RandomGenerator seeds = GameRandom.create(seed);
+        for (int difficulty = 1; difficulty <= 3; difficulty++) {
+            for (int luckLevel = 1; luckLevel <= 3; luckLevel++) {
+                Stats stats = simulator.run(pool, difficulty, luckLevel, seeds.nextLong());
+                System.out.printf("%-8s %-11s %10.4f %10.4f %12.4f %10.4f%n",
+                        difficulties[difficulty - 1], luckLevels[luckLevel - 1],
+                        stats.getMean() * 100, stats.getConfidence95() * 100,
+                        stats.getVariance(), -stats.getMean() * 100);
+            }
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("%,d rounds in %.1f s (%,.0f rounds/s)%n",
+                rounds * 9, seconds, rounds * 9 / seconds);
+        pool.shutdown();
+    }
+
+    private static void usage(String error) {
+        System.err.println(error);
+        System.err.println("Usage: HouseEdgeSimulator [--rounds=N] [--threads=N] [--seed=N] "
+                + "[--decks=N] [--penetration=F] [--bet=N] [--strategy=basic|simple]");
+        System.exit(1);
+    }
+}
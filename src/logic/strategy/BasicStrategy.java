@@ -0,0 +1,159 @@
+package logic.strategy;
+
+import data.CardCodes;
+import java.util.EnumMap;
+import java.util.Map;
+import logic.DealerPolicy;
+import logic.Hand;
+import logic.RoundEngine;
+
+/**
+ * Basic-strategy chart for one dealer policy, derived from the exact dealer
+ * outcome probabilities in {@link DealerProbabilities}. Charts for every
+ * policy are computed once when the class loads and stored as flat arrays,
+ * so a decision is a single array read.
+ *
+ * The chart is keyed by player total, soft/hard and dealer upcard. Expected
+ * values assume even-money wins, no dealer peek (a dealer blackjack also
+ * takes doubled bets) and that a 21 always stands.
+ */
+public final class BasicStrategy implements RoundEngine.PlayerStrategy {
+
+    private static final int TOTALS = 22; // Player totals 0-21
+    private static final int SIZE = 2 * TOTALS * DealerProbabilities.UPCARDS;
+    private static final RoundEngine.Action[] ACTIONS = RoundEngine.Action.values();
+
+    private static final Map<DealerPolicy, BasicStrategy> CHARTS = new EnumMap<>(DealerPolicy.class);
+
+    static {
+        for (DealerPolicy policy : DealerPolicy.values()) {
+            CHARTS.put(policy, new BasicStrategy(policy));
+        }
+    }
+
+    private final DealerPolicy policy;
+    private final byte[] decisions = new byte[SIZE];         // Best action when doubling is allowed
+    private final byte[] decisionsNoDouble = new byte[SIZE]; // Best of hit/stand
+    private final double[] standValues = new double[SIZE];
+    private final double[] hitValues = new double[SIZE];
+    private final double[] doubleValues = new double[SIZE];
+
+    /**
+     * Returns the precomputed chart for a dealer policy.
+     */
+    public static BasicStrategy forPolicy(DealerPolicy policy) {
+        return CHARTS.get(policy);
+    }
+
+    private BasicStrategy(DealerPolicy policy) {
+        this.policy = policy;
+        double[][] dealer = DealerProbabilities.compute(policy);
+
+        for (int up = 0; up < DealerProbabilities.UPCARDS; up++) {
+            // Best EV after taking cards, indexed [hardTotal][hasAce]; 0-31 covers every bust
+            double[][] best = new double[32][2];
+            double[][] stand = new double[32][2];
+            double[][] hit = new double[32][2];
+
+            // Work down from high totals so every hit only depends on solved states
+            for (int hard = 31; hard >= 2; hard--) {
+                for (int ace = 0; ace <= 1; ace++) {
+                    int value = value(hard, ace == 1);
+                    if (hard > 21) {
+                        best[hard][ace] = -1;
+                        continue;
+                    }
+                    stand[hard][ace] = DealerProbabilities.standValue(value, dealer[up]);
+                    if (value == 21) {
+                        best[hard][ace] = stand[hard][ace];
+                        continue;
+                    }
+                    double ev = 0;
+                    for (int card = 2; card <= 11; card++) {
+                        int next = hard + (card == 11 ? 1 : card);
+                        int nextAce = (ace == 1 || card == 11) ? 1 : 0;
+                        ev += DealerProbabilities.DRAW_PROBABILITY[card] * best[Math.min(next, 31)][nextAce];
+                    }
+                    hit[hard][ace] = ev;
+                    best[hard][ace] = Math.max(stand[hard][ace], ev);
+                }
+            }
+
+            for (int hard = 2; hard <= 21; hard++) {
+                for (int ace = 0; ace <= 1; ace++) {
+                    int value = value(hard, ace == 1);
+                    boolean soft = ace == 1 && hard <= 11;
+                    if (ace == 1 && !soft) {
+                        continue; // Same as the hard total without an ace
+                    }
+
+                    double doubled = 0;
+                    for (int card = 2; card <= 11; card++) {
+                        int next = hard + (card == 11 ? 1 : card);
+                        boolean nextAce = ace == 1 || card == 11;
+                        double outcome = next > 21 ? -1
+                                : DealerProbabilities.standValue(value(next, nextAce), dealer[up]);
+                        doubled += DealerProbabilities.DRAW_PROBABILITY[card] * outcome;
+                    }
+                    doubled *= 2;
+
+                    int i = index(soft, value, up);
+                    standValues[i] = stand[hard][ace];
+                    hitValues[i] = value == 21 ? Double.NEGATIVE_INFINITY : hit[hard][ace];
+                    doubleValues[i] = value == 21 ? Double.NEGATIVE_INFINITY : doubled;
+
+                    RoundEngine.Action noDouble = hitValues[i] > standValues[i]
+                            ? RoundEngine.Action.HIT : RoundEngine.Action.STAND;
+                    double bestNoDouble = Math.max(hitValues[i], standValues[i]);
+                    decisionsNoDouble[i] = (byte) noDouble.ordinal();
+                    decisions[i] = (byte) (doubleValues[i] > bestNoDouble
+                            ? RoundEngine.Action.DOUBLE_DOWN : noDouble).ordinal();
+                }
+            }
+        }
+    }
+
+    private static int value(int hardTotal, boolean hasAce) {
+        return hasAce && hardTotal <= 11 ? hardTotal + 10 : hardTotal;
+    }
+
+    private static int index(boolean soft, int total, int upcardIndex) {
+        return ((soft ? TOTALS : 0) + total) * DealerProbabilities.UPCARDS + upcardIndex;
+    }
+
+    /**
+     * Index of a dealer upcard code in the chart (2-10, then ace).
+     */
+    public static int upcardIndex(int dealerUpcard) {
+        return CardCodes.value(dealerUpcard) - 2;
+    }
+
+    public DealerPolicy getPolicy() {
+        return policy;
+    }
+
+    /**
+     * Chart lookup by total, softness and upcard index.
+     */
+    public RoundEngine.Action getAction(int total, boolean soft, int upcardIndex, boolean canDouble) {
+        int i = index(soft, total, upcardIndex);
+        return ACTIONS[canDouble ? decisions[i] : decisionsNoDouble[i]];
+    }
+
+    @Override
+    public RoundEngine.Action decide(Hand playerHand, int dealerUpcard, boolean canDouble) {
+        return getAction(playerHand.getValue(), playerHand.isSoft(), upcardIndex(dealerUpcard), canDouble);
+    }
+
+    /**
+     * Expected value (in bets) of an action from the chart.
+     */
+    public double getExpectedValue(int total, boolean soft, int upcardIndex, RoundEngine.Action action) {
+        int i = index(soft, total, upcardIndex);
+        return switch (action) {
+            case HIT -> hitValues[i];
+            case STAND -> standValues[i];
+            case DOUBLE_DOWN -> doubleValues[i];
+        };
+    }
+}
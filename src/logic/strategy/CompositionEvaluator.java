@@ -0,0 +1,333 @@
+package logic.strategy;
+
+import data.CardCodes;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import logic.DealerPolicy;
+import logic.Hand;
+import logic.RoundEngine;
+import logic.Shoe;
+
+/**
+ * Exact expected values of hit, stand and double for the cards actually left
+ * in the shoe. Unlike {@link BasicStrategy}, every draw is made without
+ * replacement, so the result reflects the current composition.
+ *
+ * Compositions are counted per blackjack value and indexed like upcards
+ * (value - 2: twos to tens, then aces). The dealer's final-outcome
+ * distribution depends only on the upcard and the unseen composition, so it
+ * is memoized in one bounded LRU cache keyed by the upcard and the
+ * composition packed into a long. Different player draw orders that reach
+ * the same composition share one dealer computation.
+ */
+public class CompositionEvaluator {
+
+    public static final int DEFAULT_CACHE_SIZE = 4096;
+
+    private static final int VALUES = DealerProbabilities.UPCARDS;
+    private static final int TENS = 8; // Index of the ten-valued cards
+    private static final int ACES = 9;
+    private static final int MAX_SMALL_COUNT = 63;  // 6 bits per value
+    private static final int MAX_TEN_COUNT = 255;   // 8 bits for tens
+
+    /**
+     * Expected values (in initial bets) of each action.
+     */
+    public record Evaluation(double stand, double hit, double doubleDown) {
+
+        public RoundEngine.Action best(boolean canDouble) {
+            RoundEngine.Action action = hit > stand ? RoundEngine.Action.HIT : RoundEngine.Action.STAND;
+            if (canDouble && doubleDown > Math.max(hit, stand)) {
+                return RoundEngine.Action.DOUBLE_DOWN;
+            }
+            return action;
+        }
+
+        public double value(RoundEngine.Action action) {
+            return switch (action) {
+                case HIT -> hit;
+                case STAND -> stand;
+                case DOUBLE_DOWN -> doubleDown;
+            };
+        }
+    }
+
+    private final DealerPolicy policy;
+    private final int cacheSize;
+    private final Map<DealerKey, double[]> dealerCache;
+    private long cacheHits = 0;
+    private long cacheMisses = 0;
+
+    // Per-evaluation scratch state
+    private final int[] counts = new int[VALUES];
+    private int remaining;
+    private int upcardIndex;
+    private final Map<Long, Double> playerMemo = new HashMap<>();
+    private final CompositionTable[] dealerMemo = new CompositionTable[2 * 22]; // By hardTotal * 2 + hasAce
+
+    /**
+     * Key of a cached dealer distribution.
+     */
+    private record DealerKey(int upcardIndex, long counts) {
+    }
+
+    public CompositionEvaluator(DealerPolicy policy) {
+        this(policy, DEFAULT_CACHE_SIZE);
+    }
+
+    /**
+     * @param cacheSize  maximum number of dealer distributions kept, for all upcards together
+     */
+    public CompositionEvaluator(DealerPolicy policy, int cacheSize) {
+        if (cacheSize < 1) {
+            throw new IllegalArgumentException("Cache size must be positive.");
+        }
+        this.policy = policy;
+        this.cacheSize = cacheSize;
+        this.dealerCache = new LinkedHashMap<>(64, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<DealerKey, double[]> eldest) {
+                return size() > CompositionEvaluator.this.cacheSize;
+            }
+        };
+        for (int i = 0; i < dealerMemo.length; i++) {
+            dealerMemo[i] = new CompositionTable(DealerProbabilities.OUTCOMES, 256);
+        }
+    }
+
+    /**
+     * Cards the player has not seen, per value index: the shoe's remaining
+     * cards plus the dealer's face-down cards.
+     */
+    public static int[] unseenCounts(Shoe shoe, Hand dealerHand) {
+        int[] unseen = new int[VALUES];
+        for (int rank = 0; rank < CardCodes.RANK_COUNT; rank++) {
+            unseen[CardCodes.value(rank) - 2] += shoe.getRemaining(rank);
+        }
+        for (int i = 1; i < dealerHand.getCardCount(); i++) {
+            unseen[CardCodes.value(dealerHand.getCode(i)) - 2]++;
+        }
+        return unseen;
+    }
+
+    /**
+     * Evaluate a player hand against a dealer upcard code, drawing from the
+     * given unseen cards (per value index, see {@link #unseenCounts}).
+     */
+    public synchronized Evaluation evaluate(Hand playerHand, int dealerUpcard, int[] unseen) {
+        if (unseen.length != VALUES) {
+            throw new IllegalArgumentException("Expected " + VALUES + " card counts.");
+        }
+        remaining = 0;
+        for (int i = 0; i < VALUES; i++) {
+            int limit = i == TENS ? MAX_TEN_COUNT : MAX_SMALL_COUNT;
+            if (unseen[i] < 0 || unseen[i] > limit) {
+                throw new IllegalArgumentException("Card count out of range: " + unseen[i]);
+            }
+            counts[i] = unseen[i];
+            remaining += unseen[i];
+        }
+        upcardIndex = CardCodes.value(dealerUpcard) - 2;
+        playerMemo.clear();
+        for (CompositionTable memo : dealerMemo) {
+            memo.clear();
+        }
+
+        int hardTotal = playerHand.getHardTotal();
+        boolean hasAce = playerHand.getAceCount() > 0;
+        int value = value(hardTotal, hasAce);
+
+        double stand = standValue(value);
+        if (value >= 21) {
+            return new Evaluation(stand, Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY);
+        }
+
+        double hit = 0;
+        double doubled = 0;
+        for (int card = 0; card < VALUES; card++) {
+            if (counts[card] == 0) {
+                continue;
+            }
+            double p = (double) counts[card] / remaining;
+            int next = hardTotal + cardHardValue(card);
+            boolean nextAce = hasAce || card == ACES;
+
+            take(card);
+            if (next > 21) {
+                hit -= p;
+                doubled -= p;
+            } else {
+                hit += p * bestValue(next, nextAce);
+                doubled += p * standValue(value(next, nextAce));
+            }
+            putBack(card);
+        }
+        return new Evaluation(stand, hit, 2 * doubled);
+    }
+
+    /**
+     * Best of hitting and standing from a player state, with the drawn cards
+     * already removed from the composition.
+     */
+    private double bestValue(int hardTotal, boolean hasAce) {
+        int value = value(hardTotal, hasAce);
+        if (value == 21) {
+            return standValue(value);
+        }
+
+        // The composition determines the player's cards, so it is a complete key
+        long key = packCounts();
+        Double known = playerMemo.get(key);
+        if (known != null) {
+            return known;
+        }
+
+        double hit = 0;
+        for (int card = 0; card < VALUES; card++) {
+            if (counts[card] == 0) {
+                continue;
+            }
+            double p = (double) counts[card] / remaining;
+            int next = hardTotal + cardHardValue(card);
+            if (next > 21) {
+                hit -= p;
+            } else {
+                take(card);
+                hit += p * bestValue(next, hasAce || card == ACES);
+                putBack(card);
+            }
+        }
+        // A hand of 11 or less cannot bust on a hit, so standing there is never
+        // better and its dealer distribution need not be computed
+        double best = value <= 11 ? hit : Math.max(standValue(value), hit);
+        playerMemo.put(key, best);
+        return best;
+    }
+
+    private double standValue(int playerValue) {
+        return DealerProbabilities.standValue(playerValue, dealerOutcomes());
+    }
+
+    /**
+     * Dealer final-outcome distribution for the current upcard and
+     * composition, from the cache when possible.
+     */
+    private double[] dealerOutcomes() {
+        DealerKey key = new DealerKey(upcardIndex, packCounts());
+        double[] outcomes = dealerCache.get(key);
+        if (outcomes != null) {
+            cacheHits++;
+            return outcomes;
+        }
+        cacheMisses++;
+        outcomes = new double[DealerProbabilities.OUTCOMES];
+        boolean ace = upcardIndex == ACES;
+        dealerDraw(ace ? 1 : upcardIndex + 2, ace, 1, 1.0, outcomes);
+        dealerCache.put(key, outcomes);
+        return outcomes;
+    }
+
+    private void dealerDraw(int hardTotal, boolean hasAce, int cards, double probability, double[] outcomes) {
+        boolean soft = hasAce && hardTotal <= 11;
+        int value = soft ? hardTotal + 10 : hardTotal;
+
+        if (hardTotal > 21) {
+            outcomes[DealerProbabilities.BUST] += probability;
+        } else if (cards == 2 && value == 21) {
+            outcomes[DealerProbabilities.BLACKJACK] += probability;
+        } else if (cards >= 2 && !policy.shouldHit(value, soft)) {
+            outcomes[value - DealerProbabilities.MIN_TOTAL] += probability;
+        } else if (remaining == 0) {
+            // Out of cards (only in tiny test compositions): score it as the lowest standing total
+            outcomes[0] += probability;
+        } else if (cards == 1) {
+            drawEachCard(hardTotal, hasAce, cards, probability, outcomes);
+        } else {
+            // Past the hole card, the rest of the draw depends only on the total and the composition
+            CompositionTable memo = dealerMemo[hardTotal * 2 + (hasAce ? 1 : 0)];
+            long key = packCounts();
+            int row = memo.find(key);
+            if (row < 0) {
+                double[] from = new double[DealerProbabilities.OUTCOMES];
+                drawEachCard(hardTotal, hasAce, cards, 1.0, from);
+                memo.put(key, from);
+                row = memo.find(key);
+            }
+            double[] rows = memo.values();
+            for (int i = 0; i < DealerProbabilities.OUTCOMES; i++) {
+                outcomes[i] += probability * rows[row + i];
+            }
+        }
+    }
+
+    private void drawEachCard(int hardTotal, boolean hasAce, int cards, double probability, double[] outcomes) {
+        for (int card = 0; card < VALUES; card++) {
+            if (counts[card] == 0) {
+                continue;
+            }
+            double p = probability * counts[card] / remaining;
+            take(card);
+            dealerDraw(hardTotal + cardHardValue(card), hasAce || card == ACES, cards + 1, p, outcomes);
+            putBack(card);
+        }
+    }
+
+    private void take(int card) {
+        counts[card]--;
+        remaining--;
+    }
+
+    private void putBack(int card) {
+        counts[card]++;
+        remaining++;
+    }
+
+    private long packCounts() {
+        long key = counts[TENS];
+        for (int i = 0; i < VALUES; i++) {
+            if (i != TENS) {
+                key = (key << 6) | counts[i];
+            }
+        }
+        return key;
+    }
+
+    private static int cardHardValue(int card) {
+        return card == ACES ? 1 : card + 2;
+    }
+
+    private static int value(int hardTotal, boolean hasAce) {
+        return hasAce && hardTotal <= 11 ? hardTotal + 10 : hardTotal;
+    }
+
+    public DealerPolicy getPolicy() {
+        return policy;
+    }
+
+    public int getCacheSize() {
+        return cacheSize;
+    }
+
+    public synchronized long getCacheHits() {
+        return cacheHits;
+    }
+
+    public synchronized long getCacheMisses() {
+        return cacheMisses;
+    }
+
+    /**
+     * Fraction of dealer distributions served from the cache.
+     */
+    public synchronized double getHitRate() {
+        long lookups = cacheHits + cacheMisses;
+        return lookups == 0 ? 0 : (double) cacheHits / lookups;
+    }
+
+    public synchronized void clearCache() {
+        dealerCache.clear();
+        cacheHits = 0;
+        cacheMisses = 0;
+    }
+}
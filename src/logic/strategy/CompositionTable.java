@@ -0,0 +1,95 @@
+package logic.strategy;
+
+import java.util.Arrays;
+
+/**
+ * Open-addressing map from a packed shoe composition to a fixed-width row of
+ * doubles, used as a scratch memo by {@link CompositionEvaluator}. Keys and
+ * values live in flat arrays, so lookups neither box nor allocate.
+ */
+class CompositionTable {
+
+    private static final long OCCUPIED = 1L << 63; // Packed compositions use at most 62 bits
+
+    private final int width;
+    private long[] keys;
+    private double[] values;
+    private int size = 0;
+
+    CompositionTable(int width, int initialCapacity) {
+        this.width = width;
+        int capacity = Integer.highestOneBit(Math.max(16, initialCapacity) - 1) << 1;
+        this.keys = new long[capacity];
+        this.values = new double[capacity * width];
+    }
+
+    /**
+     * Offset of the key's row in {@link #values()}, or -1 if absent. The
+     * offset is only valid until the next {@link #put}.
+     */
+    int find(long key) {
+        long stored = key | OCCUPIED;
+        int mask = keys.length - 1;
+        for (int i = hash(key) & mask; keys[i] != 0; i = (i + 1) & mask) {
+            if (keys[i] == stored) {
+                return i * width;
+            }
+        }
+        return -1;
+    }
+
+    void put(long key, double[] row) {
+        if (2 * (size + 1) > keys.length) {
+            grow();
+        }
+        long stored = key | OCCUPIED;
+        int mask = keys.length - 1;
+        int i = hash(key) & mask;
+        while (keys[i] != 0 && keys[i] != stored) {
+            i = (i + 1) & mask;
+        }
+        if (keys[i] == 0) {
+            keys[i] = stored;
+            size++;
+        }
+        System.arraycopy(row, 0, values, i * width, width);
+    }
+
+    double[] values() {
+        return values;
+    }
+
+    int size() {
+        return size;
+    }
+
+    void clear() {
+        if (size > 0) {
+            Arrays.fill(keys, 0);
+            size = 0;
+        }
+    }
+
+    private void grow() {
+        long[] oldKeys = keys;
+        double[] oldValues = values;
+        keys = new long[oldKeys.length * 2];
+        values = new double[keys.length * width];
+        int mask = keys.length - 1;
+        for (int j = 0; j < oldKeys.length; j++) {
+            if (oldKeys[j] != 0) {
+                int i = hash(oldKeys[j] & ~OCCUPIED) & mask;
+                while (keys[i] != 0) {
+                    i = (i + 1) & mask;
+                }
+                keys[i] = oldKeys[j];
+                System.arraycopy(oldValues, j * width, values, i * width, width);
+            }
+        }
+    }
+
+    private static int hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
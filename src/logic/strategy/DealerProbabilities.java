@@ -0,0 +1,90 @@
+package logic.strategy;
+
+import logic.DealerPolicy;
+
+/**
+ * Exact probabilities of the dealer's final hand for each upcard, computed
+ * by enumerating every draw sequence of an infinite deck (each rank 1/13).
+ * There is no hole-card peek, so a dealer blackjack is one of the outcomes.
+ */
+public final class DealerProbabilities {
+
+    // Outcome slots: final totals 16-21, then blackjack and bust
+    public static final int MIN_TOTAL = 16;
+    public static final int BLACKJACK = 6;
+    public static final int BUST = 7;
+    public static final int OUTCOMES = 8;
+
+    /** Upcards are indexed by blackjack value - 2 (2-10, then ace). */
+    public static final int UPCARDS = 10;
+
+    /** Probability of drawing each value 2-11 (ace) from an infinite deck. */
+    static final double[] DRAW_PROBABILITY = new double[12];
+
+    static {
+        for (int value = 2; value <= 11; value++) {
+            DRAW_PROBABILITY[value] = (value == 10 ? 4.0 : 1.0) / 13.0;
+        }
+    }
+
+    private DealerProbabilities() {
+        // Prevent instantiation
+    }
+
+    /**
+     * Final-outcome distribution for every upcard, indexed [upcard][outcome].
+     */
+    public static double[][] compute(DealerPolicy policy) {
+        double[][] table = new double[UPCARDS][];
+        for (int upcard = 2; upcard <= 11; upcard++) {
+            table[upcard - 2] = forUpcard(policy, upcard);
+        }
+        return table;
+    }
+
+    /**
+     * Final-outcome distribution for a single upcard value (2-11).
+     */
+    public static double[] forUpcard(DealerPolicy policy, int upcardValue) {
+        double[] outcomes = new double[OUTCOMES];
+        boolean ace = upcardValue == 11;
+        draw(policy, ace ? 1 : upcardValue, ace, 1, 1.0, outcomes);
+        return outcomes;
+    }
+
+    private static void draw(DealerPolicy policy, int hardTotal, boolean hasAce, int cards,
+                             double probability, double[] outcomes) {
+        boolean soft = hasAce && hardTotal <= 11;
+        int value = soft ? hardTotal + 10 : hardTotal;
+
+        if (hardTotal > 21) {
+            outcomes[BUST] += probability;
+        } else if (cards == 2 && value == 21) {
+            outcomes[BLACKJACK] += probability;
+        } else if (cards >= 2 && !policy.shouldHit(value, soft)) {
+            outcomes[value - MIN_TOTAL] += probability;
+        } else {
+            for (int card = 2; card <= 11; card++) {
+                boolean ace = card == 11;
+                draw(policy, hardTotal + (ace ? 1 : card), hasAce || ace, cards + 1,
+                        probability * DRAW_PROBABILITY[card], outcomes);
+            }
+        }
+    }
+
+    /**
+     * Expected value of standing on a total against a dealer outcome distribution.
+     */
+    public static double standValue(int playerTotal, double[] dealer) {
+        double ev = dealer[BUST] - dealer[BLACKJACK];
+        for (int total = MIN_TOTAL; total <= 21; total++) {
+            double p = dealer[total - MIN_TOTAL];
+            if (playerTotal > total) {
+                ev += p;
+            } else if (playerTotal < total) {
+                ev -= p;
+            }
+        }
+        return ev;
+    }
+}
@@ -0,0 +1,215 @@
+package network;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongConsumer;
+
+/**
+ * Authoritative chip balances for the players connected to a server. Table
+ * threads debit bets and credit settlements concurrently: each account is
+ * guarded by one of a fixed set of striped locks, so updates to different
+ * accounts rarely contend and there is no global lock.
+ *
+ * Every update carries a transaction id. The result of each recent
+ * transaction is remembered per account, so a retried debit or credit (for
+ * example after a reconnect) returns the original result instead of being
+ * applied twice.
+ *
+ * An account stays open while any table holds it. When the last holder
+ * closes it, its final balance is handed to the caller to keep, and only
+ * then is the account forgotten; a table that holds it again meanwhile
+ * keeps it open.
+ */
+public class BalanceLedger {
+
+    public static final int DEFAULT_STRIPES = 64;
+    public static final int DEFAULT_REMEMBERED_TRANSACTIONS = 256;
+
+    public enum Status {
+        APPLIED,
+        INSUFFICIENT_FUNDS,
+        UNKNOWN_ACCOUNT
+    }
+
+    /**
+     * Outcome of a debit or credit.
+     *
+     * @param balance  the account balance right after the transaction
+     * @param replay   whether this transaction id had already been processed
+     */
+    public record Result(Status status, long balance, boolean replay) {
+        public boolean isApplied() {
+            return status == Status.APPLIED;
+        }
+    }
+
+    /**
+     * Balance and recent transactions of one player, guarded by its stripe.
+     */
+    private static final class Account {
+        volatile long balance;
+        final Map<Long, Result> recent;
+        int holders; // Tables with the account open; changed only inside the map's compute
+
+        Account(long balance, int remembered) {
+            this.balance = balance;
+            this.recent = new LinkedHashMap<>(16, 0.75f, false) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Long, Result> eldest) {
+                    return size() > remembered;
+                }
+            };
+        }
+    }
+
+    private final Map<String, Account> accounts = new ConcurrentHashMap<>();
+    private final Object[] stripes;
+    private final int stripeMask;
+    private final int remembered;
+    private final AtomicLong nextTransaction = new AtomicLong(1);
+
+    public BalanceLedger() {
+        this(DEFAULT_STRIPES, DEFAULT_REMEMBERED_TRANSACTIONS);
+    }
+
+    /**
+     * @param stripes     number of locks, rounded up to a power of two
+     * @param remembered  transaction results kept per account for retries
+     */
+    public BalanceLedger(int stripes, int remembered) {
+        if (stripes < 1 || remembered < 1) {
+            throw new IllegalArgumentException("Stripes and remembered transactions must be positive.");
+        }
+        int size = Integer.highestOneBit(stripes - 1) << 1;
+        this.stripes = new Object[Math.max(1, size)];
+        for (int i = 0; i < this.stripes.length; i++) {
+            this.stripes[i] = new Object();
+        }
+        this.stripeMask = this.stripes.length - 1;
+        this.remembered = remembered;
+    }
+
+    private Object stripe(String accountId) {
+        int h = accountId.hashCode();
+        return stripes[(h ^ (h >>> 16)) & stripeMask];
+    }
+
+    /**
+     * A new transaction id, unique within this ledger.
+     */
+    public long nextTransactionId() {
+        return nextTransaction.getAndIncrement();
+    }
+
+    /**
+     * Open an account with a starting balance, or hold the existing one.
+     *
+     * @return the account's balance
+     */
+    public long openAccount(String accountId, long initialBalance) {
+        if (initialBalance < 0) {
+            throw new IllegalArgumentException("Initial balance cannot be negative.");
+        }
+        return accounts.compute(accountId, (id, account) -> {
+            if (account == null) {
+                account = new Account(initialBalance, remembered);
+            }
+            account.holders++;
+            return account;
+        }).balance;
+    }
+
+    /**
+     * Hold an account if it is open, as {@link #openAccount} would.
+     *
+     * @return false if the account is not open
+     */
+    public boolean holdAccount(String accountId) {
+        return accounts.computeIfPresent(accountId, (id, account) -> {
+            account.holders++;
+            return account;
+        }) != null;
+    }
+
+    /**
+     * Release an account opened or held. When the last holder releases it,
+     * its final balance is passed to {@code closed} and the account is then
+     * removed, unless it has been held again in between.
+     */
+    public void closeAccount(String accountId, LongConsumer closed) {
+        Account[] released = new Account[1];
+        accounts.computeIfPresent(accountId, (id, account) -> {
+            if (--account.holders == 0) {
+                released[0] = account;
+            }
+            return account;
+        });
+        Account account = released[0];
+        if (account == null) {
+            return;
+        }
+        closed.accept(account.balance); // No holder is left to change it
+        accounts.computeIfPresent(accountId, (id, current) ->
+                current == account && current.holders == 0 ? null : current);
+    }
+
+    public boolean hasAccount(String accountId) {
+        return accounts.containsKey(accountId);
+    }
+
+    /**
+     * Current balance, read without locking; 0 for an unknown account.
+     */
+    public long getBalance(String accountId) {
+        Account account = accounts.get(accountId);
+        return account == null ? 0 : account.balance;
+    }
+
+    /**
+     * Take chips from an account, refusing if the balance cannot cover them.
+     */
+    public Result debit(String accountId, long transactionId, long amount) {
+        if (amount < 0) {
+            throw new IllegalArgumentException("Debit amount cannot be negative.");
+        }
+        return apply(accountId, transactionId, -amount);
+    }
+
+    /**
+     * Pay chips into an account.
+     */
+    public Result credit(String accountId, long transactionId, long amount) {
+        if (amount < 0) {
+            throw new IllegalArgumentException("Credit amount cannot be negative.");
+        }
+        return apply(accountId, transactionId, amount);
+    }
+
+    private Result apply(String accountId, long transactionId, long delta) {
+        Account account = accounts.get(accountId);
+        if (account == null) {
+            return new Result(Status.UNKNOWN_ACCOUNT, 0, false);
+        }
+        synchronized (stripe(accountId)) {
+            Result previous = account.recent.get(transactionId);
+            if (previous != null) {
+                return new Result(previous.status(), previous.balance(), true);
+            }
+            Result result;
+            if (account.balance + delta < 0) {
+                result = new Result(Status.INSUFFICIENT_FUNDS, account.balance, false);
+            } else {
+                account.balance += delta;
+                result = new Result(Status.APPLIED, account.balance, false);
+            }
+            account.recent.put(transactionId, result);
+            return result;
+        }
+    }
+
+    public int getAccountCount() {
+        return accounts.size();
+    }
+}
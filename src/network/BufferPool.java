@@ -0,0 +1,47 @@
+package network;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+
+/**
+ * Free list of equal-sized direct buffers. Connections borrow a buffer only
+ * while they have a partial frame to read or bytes left to write, so idle
+ * connections hold none and a warmed-up server stops allocating. Each event
+ * loop owns its pool; not thread-safe.
+ */
+final class BufferPool {
+
+    private final ArrayDeque<ByteBuffer> free = new ArrayDeque<>();
+    private final int bufferSize;
+    private final int maxPooled;
+
+    /**
+     * @param maxPooled  free buffers kept for reuse; extra ones are dropped
+     */
+    BufferPool(int bufferSize, int maxPooled) {
+        this.bufferSize = bufferSize;
+        this.maxPooled = maxPooled;
+    }
+
+    /**
+     * A cleared buffer.
+     */
+    ByteBuffer acquire() {
+        ByteBuffer buffer = free.pollFirst();
+        if (buffer == null) {
+            return ByteBuffer.allocateDirect(bufferSize);
+        }
+        buffer.clear();
+        return buffer;
+    }
+
+    void release(ByteBuffer buffer) {
+        if (free.size() < maxPooled) {
+            free.addFirst(buffer);
+        }
+    }
+
+    int getFreeCount() {
+        return free.size();
+    }
+}
@@ -0,0 +1,90 @@
+package network;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+
+/**
+ * Wire format shared by the server and the client: each {@link GameMessage}
+ * travels in one frame, a 4-byte big-endian payload length followed by the
+ * payload in {@link MessageCodec} form. Frames let the server read from
+ * non-blocking channels and know exactly when a whole message has arrived.
+ *
+ * Frames are encoded straight into the buffer they are sent from and
+ * decoded from the buffer they arrived in, so no frame needs an array of
+ * its own.
+ */
+final class FrameCodec {
+
+    static final int HEADER_BYTES = 4;
+    static final int MAX_PAYLOAD_BYTES = 16 * 1024;
+    static final int MAX_FRAME_BYTES = HEADER_BYTES + MAX_PAYLOAD_BYTES;
+
+    // Scratch space for the blocking stream methods; each call is done with it before returning
+    private static final ThreadLocal<ByteBuffer> SCRATCH =
+            ThreadLocal.withInitial(() -> ByteBuffer.allocate(MAX_FRAME_BYTES));
+
+    private FrameCodec() {
+    }
+
+    /**
+     * Append the whole frame carrying a message at the buffer's position.
+     *
+     * @return false, leaving the buffer as it was, if the frame does not fit
+     */
+    static boolean encode(GameMessage message, ByteBuffer frame) {
+        int start = frame.position();
+        if (frame.remaining() < HEADER_BYTES) {
+            return false;
+        }
+        frame.position(start + HEADER_BYTES);
+        try {
+            MessageCodec.encode(message, frame);
+        } catch (BufferOverflowException e) {
+            frame.position(start);
+            return false;
+        }
+        int length = frame.position() - start - HEADER_BYTES;
+        if (length > MAX_PAYLOAD_BYTES) {
+            frame.position(start);
+            return false;
+        }
+        frame.putInt(start, length);
+        return true;
+    }
+
+    /**
+     * Message in a frame payload; reads the buffer's remaining bytes.
+     */
+    static GameMessage decode(ByteBuffer payload) throws IOException {
+        return MessageCodec.decode(payload);
+    }
+
+    /**
+     * Write one frame to a blocking stream; the caller flushes.
+     */
+    static void write(DataOutputStream out, GameMessage message) throws IOException {
+        ByteBuffer frame = SCRATCH.get();
+        frame.clear();
+        if (!encode(message, frame)) {
+            throw new IOException("Message too large for one frame");
+        }
+        out.write(frame.array(), 0, frame.position());
+    }
+
+    /**
+     * Read one frame from a blocking stream.
+     */
+    static GameMessage read(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0 || length > MAX_PAYLOAD_BYTES) {
+            throw new IOException("Invalid frame length: " + length);
+        }
+        ByteBuffer payload = SCRATCH.get();
+        in.readFully(payload.array(), 0, length);
+        payload.clear().limit(length);
+        return decode(payload);
+    }
+}
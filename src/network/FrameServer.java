@@ -0,0 +1,477 @@
+package network;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Non-blocking transport for length-prefixed frames (see {@link FrameCodec}).
+ * A few event loop threads, each with its own {@link Selector}, serve every
+ * connection: the first loop accepts and hands new channels out round-robin.
+ * Reads and writes go through pooled buffers, and several queued frames are
+ * written with one call, so thousands of connections need no thread each.
+ * Queued messages are encoded by the event loop straight into the pooled
+ * write buffer, and arriving frames are decoded from the read buffer.
+ *
+ * The handler runs on the event loop threads and must not block them;
+ * {@link Connection#send} may be called from any thread.
+ */
+public class FrameServer {
+
+    private static final int BACKLOG = 1024;
+    private static final int MAX_ACCEPTS_PER_EVENT = 64;
+    private static final int POOLED_BUFFERS_PER_LOOP = 256;
+
+    public interface Handler {
+        void onOpen(Connection connection);
+
+        /**
+         * A whole frame arrived. The payload buffer is only valid during the call.
+         */
+        void onFrame(Connection connection, ByteBuffer payload);
+
+        void onClose(Connection connection);
+    }
+
+    /**
+     * One client connection. Sending is thread-safe; buffers and the
+     * selection key are only touched by the connection's event loop.
+     */
+    public static final class Connection {
+        private final long id;
+        private final SocketChannel channel;
+        private final EventLoop loop;
+        private final String remoteAddress;
+        private final Queue<GameMessage> outbound = new ConcurrentLinkedQueue<>();
+        private final AtomicBoolean flushScheduled = new AtomicBoolean(false);
+        private volatile boolean closeRequested;
+        private volatile boolean closed;
+        private volatile Object attachment;
+        private SelectionKey key;
+        private ByteBuffer readBuffer;
+        private ByteBuffer writeBuffer;
+
+        private Connection(long id, SocketChannel channel, EventLoop loop, String remoteAddress) {
+            this.id = id;
+            this.channel = channel;
+            this.loop = loop;
+            this.remoteAddress = remoteAddress;
+        }
+
+        public long getId() {
+            return id;
+        }
+
+        /**
+         * Remote host and port, such as "192.168.1.20:51234".
+         */
+        public String getRemoteAddress() {
+            return remoteAddress;
+        }
+
+        public String getRemoteHost() {
+            int colon = remoteAddress.lastIndexOf(':');
+            return colon < 0 ? remoteAddress : remoteAddress.substring(0, colon);
+        }
+
+        public boolean isOpen() {
+            return !closed && !closeRequested;
+        }
+
+        /**
+         * Queue a message for sending; ignored once the connection is closing.
+         * It is encoded later on the event loop, so it must not be changed
+         * after this call.
+         */
+        public void send(GameMessage message) {
+            if (!isOpen()) {
+                return;
+            }
+            outbound.add(message);
+            if (flushScheduled.compareAndSet(false, true)) {
+                loop.schedule(this);
+            }
+        }
+
+        /**
+         * Close after the frames already queued have been sent.
+         */
+        public void close() {
+            if (!closeRequested) {
+                closeRequested = true;
+                if (flushScheduled.compareAndSet(false, true)) {
+                    loop.schedule(this);
+                }
+            }
+        }
+
+        public Object getAttachment() {
+            return attachment;
+        }
+
+        public void setAttachment(Object attachment) {
+            this.attachment = attachment;
+        }
+    }
+
+    private final Handler handler;
+    private final EventLoop[] loops;
+    private final AtomicLong nextConnectionId = new AtomicLong(1);
+    private final AtomicInteger connectionCount = new AtomicInteger();
+    private ServerSocketChannel serverChannel;
+    private volatile boolean running;
+    private int nextLoop; // Only used by the accepting loop
+
+    /**
+     * @param eventLoops  number of selector threads
+     */
+    public FrameServer(Handler handler, int eventLoops) {
+        if (eventLoops < 1) {
+            throw new IllegalArgumentException("At least one event loop is required.");
+        }
+        this.handler = handler;
+        this.loops = new EventLoop[eventLoops];
+    }
+
+    /**
+     * Bind and start the event loops.
+     */
+    public synchronized void start(InetSocketAddress address) throws IOException {
+        if (running) {
+            throw new IllegalStateException("Server already started.");
+        }
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+        serverChannel.bind(address, BACKLOG);
+        serverChannel.configureBlocking(false);
+
+        for (int i = 0; i < loops.length; i++) {
+            loops[i] = new EventLoop(i);
+        }
+        serverChannel.register(loops[0].selector, SelectionKey.OP_ACCEPT);
+        running = true;
+        for (EventLoop loop : loops) {
+            loop.thread.start();
+        }
+    }
+
+    /**
+     * Port the server is bound to, useful after binding port 0.
+     */
+    public int getPort() {
+        return serverChannel.socket().getLocalPort();
+    }
+
+    public int getConnectionCount() {
+        return connectionCount.get();
+    }
+
+    /**
+     * Close every connection and stop the event loops.
+     */
+    public synchronized void stop() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        for (EventLoop loop : loops) {
+            loop.selector.wakeup();
+        }
+        for (EventLoop loop : loops) {
+            if (loop.thread != Thread.currentThread()) {
+                try {
+                    loop.thread.join();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+        try {
+            serverChannel.close();
+        } catch (IOException e) {
+            // Already stopping; nothing left to release
+        }
+    }
+
+    /**
+     * One selector thread and the connections registered with it.
+     */
+    private final class EventLoop implements Runnable {
+        final Selector selector;
+        final Thread thread;
+        final BufferPool pool = new BufferPool(FrameCodec.MAX_FRAME_BYTES, POOLED_BUFFERS_PER_LOOP);
+        final Queue<SocketChannel> registrations = new ConcurrentLinkedQueue<>();
+        final Queue<Connection> scheduled = new ConcurrentLinkedQueue<>();
+        final AtomicBoolean wakeupPending = new AtomicBoolean(false);
+
+        EventLoop(int index) throws IOException {
+            selector = Selector.open();
+            thread = new Thread(this, "FrameServer-loop-" + index);
+            thread.setDaemon(true);
+        }
+
+        void register(SocketChannel channel) {
+            registrations.add(channel);
+            wakeup();
+        }
+
+        void schedule(Connection connection) {
+            scheduled.add(connection);
+            wakeup();
+        }
+
+        private void wakeup() {
+            if (wakeupPending.compareAndSet(false, true)) {
+                selector.wakeup();
+            }
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (running) {
+                    // Cleared before draining, so work queued after this point wakes the next select
+                    wakeupPending.set(false);
+                    processRegistrations();
+                    processScheduled();
+                    selector.select();
+                    for (SelectionKey key : selector.selectedKeys()) {
+                        handleKey(key);
+                    }
+                    selector.selectedKeys().clear();
+                }
+            } catch (IOException | ClosedSelectorException e) {
+                if (running) {
+                    System.err.println("Event loop failed: " + e.getMessage());
+                }
+            } finally {
+                closeAll();
+            }
+        }
+
+        private void handleKey(SelectionKey key) {
+            if (!key.isValid()) {
+                return;
+            }
+            if (key.isAcceptable()) {
+                accept();
+                return;
+            }
+            Connection connection = (Connection) key.attachment();
+            if (key.isReadable()) {
+                read(connection);
+            }
+            if (key.isValid() && key.isWritable()) {
+                flush(connection);
+            }
+        }
+
+        private void accept() {
+            for (int i = 0; i < MAX_ACCEPTS_PER_EVENT; i++) {
+                SocketChannel channel;
+                try {
+                    channel = serverChannel.accept();
+                    if (channel == null) {
+                        return;
+                    }
+                    channel.configureBlocking(false);
+                    channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                } catch (IOException e) {
+                    System.err.println("Error accepting connection: " + e.getMessage());
+                    return;
+                }
+                EventLoop target = loops[nextLoop];
+                nextLoop = (nextLoop + 1) % loops.length;
+                target.register(channel);
+            }
+        }
+
+        private void processRegistrations() {
+            SocketChannel channel;
+            while ((channel = registrations.poll()) != null) {
+                Connection connection;
+                try {
+                    InetSocketAddress remote = (InetSocketAddress) channel.getRemoteAddress();
+                    connection = new Connection(nextConnectionId.getAndIncrement(), channel, this,
+                            remote.getAddress().getHostAddress() + ":" + remote.getPort());
+                    connection.key = channel.register(selector, SelectionKey.OP_READ, connection);
+                } catch (IOException e) {
+                    closeQuietly(channel);
+                    continue;
+                }
+                connectionCount.incrementAndGet();
+                try {
+                    handler.onOpen(connection);
+                } catch (RuntimeException e) {
+                    System.err.println("Error opening connection " + connection.remoteAddress + ": " + e);
+                    close(connection);
+                }
+            }
+        }
+
+        private void processScheduled() {
+            Connection connection;
+            while ((connection = scheduled.poll()) != null) {
+                if (!connection.closed) {
+                    flush(connection);
+                }
+            }
+        }
+
+        private void read(Connection connection) {
+            ByteBuffer buffer = connection.readBuffer != null ? connection.readBuffer : pool.acquire();
+            connection.readBuffer = null;
+            int read;
+            try {
+                read = connection.channel.read(buffer);
+            } catch (IOException e) {
+                read = -1;
+            }
+            if (read < 0) {
+                pool.release(buffer);
+                close(connection);
+                return;
+            }
+
+            buffer.flip();
+            while (buffer.remaining() >= FrameCodec.HEADER_BYTES && !connection.closed) {
+                int length = buffer.getInt(buffer.position());
+                if (length < 0 || length > FrameCodec.MAX_PAYLOAD_BYTES) {
+                    System.err.println("Invalid frame length " + length + " from " + connection.remoteAddress);
+                    pool.release(buffer);
+                    close(connection);
+                    return;
+                }
+                if (buffer.remaining() < FrameCodec.HEADER_BYTES + length) {
+                    break;
+                }
+                int start = buffer.position() + FrameCodec.HEADER_BYTES;
+                buffer.position(start + length);
+                try {
+                    handler.onFrame(connection, buffer.slice(start, length));
+                } catch (RuntimeException e) {
+                    System.err.println("Error handling frame from " + connection.remoteAddress + ": " + e);
+                    close(connection);
+                }
+            }
+
+            if (buffer.hasRemaining() && !connection.closed) {
+                // Keep the partial frame until the rest arrives
+                buffer.compact();
+                connection.readBuffer = buffer;
+            } else {
+                pool.release(buffer);
+            }
+        }
+
+        /**
+         * Write queued frames until they are all sent or the socket is full.
+         */
+        private void flush(Connection connection) {
+            // Cleared first, so a frame queued while flushing schedules another flush
+            connection.flushScheduled.set(false);
+            ByteBuffer buffer = connection.writeBuffer != null ? connection.writeBuffer : pool.acquire();
+            connection.writeBuffer = null;
+            try {
+                while (true) {
+                    GameMessage message;
+                    while ((message = connection.outbound.peek()) != null) {
+                        if (FrameCodec.encode(message, buffer)) {
+                            connection.outbound.poll();
+                        } else if (buffer.position() == 0) {
+                            // Would not fit even in an empty buffer
+                            System.err.println("Dropping " + message.getType() + " to " + connection.remoteAddress
+                                    + ": too large for one frame");
+                            connection.outbound.poll();
+                        } else {
+                            break;
+                        }
+                    }
+                    if (buffer.position() == 0) {
+                        break;
+                    }
+                    buffer.flip();
+                    connection.channel.write(buffer);
+                    buffer.compact();
+                    if (buffer.position() > 0) {
+                        // Socket buffer full: wait until it drains
+                        connection.writeBuffer = buffer;
+                        connection.key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+                        return;
+                    }
+                }
+            } catch (IOException e) {
+                pool.release(buffer);
+                close(connection);
+                return;
+            }
+
+            pool.release(buffer);
+            if (connection.closeRequested) {
+                close(connection);
+            } else if ((connection.key.interestOps() & SelectionKey.OP_WRITE) != 0) {
+                connection.key.interestOps(SelectionKey.OP_READ);
+            }
+        }
+
+        private void close(Connection connection) {
+            if (connection.closed) {
+                return;
+            }
+            connection.closed = true;
+            connection.key.cancel();
+            closeQuietly(connection.channel);
+            if (connection.readBuffer != null) {
+                pool.release(connection.readBuffer);
+                connection.readBuffer = null;
+            }
+            if (connection.writeBuffer != null) {
+                pool.release(connection.writeBuffer);
+                connection.writeBuffer = null;
+            }
+            connection.outbound.clear();
+            connectionCount.decrementAndGet();
+            try {
+                handler.onClose(connection);
+            } catch (RuntimeException e) {
+                System.err.println("Error closing connection " + connection.remoteAddress + ": " + e);
+            }
+        }
+
+        private void closeAll() {
+            for (SelectionKey key : selector.keys()) {
+                if (key.attachment() instanceof Connection connection) {
+                    close(connection);
+                }
+            }
+            SocketChannel channel;
+            while ((channel = registrations.poll()) != null) {
+                closeQuietly(channel);
+            }
+            try {
+                selector.close();
+            } catch (IOException e) {
+                // Nothing left to release
+            }
+        }
+
+        private void closeQuietly(SocketChannel channel) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                // Connection is being dropped anyway
+            }
+        }
+    }
+}
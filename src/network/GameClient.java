@@ -4,26 +4,59 @@ import java.io.*;
 import java.net.Socket;
 
 /**
- * Client class for connecting to a blackjack game server
+ * Client class for connecting to a blackjack game server.
+ *
+ * Server events arrive numbered. Events are passed on in order; a repeated
+ * one is dropped, and a missing one makes the client ask for a snapshot and
+ * drop events until it arrives, so the listener never applies a delta to
+ * the wrong state.
+ *
+ * If the connection drops, the client reconnects at once and resumes its
+ * session from the last event applied; the server sends what was missed
+ * and then a snapshot. Messages sent while reconnecting are dropped; the
+ * snapshot shows whether they still need sending.
+ *
+ * The player name goes with both requests, so the server keeps the
+ * player's chips under it between sessions.
  */
 public class GameClient {
     private static final int DEFAULT_PORT = 7777;
+    private static final int RECONNECT_ATTEMPTS = 8;
+    private static final long FIRST_RETRY_DELAY_MS = 25; // Doubled after every failed attempt
     private Socket socket;
-    private ObjectOutputStream out;
-    private ObjectInputStream in;
-    private boolean connected;
+    private DataOutputStream out;
+    private DataInputStream in;
+    private volatile boolean connected;
+    private volatile boolean leaving; // Set by disconnect(), so the closed connection is not resumed
+    private volatile boolean reconnecting;
     private final ClientListener listener;
+    private final String playerName; // Null for a guest
+    private String host;
+    private int port;
+    private volatile String sessionToken; // From CONNECT_ACCEPT; null until then
+    private volatile long lastSequence; // Last server event passed to the listener
+    private boolean awaitingSnapshot;
 
     public interface ClientListener {
         void onConnected();
         void onConnectionFailed(String reason);
+        void onReconnecting();
         void onDisconnected();
         void onMessageReceived(GameMessage message);
         void onError(String error);
     }
 
     public GameClient(ClientListener listener) {
+        this(listener, null);
+    }
+
+    /**
+     * @param playerName  name the server keeps the player's chips under, or
+     *                    null to play as a guest
+     */
+    public GameClient(ClientListener listener, String playerName) {
         this.listener = listener;
+        this.playerName = playerName;
         this.connected = false;
     }
 
@@ -35,15 +68,16 @@ public class GameClient {
     }
 
     public void connect(String host, int port) {
+        this.host = host;
+        this.port = port;
         new Thread(() -> {
             try {
-                socket = new Socket(host, port);
-                out = new ObjectOutputStream(socket.getOutputStream());
-                in = new ObjectInputStream(socket.getInputStream());
+                open();
                 connected = true;
 
                 // Send connection request
                 GameMessage connectMsg = new GameMessage(GameMessage.MessageType.CONNECT_REQUEST);
+                connectMsg.setData(playerName);
                 sendMessage(connectMsg);
 
                 listener.onConnected();
@@ -62,20 +96,115 @@ public class GameClient {
      */
     private void listen() {
         new Thread(() -> {
-            try {
-                while (connected && !socket.isClosed()) {
-                    GameMessage message = (GameMessage) in.readObject();
-                    listener.onMessageReceived(message);
-                }
-            } catch (IOException | ClassNotFoundException e) {
-                if (connected) {
-                    listener.onDisconnected();
-                    connected = false;
+            while (connected && !leaving) {
+                try {
+                    GameMessage message = FrameCodec.read(in);
+                    deliver(message);
+                } catch (IOException e) {
+                    if (connected && !leaving && !reconnect() && !leaving) {
+                        connected = false;
+                        listener.onDisconnected();
+                    }
                 }
             }
         }).start();
     }
 
+    /**
+     * Open the socket and its streams, replacing any previous ones.
+     */
+    private synchronized void open() throws IOException {
+        if (socket != null) {
+            socket.close();
+        }
+        socket = new Socket(host, port);
+        socket.setTcpNoDelay(true);
+        out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+        in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+    }
+
+    /**
+     * Connect again and ask to resume the session after the last event
+     * applied, retrying with a growing delay.
+     *
+     * @return false if there is no session or the server stayed unreachable
+     */
+    private boolean reconnect() {
+        if (sessionToken == null) {
+            return false;
+        }
+        reconnecting = true;
+        listener.onReconnecting();
+        long delay = FIRST_RETRY_DELAY_MS;
+        for (int attempt = 0; attempt < RECONNECT_ATTEMPTS && !leaving; attempt++) {
+            try {
+                open();
+                GameMessage resumeMsg = new GameMessage(GameMessage.MessageType.RESUME_REQUEST);
+                resumeMsg.setSessionToken(sessionToken);
+                resumeMsg.setSequence(lastSequence);
+                resumeMsg.setData(playerName); // In case the session has expired
+                reconnecting = false;
+                sendMessage(resumeMsg);
+                return true;
+            } catch (IOException e) {
+                try {
+                    Thread.sleep(delay);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+                delay *= 2;
+            }
+        }
+        reconnecting = false;
+        return false;
+    }
+
+    /**
+     * Pass a server event on if it is the next one expected.
+     */
+    private void deliver(GameMessage message) {
+        switch (message.getType()) {
+            // A new session numbers its events from the start
+            case CONNECT_ACCEPT -> {
+                sessionToken = message.getSessionToken();
+                lastSequence = 0;
+                awaitingSnapshot = false;
+            }
+            // The server follows with the missed events in order, or a snapshot
+            case RESUME_ACCEPT -> awaitingSnapshot = false;
+            default -> {
+            }
+        }
+        long sequence = message.getSequence();
+        if (sequence == 0) {
+            listener.onMessageReceived(message);
+            return;
+        }
+        if (sequence <= lastSequence) {
+            return; // Already applied
+        }
+        if (message.getType() == GameMessage.MessageType.SNAPSHOT) {
+            // A snapshot replaces everything before it, including anything missed
+            awaitingSnapshot = false;
+        } else if (awaitingSnapshot) {
+            return;
+        } else if (sequence != lastSequence + 1) {
+            awaitingSnapshot = true;
+            sendMessage(new GameMessage(GameMessage.MessageType.RESYNC_REQUEST));
+            return;
+        }
+        lastSequence = sequence;
+        listener.onMessageReceived(message);
+    }
+
+    /**
+     * Number of the last server event applied.
+     */
+    public long getLastSequence() {
+        return lastSequence;
+    }
+
     /**
      * Send a bet to the server
      */
@@ -85,6 +214,13 @@ public class GameClient {
         sendMessage(msg);
     }
 
+    /**
+     * Ask the table to deal with the bet placed; only automatic dealers act on it
+     */
+    public void requestDeal() {
+        sendMessage(new GameMessage(GameMessage.MessageType.DEAL_CARDS));
+    }
+
     /**
      * Send player action (Hit, Stand, Double Down)
      */
@@ -97,10 +233,10 @@ public class GameClient {
     /**
      * Send a message to the server
      */
-    private void sendMessage(GameMessage message) {
+    private synchronized void sendMessage(GameMessage message) {
         try {
-            if (out != null && connected) {
-                out.writeObject(message);
+            if (out != null && connected && !reconnecting) {
+                FrameCodec.write(out, message);
                 out.flush();
             }
         } catch (IOException e) {
@@ -112,6 +248,7 @@ public class GameClient {
      * Disconnect from the server
      */
     public void disconnect() {
+        leaving = true;
         if (connected) {
             GameMessage msg = new GameMessage(GameMessage.MessageType.DISCONNECT);
             sendMessage(msg);
@@ -119,9 +256,11 @@ public class GameClient {
 
         connected = false;
         try {
-            if (in != null) in.close();
-            if (out != null) out.close();
-            if (socket != null) socket.close();
+            synchronized (this) {
+                if (in != null) in.close();
+                if (out != null) out.close();
+                if (socket != null) socket.close();
+            }
         } catch (IOException e) {
             listener.onError("Error disconnecting: " + e.getMessage());
         }
@@ -26,7 +26,15 @@ public class GameMessage implements Serializable {
         UPDATE_GAME_STATE,
         CARD_DEALT,
         DEALER_CARD_DEALT,
-        TURN_CHANGED
+        TURN_CHANGED,
+
+        // State synchronisation
+        SNAPSHOT,
+        RESYNC_REQUEST,
+
+        // Session resumption
+        RESUME_REQUEST,
+        RESUME_ACCEPT
     }
 
     public enum PlayerAction {
@@ -50,6 +58,9 @@ public class GameMessage implements Serializable {
     private boolean isPlayerTurn;
     private boolean isDealerTurn;
     private List<Card> dealerCards;
+    private int chipBalance; // Player's balance on the server when the message was sent
+    private long sequence; // Position in the table's event stream; 0 for client messages
+    private String sessionToken; // Issued with CONNECT_ACCEPT, returned to resume the session
 
     public GameMessage(MessageType type) {
         this.type = type;
@@ -174,4 +185,28 @@ public class GameMessage implements Serializable {
     public void setDealerCards(List<Card> dealerCards) {
         this.dealerCards = dealerCards;
     }
+
+    public int getChipBalance() {
+        return chipBalance;
+    }
+
+    public void setChipBalance(int chipBalance) {
+        this.chipBalance = chipBalance;
+    }
+
+    public long getSequence() {
+        return sequence;
+    }
+
+    public void setSequence(long sequence) {
+        this.sequence = sequence;
+    }
+
+    public String getSessionToken() {
+        return sessionToken;
+    }
+
+    public void setSessionToken(String sessionToken) {
+        this.sessionToken = sessionToken;
+    }
 }
@@ -1,32 +1,73 @@
 package network;
 
 import data.Card;
-import logic.Deck;
-import logic.Hand;
+import logic.SessionStats;
+import logic.history.HandHistoryStore;
+import logic.leaderboard.Leaderboard;
 
 import java.io.*;
 import java.net.*;
-import java.util.ArrayList;
+import java.nio.ByteBuffer;
+import java.security.SecureRandom;
+import java.util.HexFormat;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
 
 /**
- * Server class for hosting a blackjack game (acts as the dealer)
+ * Server class for hosting blackjack games (acts as the dealer).
+ *
+ * Connections are served by a {@link FrameServer} and every player gets a
+ * {@link Table}. The first player sits at the host's table, where the host
+ * deals through this class; everyone else plays against an automatic dealer.
+ * Tables are actors run by a {@link TableManager}, created when a player
+ * connects and destroyed when they leave, so the thread count does not grow
+ * with the number of players.
+ *
+ * A connection starts with a handshake: CONNECT_REQUEST opens a new session
+ * and RESUME_REQUEST, carrying the session token, moves an existing one to
+ * the new connection. A session whose connection drops without a goodbye is
+ * held for {@link #RESUME_WINDOW_SECONDS} before its table is closed.
+ *
+ * Both requests may carry a player name, under which the player's chips
+ * are kept from one session to the next. A player without a valid name
+ * plays as a guest. A name is only claimed, not proven: anyone may play
+ * under a name, and its bankroll, that no open session is using, which
+ * suits players who trust each other on a local network. While a session
+ * is open its name is taken, and a second player asking for it plays as
+ * a guest.
  */
 public class GameServer {
     private static final int DEFAULT_PORT = 7777;
-    private ServerSocket serverSocket;
-    private Socket clientSocket;
-    private ObjectOutputStream out;
-    private ObjectInputStream in;
-    private boolean running;
+    private static final int STARTING_CHIPS = 100;
+    private static final int EVENT_LOOPS = 2;
+    private static final int TABLE_THREADS = Runtime.getRuntime().availableProcessors();
+    private static final int NO_TABLE = -1;
+    private static final int RESUME_WINDOW_SECONDS = 60;
+    private static final int TOKEN_BYTES = 16;
+    private static final Pattern PLAYER_NAME = Pattern.compile("[\\p{L}\\p{N} _.-]{1,24}");
     private final ServerListener listener;
-
-    private Deck deck;
-    private Hand playerHand;
-    private Hand dealerHand;
-    private int currentBet;
-    private boolean gameStarted = false;
-    private boolean isPlayerTurn = false;
+    private final ServerListener quietListener;
+    private final boolean hostDeals;
+
+    // Chips are debited and credited here; the client only displays the balance
+    private final BalanceLedger ledger;
+    private final Leaderboard leaderboard;
+    private final HandHistoryStore history;
+    private final SessionStats stats = new SessionStats();
+
+    private final FrameServer transport = new FrameServer(new ConnectionHandler(), EVENT_LOOPS);
+    private final TableManager tables;
+    private final AtomicBoolean hostSeatTaken = new AtomicBoolean(false);
+    private volatile long hostTableId = NO_TABLE; // Table the host deals at
+    private final Map<String, Long> sessions = new ConcurrentHashMap<>(); // Session token to table id
+    private final Set<String> namesInUse = ConcurrentHashMap.newKeySet(); // Player names of open sessions
+    private final SecureRandom tokens = new SecureRandom();
 
     public interface ServerListener {
         void onClientConnected(String clientAddress);
@@ -40,12 +81,27 @@ public class GameServer {
     }
 
     public GameServer(ServerListener listener) {
+        this(listener, new BalanceLedger(), new Leaderboard(), null, true);
+    }
+
+    /**
+     * @param history    where settled rounds are recorded, or null to keep no history
+     * @param hostDeals  whether the first player sits at a table dealt by the
+     *                   host; otherwise every table deals automatically
+     */
+    public GameServer(ServerListener listener, BalanceLedger ledger, Leaderboard leaderboard,
+                      HandHistoryStore history, boolean hostDeals) {
         this.listener = listener;
-        this.running = false;
+        this.ledger = ledger;
+        this.leaderboard = leaderboard;
+        this.history = history;
+        this.hostDeals = hostDeals;
+        this.quietListener = new QuietListener(listener::onError);
+        this.tables = new TableManager(TABLE_THREADS, stats, listener::onError);
     }
 
     /**
-     * Start the server and wait for a client connection
+     * Start the server and wait for client connections
      */
     public void start() throws IOException {
         start(DEFAULT_PORT);
@@ -53,313 +109,193 @@ public class GameServer {
 
     public void start(int port) throws IOException {
         // Bind to all network interfaces (0.0.0.0) to accept connections from other machines
-        serverSocket = new ServerSocket(port, 50, InetAddress.getByName("0.0.0.0"));
-        running = true;
-
-        new Thread(() -> {
-            try {
-                listener.onGameStateChanged("Server started on port " + port + ". Waiting for player...");
-
-                clientSocket = serverSocket.accept();
-                out = new ObjectOutputStream(clientSocket.getOutputStream());
-                in = new ObjectInputStream(clientSocket.getInputStream());
-
-                listener.onClientConnected(clientSocket.getInetAddress().getHostAddress());
-
-                // Send connection acceptance
-                GameMessage acceptMsg = new GameMessage(GameMessage.MessageType.CONNECT_ACCEPT);
-                acceptMsg.setData("Welcome to Blackjack!");
-                sendMessage(acceptMsg);
-
-                // Start listening for messages
-                listen();
+        transport.start(new InetSocketAddress(InetAddress.getByName("0.0.0.0"), port));
+        listener.onGameStateChanged("Server started on port " + getPort() + ". Waiting for player...");
+    }
 
-            } catch (IOException e) {
-                if (running) {
-                    listener.onError("Server error: " + e.getMessage());
-                }
-            }
-        }).start();
+    public int getPort() {
+        return transport.getPort();
     }
 
     /**
-     * Listen for incoming messages from the client
+     * Binds each connection to a table with the handshake, then routes its
+     * frames there, decoding them on the event loop. The connection's
+     * attachment is its table's id.
      */
-    private void listen() {
-        new Thread(() -> {
+    private final class ConnectionHandler implements FrameServer.Handler {
+        @Override
+        public void onOpen(FrameServer.Connection connection) {
+            // The table is chosen by the first message
+        }
+
+        @Override
+        public void onFrame(FrameServer.Connection connection, ByteBuffer payload) {
+            GameMessage message;
             try {
-                while (running && !clientSocket.isClosed()) {
-                    GameMessage message = (GameMessage) in.readObject();
-                    handleMessage(message);
-                }
-            } catch (IOException | ClassNotFoundException e) {
-                if (running) {
-                    listener.onClientDisconnected();
-                }
+                message = FrameCodec.decode(payload);
+            } catch (IOException e) {
+                listener.onError("Invalid message from " + connection.getRemoteAddress() + ": " + e.getMessage());
+                connection.close();
+                return;
             }
-        }).start();
-    }
-
-    /**
-     * Handle incoming messages from the client
-     */
-    private void handleMessage(GameMessage message) {
-        switch (message.getType()) {
-            case PLACE_BET -> {
-                currentBet = message.getBetAmount();
-                listener.onGameStateChanged("Player placed bet: $" + currentBet);
+            if (!(connection.getAttachment() instanceof Long tableId)) {
+                handshake(connection, message);
+            } else if (!tables.route(tableId, table -> table.handleMessage(message))) {
+                connection.close(); // The session has been closed
             }
+        }
 
-            case DEAL_CARDS -> {
+        @Override
+        public void onClose(FrameServer.Connection connection) {
+            if (!(connection.getAttachment() instanceof Long tableId)) {
+                return;
             }
+            tables.route(tableId, table -> {
+                if (!table.detach(connection)) {
+                    return; // Already resumed on another connection
+                }
+                if (table.isLeaving()) {
+                    closeSession(table);
+                } else {
+                    int disconnects = table.getDisconnects();
+                    tables.routeLater(tableId, held -> {
+                        if (!held.isConnected() && held.getDisconnects() == disconnects) {
+                            closeSession(held);
+                        }
+                    }, RESUME_WINDOW_SECONDS, TimeUnit.SECONDS);
+                }
+            });
+        }
 
-            case PLAYER_ACTION -> handlePlayerAction(message.getAction());
+        private void handshake(FrameServer.Connection connection, GameMessage message) {
+            switch (message.getType()) {
+                case CONNECT_REQUEST -> openSession(connection, message.getData());
 
-            case DISCONNECT -> listener.onClientDisconnected();
+                case RESUME_REQUEST -> {
+                    String token = message.getSessionToken();
+                    Long tableId = token == null ? null : sessions.get(token);
+                    long acknowledged = message.getSequence();
+                    if (tableId != null) {
+                        connection.setAttachment(tableId);
+                    }
+                    // An unknown or expired session starts over
+                    if (tableId == null || !tables.route(tableId, table -> table.resume(connection, acknowledged))) {
+                        openSession(connection, message.getData());
+                    }
+                }
 
-            default -> {
+                default -> {
+                    listener.onError("Expected a connection request from " + connection.getRemoteAddress());
+                    connection.close();
+                }
             }
         }
-        // Player requests to deal - ignored, dealer controls this now
-            }
+    }
 
     /**
-     * Start the game - called by dealer when ready
+     * Seat a new player at their own table.
+     *
+     * @param playerName  name sent with the request; a guest if missing or invalid
      */
-    public void startGame() {
-        if (!gameStarted && currentBet > 0) {
-            dealInitialCards();
+    private void openSession(FrameServer.Connection connection, String playerName) {
+        boolean hosted = hostDeals && hostSeatTaken.compareAndSet(false, true);
+        String token = HexFormat.of().formatHex(nextToken());
+        String name = playerName == null ? "" : playerName.trim();
+        boolean valid = PLAYER_NAME.matcher(name).matches();
+        boolean claimed = valid && namesInUse.add(name);
+        String welcome = valid && !claimed
+                ? "Welcome to Blackjack! " + name + " is already playing, so you are playing as a guest."
+                : "Welcome to Blackjack!";
+        Table table = new Table(connection.getId(), token, claimed ? name : null,
+                connection, hosted ? listener : quietListener, hosted, ledger, leaderboard, history, stats,
+                STARTING_CHIPS);
+        connection.setAttachment(table.getId());
+        sessions.put(token, table.getId());
+        tables.open(table, opened -> opened.open(message -> tables.route(opened.getId(), message), welcome));
+        if (hosted) {
+            hostTableId = table.getId();
         }
     }
 
-    /**
-     * Deal initial cards to player and dealer
-     */
-    private void dealInitialCards() {
-        deck = new Deck();
-        deck.shuffle();
-        playerHand = new Hand();
-        dealerHand = new Hand();
-
-        // Deal 2 cards to player and dealer
-        playerHand.addCard(deck.drawCard());
-        dealerHand.addCard(deck.drawCard());
-        playerHand.addCard(deck.drawCard());
-        dealerHand.addCard(deck.drawCard());
-
-        gameStarted = true;
-        isPlayerTurn = true;
-
-        // Notify dealer GUI
-        listener.onCardsDealt(new ArrayList<>(dealerHand.getCards()),
-                              new ArrayList<>(playerHand.getCards()));
-        listener.onTurnChanged(false); // Player's turn
-
-        // Send initial cards to player
-        GameMessage msg = new GameMessage(GameMessage.MessageType.UPDATE_GAME_STATE);
-        msg.setCards(new ArrayList<>(playerHand.getCards()));
-        msg.setPlayerValue(playerHand.getValue());
-
-        // Only send first dealer card
-        List<Card> dealerFirstCard = new ArrayList<>();
-        dealerFirstCard.add(dealerHand.getCards().get(0));
-        msg.setDealerCards(dealerFirstCard);
-        msg.setStatusMessage("Your turn! Hit or Stand?");
-        msg.setPlayerTurn(true);
-        msg.setDealerTurn(false);
-
-        sendMessage(msg);
-        listener.onGameStateChanged("Cards dealt. Player's turn. Player value: " + playerHand.getValue());
+    private byte[] nextToken() {
+        byte[] token = new byte[TOKEN_BYTES];
+        tokens.nextBytes(token);
+        return token;
     }
 
     /**
-     * Handle player actions (Hit, Stand, Double Down)
+     * Close a table and forget its session token; runs on the table's actor.
      */
-    private void handlePlayerAction(GameMessage.PlayerAction action) {
-        if (action == null) return;
-
-        switch (action) {
-            case HIT -> {
-                Card drawnCard = deck.drawCard();
-                playerHand.addCard(drawnCard);
-
-                listener.onPlayerCardReceived(drawnCard);
-
-                GameMessage hitMsg = new GameMessage(GameMessage.MessageType.CARD_DEALT);
-                hitMsg.setSingleCard(drawnCard);
-                hitMsg.setPlayerValue(playerHand.getValue());
-                hitMsg.setPlayerBust(playerHand.isBust());
-                hitMsg.setPlayerTurn(!playerHand.isBust());
-
-                if (playerHand.isBust()) {
-                    hitMsg.setRoundOver(true);
-                    hitMsg.setStatusMessage("Bust! Dealer wins.");
-                    isPlayerTurn = false;
-                    gameStarted = false;
-                    listener.onGameStateChanged("Player busted! You win!");
-                    listener.onTurnChanged(true);
-                } else {
-                    hitMsg.setStatusMessage("Your turn! Hit or Stand?");
-                }
-
-                sendMessage(hitMsg);
+    private void closeSession(Table table) {
+        sessions.remove(table.getSessionToken());
+        tables.close(table.getId(), closed -> {
+            closed.close();
+            if (closed.getPlayerName() != null) {
+                namesInUse.remove(closed.getPlayerName());
             }
-
-            case STAND -> {
-                isPlayerTurn = false;
-                listener.onGameStateChanged("Player stands. Your turn!");
-                listener.onTurnChanged(true); // Dealer's turn
-
-                // Notify player to wait
-                GameMessage waitMsg = new GameMessage(GameMessage.MessageType.TURN_CHANGED);
-                waitMsg.setStatusMessage("Waiting for dealer's move...");
-                waitMsg.setPlayerTurn(false);
-                waitMsg.setDealerTurn(true);
-                sendMessage(waitMsg);
+            if (closed.hasHumanDealer()) {
+                hostTableId = NO_TABLE;
+                hostSeatTaken.set(false);
             }
+        });
+    }
 
-            case DOUBLE_DOWN -> {
-                Card doubleCard = deck.drawCard();
-                playerHand.addCard(doubleCard);
-                currentBet *= 2;
-
-                GameMessage doubleMsg = new GameMessage(GameMessage.MessageType.CARD_DEALT);
-                doubleMsg.setSingleCard(doubleCard);
-                doubleMsg.setPlayerValue(playerHand.getValue());
-                doubleMsg.setPlayerBust(playerHand.isBust());
-                doubleMsg.setBetAmount(currentBet);
-
-                listener.onPlayerCardReceived(doubleCard);
-
-                if (playerHand.isBust()) {
-                    doubleMsg.setRoundOver(true);
-                    doubleMsg.setStatusMessage("Bust! Dealer wins.");
-                    doubleMsg.setPlayerTurn(false);
-                    isPlayerTurn = false;
-                    gameStarted = false;
-                    listener.onGameStateChanged("Player busted after doubling down! You win!");
-                    listener.onTurnChanged(true);
-                    sendMessage(doubleMsg);
-                } else {
-                    doubleMsg.setPlayerTurn(false);
-                    sendMessage(doubleMsg);
-                    isPlayerTurn = false;
-                    listener.onGameStateChanged("Player doubled down. Your turn!");
-                    listener.onTurnChanged(true);
-
-                    // Notify player to wait
-                    GameMessage waitMsg2 = new GameMessage(GameMessage.MessageType.TURN_CHANGED);
-                    waitMsg2.setStatusMessage("Waiting for dealer's move...");
-                    waitMsg2.setPlayerTurn(false);
-                    waitMsg2.setDealerTurn(true);
-                    sendMessage(waitMsg2);
-                }
-            }
+    /**
+     * Run a dealer action on the host's table, if a player is seated there.
+     */
+    private void dispatchToHostTable(Consumer<Table> action) {
+        long tableId = hostTableId;
+        if (tableId != NO_TABLE) {
+            tables.route(tableId, action);
         }
     }
 
+    /**
+     * Start the game - called by dealer when ready
+     */
+    public void startGame() {
+        dispatchToHostTable(Table::startGame);
+    }
+
     /**
      * Dealer hits - called by dealer GUI
      */
     public void dealerHit() {
-        if (!isPlayerTurn && gameStarted) {
-            Card dealerCard = deck.drawCard();
-            dealerHand.addCard(dealerCard);
-            listener.onDealerCardReceived(dealerCard);
-
-            // Send card to player
-            GameMessage msg = new GameMessage(GameMessage.MessageType.DEALER_CARD_DEALT);
-            msg.setSingleCard(dealerCard);
-            msg.setDealerCards(new ArrayList<>(dealerHand.getCards()));
-            msg.setDealerValue(dealerHand.getValue());
-            msg.setStatusMessage("Dealer hits. Waiting for dealer...");
-            sendMessage(msg);
-
-            if (dealerHand.isBust()) {
-                listener.onGameStateChanged("You busted! Player wins!");
-                calculateResults(true); // Player wins
-            }
-        }
+        dispatchToHostTable(Table::dealerHit);
     }
 
     /**
      * Dealer stands - called by dealer GUI
      */
     public void dealerStand() {
-        if (!isPlayerTurn && gameStarted) {
-            listener.onGameStateChanged("You stand. Calculating results...");
-            calculateResults(null); // Calculate based on values
-        }
+        dispatchToHostTable(Table::dealerStand);
+    }
+
+    public BalanceLedger getLedger() {
+        return ledger;
+    }
+
+    public Leaderboard getLeaderboard() {
+        return leaderboard;
     }
 
     /**
-     * Calculate and send round results
+     * Live statistics of all tables; safe to read from any thread.
      */
-    private void calculateResults(Boolean playerWon) {
-        int playerValue = playerHand.getValue();
-        int dealerValue = dealerHand.getValue();
-        String result;
-
-        if (playerWon == null) {
-            // Calculate based on values
-            if (dealerHand.isBust()) {
-                result = "Dealer busted! You win!";
-                playerWon = true;
-            } else if (playerValue > dealerValue) {
-                result = "You win! (" + playerValue + " vs " + dealerValue + ")";
-                playerWon = true;
-            } else if (playerValue < dealerValue) {
-                result = "Dealer wins. (" + playerValue + " vs " + dealerValue + ")";
-                playerWon = false;
-            } else {
-                result = "Push (tie). (" + playerValue + " vs " + dealerValue + ")";
-                playerWon = null;
-            }
-        } else {
-            if (playerWon) {
-                result = "Player wins!";
-            } else {
-                result = "Dealer wins!";
-            }
-        }
-
-        // Send round end message
-        GameMessage endMsg = new GameMessage(GameMessage.MessageType.ROUND_END);
-        endMsg.setDealerCards(new ArrayList<>(dealerHand.getCards()));
-        endMsg.setPlayerValue(playerValue);
-        endMsg.setDealerValue(dealerValue);
-        endMsg.setDealerBust(dealerHand.isBust());
-        endMsg.setStatusMessage(result);
-        endMsg.setRoundOver(true);
-
-        if (playerWon != null && playerWon) {
-            endMsg.setBetAmount(currentBet * 2);
-        } else if (playerWon == null) {
-            endMsg.setBetAmount(currentBet); // Push - return bet
-        } else {
-            endMsg.setBetAmount(0);
-        }
+    public SessionStats getStats() {
+        return stats;
+    }
 
-        sendMessage(endMsg);
-        listener.onGameStateChanged(result);
+    public int getConnectionCount() {
+        return transport.getConnectionCount();
+    }
 
-        gameStarted = false;
-        isPlayerTurn = false;
-        currentBet = 0;
+    public int getTableCount() {
+        return tables.getTableCount();
     }
 
-    /**
-     * Send a message to the client
-     */
-    private void sendMessage(GameMessage message) {
-        try {
-            if (out != null) {
-                out.writeObject(message);
-                out.flush();
-            }
-        } catch (IOException e) {
-            listener.onError("Failed to send message: " + e.getMessage());
-        }
+    public TableManager.Metrics getMetrics() {
+        return tables.metrics();
     }
 
     /**
@@ -398,14 +334,95 @@ public class GameServer {
      * Stop the server
      */
     public void stop() {
-        running = false;
-        try {
-            if (in != null) in.close();
-            if (out != null) out.close();
-            if (clientSocket != null) clientSocket.close();
-            if (serverSocket != null) serverSocket.close();
-        } catch (IOException e) {
-            listener.onError("Error stopping server: " + e.getMessage());
+        transport.stop();
+        tables.shutdown();
+    }
+
+    /**
+     * Host automatically dealt tables without a GUI, printing table metrics
+     * every interval and the session statistics on shutdown.
+     *
+     * Usage: java -cp bin network.GameServer [--port=7777] [--interval=SECONDS]
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int port = DEFAULT_PORT;
+        int interval = 10;
+        for (String arg : args) {
+            String[] parts = arg.split("=", 2);
+            try {
+                switch (parts[0]) {
+                    case "--port" -> port = Integer.parseInt(parts[1]);
+                    case "--interval" -> interval = Integer.parseInt(parts[1]);
+                    default -> throw new IllegalArgumentException();
+                }
+            } catch (RuntimeException e) {
+                System.err.println("Invalid argument: " + arg);
+                System.err.println("Usage: GameServer [--port=7777] [--interval=SECONDS]");
+                System.exit(1);
+            }
+        }
+
+        GameServer server = new GameServer(new QuietListener(System.err::println), new BalanceLedger(),
+                new Leaderboard(), null, false);
+        server.start(port);
+        System.out.println("Hosting automatic tables on port " + server.getPort());
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            server.stop();
+            System.out.print(server.getStats().snapshot().format());
+        }));
+
+        TableManager.Metrics last = server.getMetrics();
+        while (true) {
+            Thread.sleep(interval * 1000L);
+            TableManager.Metrics now = server.getMetrics();
+            System.out.printf("connections=%d tables=%d opened=%d closed=%d rounds/s=%.1f messages/s=%.1f backlog=%d%n",
+                    server.getConnectionCount(), now.tablesOpen(), now.tablesOpened(), now.tablesClosed(),
+                    now.roundsPerSecondSince(last), now.messagesPerSecondSince(last), now.mailboxBacklog());
+            last = now;
+        }
+    }
+
+    /**
+     * Listener for automatically dealt tables: the host only hears about errors.
+     */
+    private static final class QuietListener implements ServerListener {
+        private final Consumer<String> errors;
+
+        QuietListener(Consumer<String> errors) {
+            this.errors = errors;
+        }
+
+        @Override
+        public void onClientConnected(String clientAddress) {
+        }
+
+        @Override
+        public void onClientDisconnected() {
+        }
+
+        @Override
+        public void onGameStateChanged(String status) {
+        }
+
+        @Override
+        public void onError(String error) {
+            errors.accept(error);
+        }
+
+        @Override
+        public void onCardsDealt(List<Card> dealerCards, List<Card> playerCards) {
+        }
+
+        @Override
+        public void onDealerCardReceived(Card card) {
+        }
+
+        @Override
+        public void onPlayerCardReceived(Card card) {
+        }
+
+        @Override
+        public void onTurnChanged(boolean isDealerTurn) {
         }
     }
 }
@@ -0,0 +1,298 @@
+package network;
+
+import data.Card;
+import data.CardCodes;
+import java.net.ProtocolException;
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compact binary form of a {@link GameMessage}, used as the frame payload.
+ *
+ * Layout: version byte, type ordinal, a byte of boolean flags and a byte
+ * saying which optional fields follow; then the sequence number as a
+ * varint, bet, player value, dealer value and chip balance as zigzag
+ * varints; then the optional fields in order:
+ * data and status as varint-length UTF-8, the action ordinal, the single
+ * card, the two card lists (varint count, one byte per card code) and the
+ * session token as UTF-8.
+ * A typical message takes tens of bytes instead of the several hundred of
+ * Java serialization.
+ *
+ * Encoding writes straight into the caller's buffer and allocates nothing;
+ * decoding allocates only the message, its card lists and strings.
+ */
+public final class MessageCodec {
+
+    public static final int VERSION = 3;
+
+    /** Most cards accepted in one list; a hand never comes close. */
+    private static final int MAX_CARDS = 32;
+
+    // Flags
+    private static final int PLAYER_BUST = 1;
+    private static final int DEALER_BUST = 1 << 1;
+    private static final int ROUND_OVER = 1 << 2;
+    private static final int PLAYER_TURN = 1 << 3;
+    private static final int DEALER_TURN = 1 << 4;
+
+    // Optional fields present
+    private static final int HAS_DATA = 1;
+    private static final int HAS_STATUS = 1 << 1;
+    private static final int HAS_ACTION = 1 << 2;
+    private static final int HAS_SINGLE_CARD = 1 << 3;
+    private static final int HAS_CARDS = 1 << 4;
+    private static final int HAS_DEALER_CARDS = 1 << 5;
+    private static final int HAS_TOKEN = 1 << 6;
+
+    private static final GameMessage.MessageType[] TYPES = GameMessage.MessageType.values();
+    private static final GameMessage.PlayerAction[] ACTIONS = GameMessage.PlayerAction.values();
+
+    private MessageCodec() {
+    }
+
+    /**
+     * Write a message at the buffer's position.
+     *
+     * @throws BufferOverflowException if the buffer has too little room
+     */
+    public static void encode(GameMessage message, ByteBuffer out) {
+        int flags = (message.isPlayerBust() ? PLAYER_BUST : 0)
+                | (message.isDealerBust() ? DEALER_BUST : 0)
+                | (message.isRoundOver() ? ROUND_OVER : 0)
+                | (message.isPlayerTurn() ? PLAYER_TURN : 0)
+                | (message.isDealerTurn() ? DEALER_TURN : 0);
+        int present = (message.getData() != null ? HAS_DATA : 0)
+                | (message.getStatusMessage() != null ? HAS_STATUS : 0)
+                | (message.getAction() != null ? HAS_ACTION : 0)
+                | (message.getSingleCard() != null ? HAS_SINGLE_CARD : 0)
+                | (message.getCards() != null ? HAS_CARDS : 0)
+                | (message.getDealerCards() != null ? HAS_DEALER_CARDS : 0)
+                | (message.getSessionToken() != null ? HAS_TOKEN : 0);
+
+        out.put((byte) VERSION);
+        out.put((byte) message.getType().ordinal());
+        out.put((byte) flags);
+        out.put((byte) present);
+        writeVarint(out, message.getSequence());
+        writeSignedVarint(out, message.getBetAmount());
+        writeSignedVarint(out, message.getPlayerValue());
+        writeSignedVarint(out, message.getDealerValue());
+        writeSignedVarint(out, message.getChipBalance());
+
+        if ((present & HAS_DATA) != 0) {
+            writeString(out, message.getData());
+        }
+        if ((present & HAS_STATUS) != 0) {
+            writeString(out, message.getStatusMessage());
+        }
+        if ((present & HAS_ACTION) != 0) {
+            out.put((byte) message.getAction().ordinal());
+        }
+        if ((present & HAS_SINGLE_CARD) != 0) {
+            out.put(CardCodes.encode(message.getSingleCard()));
+        }
+        if ((present & HAS_CARDS) != 0) {
+            writeCards(out, message.getCards());
+        }
+        if ((present & HAS_DEALER_CARDS) != 0) {
+            writeCards(out, message.getDealerCards());
+        }
+        if ((present & HAS_TOKEN) != 0) {
+            writeString(out, message.getSessionToken());
+        }
+    }
+
+    /**
+     * Read a message from the buffer's remaining bytes.
+     *
+     * @throws ProtocolException if the bytes are not a valid message of this version
+     */
+    public static GameMessage decode(ByteBuffer in) throws ProtocolException {
+        try {
+            int version = in.get();
+            if (version != VERSION) {
+                throw new ProtocolException("Unsupported message version " + version);
+            }
+            GameMessage message = new GameMessage(TYPES[in.get()]);
+            int flags = in.get();
+            int present = in.get();
+            message.setPlayerBust((flags & PLAYER_BUST) != 0);
+            message.setDealerBust((flags & DEALER_BUST) != 0);
+            message.setRoundOver((flags & ROUND_OVER) != 0);
+            message.setPlayerTurn((flags & PLAYER_TURN) != 0);
+            message.setDealerTurn((flags & DEALER_TURN) != 0);
+            message.setSequence(readVarLong(in));
+            message.setBetAmount(readSignedVarint(in));
+            message.setPlayerValue(readSignedVarint(in));
+            message.setDealerValue(readSignedVarint(in));
+            message.setChipBalance(readSignedVarint(in));
+
+            if ((present & HAS_DATA) != 0) {
+                message.setData(readString(in));
+            }
+            if ((present & HAS_STATUS) != 0) {
+                message.setStatusMessage(readString(in));
+            }
+            if ((present & HAS_ACTION) != 0) {
+                message.setAction(ACTIONS[in.get()]);
+            }
+            if ((present & HAS_SINGLE_CARD) != 0) {
+                message.setSingleCard(readCard(in));
+            }
+            if ((present & HAS_CARDS) != 0) {
+                message.setCards(readCards(in));
+            }
+            if ((present & HAS_DEALER_CARDS) != 0) {
+                message.setDealerCards(readCards(in));
+            }
+            if ((present & HAS_TOKEN) != 0) {
+                message.setSessionToken(readString(in));
+            }
+            if (in.hasRemaining()) {
+                throw new ProtocolException(in.remaining() + " unexpected bytes after message");
+            }
+            return message;
+        } catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+            throw new ProtocolException("Truncated or malformed message");
+        }
+    }
+
+    private static void writeCards(ByteBuffer out, List<Card> cards) {
+        writeVarint(out, cards.size());
+        for (int i = 0; i < cards.size(); i++) {
+            out.put(CardCodes.encode(cards.get(i)));
+        }
+    }
+
+    private static List<Card> readCards(ByteBuffer in) throws ProtocolException {
+        int count = readVarint(in);
+        if (count < 0 || count > MAX_CARDS) {
+            throw new ProtocolException("Too many cards: " + count);
+        }
+        List<Card> cards = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            cards.add(readCard(in));
+        }
+        return cards;
+    }
+
+    private static Card readCard(ByteBuffer in) throws ProtocolException {
+        int code = in.get();
+        if (code < 0 || code >= CardCodes.DECK_SIZE) {
+            throw new ProtocolException("Invalid card code " + code);
+        }
+        return CardCodes.toCard(code);
+    }
+
+    /**
+     * UTF-8 with a varint byte length, encoded char by char so no byte array is needed.
+     */
+    private static void writeString(ByteBuffer out, String value) {
+        int length = value.length();
+        int bytes = 0;
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                bytes++;
+            } else if (c < 0x800) {
+                bytes += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(value.charAt(i + 1))) {
+                bytes += 4;
+                i++;
+            } else {
+                bytes += 3;
+            }
+        }
+        writeVarint(out, bytes);
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                out.put((byte) c);
+            } else if (c < 0x800) {
+                out.put((byte) (0xC0 | c >> 6));
+                out.put((byte) (0x80 | c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(value.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                out.put((byte) (0xF0 | codePoint >> 18));
+                out.put((byte) (0x80 | codePoint >> 12 & 0x3F));
+                out.put((byte) (0x80 | codePoint >> 6 & 0x3F));
+                out.put((byte) (0x80 | codePoint & 0x3F));
+            } else {
+                out.put((byte) (0xE0 | c >> 12));
+                out.put((byte) (0x80 | c >> 6 & 0x3F));
+                out.put((byte) (0x80 | c & 0x3F));
+            }
+        }
+    }
+
+    private static String readString(ByteBuffer in) throws ProtocolException {
+        int length = readVarint(in);
+        if (length < 0 || length > in.remaining()) {
+            throw new ProtocolException("String longer than the message");
+        }
+        String value;
+        if (in.hasArray()) {
+            value = new String(in.array(), in.arrayOffset() + in.position(), length, StandardCharsets.UTF_8);
+            in.position(in.position() + length);
+        } else {
+            byte[] bytes = new byte[length];
+            in.get(bytes);
+            value = new String(bytes, StandardCharsets.UTF_8);
+        }
+        return value;
+    }
+
+    private static void writeVarint(ByteBuffer out, int value) {
+        while ((value & ~0x7F) != 0) {
+            out.put((byte) (value & 0x7F | 0x80));
+            value >>>= 7;
+        }
+        out.put((byte) value);
+    }
+
+    private static void writeVarint(ByteBuffer out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.put((byte) (value & 0x7F | 0x80));
+            value >>>= 7;
+        }
+        out.put((byte) value);
+    }
+
+    private static void writeSignedVarint(ByteBuffer out, int value) {
+        writeVarint(out, value << 1 ^ value >> 31);
+    }
+
+    private static int readVarint(ByteBuffer in) throws ProtocolException {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            byte b = in.get();
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new ProtocolException("Varint too long");
+    }
+
+    private static long readVarLong(ByteBuffer in) throws ProtocolException {
+        long value = 0;
+        for (int shift = 0; shift < 70; shift += 7) {
+            byte b = in.get();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new ProtocolException("Varint too long");
+    }
+
+    private static int readSignedVarint(ByteBuffer in) throws ProtocolException {
+        int value = readVarint(in);
+        return value >>> 1 ^ -(value & 1);
+    }
+}
@@ -0,0 +1,623 @@
+package network;
+
+import data.Card;
+import logic.Hand;
+import logic.RoundEngine;
+import logic.RoundResult;
+import logic.SessionStats;
+import logic.history.HandHistoryStore;
+import logic.leaderboard.Leaderboard;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * One player's blackjack table on the server. The dealer is either the
+ * person hosting the server, who drives it through {@link #dealerHit()} and
+ * {@link #dealerStand()}, or automatic, drawing by the table's dealer policy.
+ *
+ * The table's actor in {@link TableManager} runs every call, one at a time,
+ * so the round state needs no locks.
+ *
+ * Messages to the player form a numbered stream of small events: the deal,
+ * each card added to the player's or the dealer's hand with the new value,
+ * turn changes and the result. When a round ends, if
+ * {@link #SNAPSHOT_INTERVAL} events have passed since the last snapshot, and
+ * whenever the client reports a gap, a compact snapshot of the visible table
+ * follows so the client can check or rebuild its state. Periodic snapshots
+ * wait for the end of a round so they never show one half way through a
+ * change.
+ *
+ * The table outlives its connection. When the connection drops, the table
+ * keeps its round, bet and balance and goes on recording events; a client
+ * that reconnects with the session token is given the events it missed,
+ * if they are among the last {@link #REPLAY_EVENTS}, and then a snapshot.
+ * The ledger's transaction ids keep a bet or payout from being applied twice
+ * whatever the connection does.
+ *
+ * A named player's chips are in the ledger account of that name. When the
+ * table closes, the balance goes to the leaderboard, and a later session
+ * starts from it instead of the starting chips; the leaderboard is asked
+ * without waiting, and the player is seated when its reply reaches the
+ * table's actor. A guest's account lasts only for the session, and
+ * guests are neither ranked nor kept in the hand history, which files
+ * named players under {@link HandHistoryStore#playerId}.
+ */
+final class Table {
+    private static final int DIFFICULTY = 2; // Medium dealer policy for automatic dealers
+    private static final int LUCK_LEVEL = 1;
+    static final int SNAPSHOT_INTERVAL = 64;
+    private static final int HIDDEN_VALUE = -1; // Dealer value in a snapshot before the hole card is shown
+    static final int REPLAY_EVENTS = SNAPSHOT_INTERVAL; // Older events are covered by a snapshot
+    private static final String GUEST_PREFIX = "#"; // Player names cannot contain it
+
+    private final long id;
+    private final String sessionToken;
+    private FrameServer.Connection connection; // Null while the player is disconnected
+    private final GameServer.ServerListener listener;
+    private final boolean humanDealer;
+    private final BalanceLedger ledger;
+    private final Leaderboard leaderboard;
+    private final HandHistoryStore history;
+    private final SessionStats stats;
+    private final String playerAccount;
+    private final boolean guest;
+    private final int startingChips;
+
+    // The dealer policy only drives automatic dealers; luck level 1 gives no bonuses
+    private final RoundEngine engine = new RoundEngine(DIFFICULTY, LUCK_LEVEL);
+    private long betTransaction;
+    private long doubleTransaction;
+    private long settleTransaction;
+    private int currentBet;
+    private boolean gameStarted = false;
+    private boolean isPlayerTurn = false;
+    private boolean dealerRevealed = false; // Whether the player has seen the dealer's hole card
+    private long sequence; // Last event number sent to the player
+    private long lastSnapshot; // Event number of the last snapshot sent
+    private final ArrayDeque<GameMessage> replay = new ArrayDeque<>(REPLAY_EVENTS); // Last events sent, oldest first
+    private boolean seated = false; // Whether the account is open and the connection accepted
+    private boolean leaving = false; // Whether the player said goodbye before disconnecting
+    private int disconnects;
+    private long decisionStart; // When the player's current decision began (System.nanoTime)
+
+    /**
+     * @param sessionToken  secret the player resumes the session with
+     * @param playerName    name the player's chips are kept under, or null
+     *                      for a guest
+     * @param listener      told about the table's events; only the human
+     *                      dealer's table reports more than errors
+     * @param humanDealer   whether the host deals, or the table deals by itself
+     */
+    Table(long id, String sessionToken, String playerName, FrameServer.Connection connection,
+          GameServer.ServerListener listener, boolean humanDealer, BalanceLedger ledger, Leaderboard leaderboard, HandHistoryStore history,
+          SessionStats stats, int startingChips) {
+        this.id = id;
+        this.sessionToken = sessionToken;
+        this.connection = connection;
+        this.listener = listener;
+        this.humanDealer = humanDealer;
+        this.ledger = ledger;
+        this.leaderboard = leaderboard;
+        this.history = history;
+        this.stats = stats;
+        this.startingChips = startingChips;
+        this.guest = playerName == null;
+        this.playerAccount = guest ? GUEST_PREFIX + id : playerName;
+    }
+
+    long getId() {
+        return id;
+    }
+
+    String getSessionToken() {
+        return sessionToken;
+    }
+
+    boolean hasHumanDealer() {
+        return humanDealer;
+    }
+
+    boolean isConnected() {
+        return connection != null;
+    }
+
+    /**
+     * Whether the player asked to leave rather than losing the connection.
+     */
+    boolean isLeaving() {
+        return leaving;
+    }
+
+    /**
+     * Number of times the player's connection has dropped.
+     */
+    int getDisconnects() {
+        return disconnects;
+    }
+
+    /**
+     * Player name the account is kept under, or null for a guest.
+     */
+    String getPlayerName() {
+        return guest ? null : playerAccount;
+    }
+
+    /**
+     * Open the player's account and seat them. A named player whose account
+     * is not open starts from their saved balance, which the leaderboard
+     * sends back through the mailbox once any balance still queued for them
+     * has been applied.
+     *
+     * @param mailbox  queues a message for this table's actor from any thread
+     * @param welcome  greeting sent with the acceptance
+     */
+    void open(Consumer<Consumer<Table>> mailbox, String welcome) {
+        if (guest) {
+            ledger.openAccount(playerAccount, startingChips);
+            seat(welcome);
+        } else if (ledger.holdAccount(playerAccount)) {
+            seat(welcome);
+        } else {
+            leaderboard.requestBalance(playerAccount, startingChips,
+                    balance -> mailbox.accept(table -> table.openSaved(balance, welcome)));
+        }
+    }
+
+    private void openSaved(long balance, String welcome) {
+        ledger.openAccount(playerAccount, balance);
+        seat(welcome);
+    }
+
+    /**
+     * Accept the connection once the account is open.
+     */
+    private void seat(String welcome) {
+        seated = true;
+        if (connection != null) {
+            listener.onClientConnected(connection.getRemoteHost());
+        }
+
+        GameMessage acceptMsg = new GameMessage(GameMessage.MessageType.CONNECT_ACCEPT);
+        acceptMsg.setData(welcome);
+        acceptMsg.setSessionToken(sessionToken);
+        sendMessage(acceptMsg);
+    }
+
+    /**
+     * A connection closed; the table keeps its state until the player
+     * resumes or the session is closed.
+     *
+     * @return false if the connection was not the player's current one
+     */
+    boolean detach(FrameServer.Connection lost) {
+        if (connection != lost) {
+            return false;
+        }
+        connection = null;
+        disconnects++;
+        listener.onGameStateChanged("Player connection lost; holding their seat");
+        return true;
+    }
+
+    /**
+     * Continue the session on a new connection, sending the events after the
+     * last one the client applied if they are still kept. A snapshot follows
+     * either way, since what the client sent as the old connection died may
+     * have been lost.
+     */
+    void resume(FrameServer.Connection replacement, long acknowledged) {
+        if (connection != null && connection != replacement) {
+            connection.close(); // The old connection has not noticed it is dead yet
+        }
+        connection = replacement;
+        listener.onGameStateChanged("Player reconnected");
+
+        GameMessage acceptMsg = new GameMessage(GameMessage.MessageType.RESUME_ACCEPT);
+        acceptMsg.setStatusMessage("Reconnected.");
+        acceptMsg.setChipBalance((int) ledger.getBalance(playerAccount));
+        connection.send(acceptMsg);
+
+        long oldestKept = sequence - replay.size() + 1;
+        if (acknowledged >= oldestKept - 1 && acknowledged <= sequence) {
+            long next = oldestKept;
+            for (GameMessage event : replay) {
+                if (next++ > acknowledged) {
+                    connection.send(event);
+                }
+            }
+        }
+        sendSnapshot();
+    }
+
+    /**
+     * The session is over: release the account, saving a named player's
+     * balance if no other table holds it.
+     */
+    void close() {
+        if (!seated) {
+            return; // Still waiting for the saved balance; the reply finds the table gone
+        }
+        ledger.closeAccount(playerAccount, balance -> {
+            if (!guest) {
+                leaderboard.updateBalance(playerAccount, balance);
+            }
+        });
+        listener.onClientDisconnected();
+    }
+
+    /**
+     * Handle a message from the player
+     */
+    void handleMessage(GameMessage message) {
+        switch (message.getType()) {
+            case PLACE_BET -> {
+                if (gameStarted) {
+                    return;
+                }
+                if (message.getBetAmount() > ledger.getBalance(playerAccount)) {
+                    listener.onGameStateChanged("Player bet more chips than they have; bet ignored");
+                    return;
+                }
+                currentBet = message.getBetAmount();
+                listener.onGameStateChanged("Player placed bet: $" + currentBet);
+            }
+
+            // A human dealer starts the game; an automatic one deals when asked
+            case DEAL_CARDS -> {
+                if (!humanDealer) {
+                    startGame();
+                }
+            }
+
+            case PLAYER_ACTION -> handlePlayerAction(message.getAction());
+
+            case RESYNC_REQUEST -> sendSnapshot();
+
+            case DISCONNECT -> {
+                leaving = true;
+                if (connection != null) {
+                    connection.close();
+                }
+            }
+
+            default -> {
+            }
+        }
+    }
+
+    /**
+     * Start the game - called by the dealer when ready
+     */
+    void startGame() {
+        if (!gameStarted && currentBet > 0) {
+            dealInitialCards();
+        }
+    }
+
+    /**
+     * Deal initial cards to player and dealer
+     */
+    private void dealInitialCards() {
+        betTransaction = ledger.nextTransactionId();
+        doubleTransaction = ledger.nextTransactionId();
+        settleTransaction = ledger.nextTransactionId();
+        BalanceLedger.Result debit = ledger.debit(playerAccount, betTransaction, currentBet);
+        if (!debit.isApplied()) {
+            listener.onGameStateChanged("Player cannot cover the bet of $" + currentBet);
+            GameMessage refused = new GameMessage(GameMessage.MessageType.ROUND_END);
+            refused.setStatusMessage("Not enough chips for that bet.");
+            refused.setRoundOver(true);
+            currentBet = 0;
+            sendMessage(refused);
+            snapshotIfDue();
+            return;
+        }
+
+        engine.deal(currentBet);
+        dealerRevealed = false;
+        Hand playerHand = engine.getPlayerHand();
+        Hand dealerHand = engine.getDealerHand();
+
+        gameStarted = true;
+        isPlayerTurn = true;
+
+        // Notify dealer GUI
+        listener.onCardsDealt(new ArrayList<>(dealerHand.getCards()),
+                              new ArrayList<>(playerHand.getCards()));
+        listener.onTurnChanged(false); // Player's turn
+
+        // Send initial cards to player
+        GameMessage msg = new GameMessage(GameMessage.MessageType.UPDATE_GAME_STATE);
+        msg.setCards(new ArrayList<>(playerHand.getCards()));
+        msg.setPlayerValue(playerHand.getValue());
+
+        // Only send first dealer card
+        List<Card> dealerFirstCard = new ArrayList<>();
+        dealerFirstCard.add(dealerHand.getCards().get(0));
+        msg.setDealerCards(dealerFirstCard);
+        msg.setStatusMessage("Your turn! Hit or Stand?");
+        msg.setPlayerTurn(true);
+        msg.setDealerTurn(false);
+
+        sendMessage(msg);
+        decisionStart = System.nanoTime();
+        listener.onGameStateChanged("Cards dealt. Player's turn. Player value: " + playerHand.getValue());
+    }
+
+    /**
+     * Handle player actions (Hit, Stand, Double Down)
+     */
+    private void handlePlayerAction(GameMessage.PlayerAction action) {
+        if (action == null || !isPlayerTurn || !engine.isPlayerTurn()) return;
+
+        // Includes the network round trip, as seen by the table
+        long now = System.nanoTime();
+        stats.recordDecision(now - decisionStart);
+        decisionStart = now;
+
+        Hand playerHand = engine.getPlayerHand();
+
+        switch (action) {
+            case HIT -> {
+                Card drawnCard = engine.hit();
+
+                listener.onPlayerCardReceived(drawnCard);
+
+                GameMessage hitMsg = new GameMessage(GameMessage.MessageType.CARD_DEALT);
+                hitMsg.setSingleCard(drawnCard);
+                hitMsg.setPlayerValue(playerHand.getValue());
+                hitMsg.setPlayerBust(playerHand.isBust());
+                hitMsg.setPlayerTurn(!playerHand.isBust());
+
+                if (playerHand.isBust()) {
+                    settleRound();
+                    hitMsg.setRoundOver(true);
+                    hitMsg.setStatusMessage("Bust! Dealer wins.");
+                    isPlayerTurn = false;
+                    gameStarted = false;
+                    listener.onGameStateChanged("Player busted! You win!");
+                    listener.onTurnChanged(true);
+                } else {
+                    hitMsg.setStatusMessage("Your turn! Hit or Stand?");
+                }
+
+                sendMessage(hitMsg);
+                snapshotIfDue();
+            }
+
+            case STAND -> {
+                engine.stand();
+                isPlayerTurn = false;
+                listener.onGameStateChanged("Player stands. Your turn!");
+                listener.onTurnChanged(true); // Dealer's turn
+
+                // Notify player to wait
+                GameMessage waitMsg = new GameMessage(GameMessage.MessageType.TURN_CHANGED);
+                waitMsg.setStatusMessage("Waiting for dealer's move...");
+                waitMsg.setPlayerTurn(false);
+                waitMsg.setDealerTurn(true);
+                sendMessage(waitMsg);
+                revealHoleCard();
+                playAutomaticDealer();
+            }
+
+            case DOUBLE_DOWN -> {
+                if (!engine.canDouble()) return;
+                if (!ledger.debit(playerAccount, doubleTransaction, engine.getBet()).isApplied()) {
+                    listener.onGameStateChanged("Player cannot cover the double down");
+                    return;
+                }
+
+                Card doubleCard = engine.doubleDown();
+                currentBet = engine.getBet();
+
+                GameMessage doubleMsg = new GameMessage(GameMessage.MessageType.CARD_DEALT);
+                doubleMsg.setSingleCard(doubleCard);
+                doubleMsg.setPlayerValue(playerHand.getValue());
+                doubleMsg.setPlayerBust(playerHand.isBust());
+                doubleMsg.setBetAmount(currentBet);
+
+                listener.onPlayerCardReceived(doubleCard);
+
+                if (playerHand.isBust()) {
+                    settleRound();
+                    doubleMsg.setRoundOver(true);
+                    doubleMsg.setStatusMessage("Bust! Dealer wins.");
+                    doubleMsg.setPlayerTurn(false);
+                    isPlayerTurn = false;
+                    gameStarted = false;
+                    listener.onGameStateChanged("Player busted after doubling down! You win!");
+                    listener.onTurnChanged(true);
+                    sendMessage(doubleMsg);
+                    snapshotIfDue();
+                } else {
+                    doubleMsg.setPlayerTurn(false);
+                    sendMessage(doubleMsg);
+                    isPlayerTurn = false;
+                    listener.onGameStateChanged("Player doubled down. Your turn!");
+                    listener.onTurnChanged(true);
+
+                    // Notify player to wait
+                    GameMessage waitMsg2 = new GameMessage(GameMessage.MessageType.TURN_CHANGED);
+                    waitMsg2.setStatusMessage("Waiting for dealer's move...");
+                    waitMsg2.setPlayerTurn(false);
+                    waitMsg2.setDealerTurn(true);
+                    sendMessage(waitMsg2);
+                    revealHoleCard();
+                    playAutomaticDealer();
+                }
+            }
+        }
+    }
+
+    /**
+     * Show the player the dealer's face-down card as the dealer's turn begins.
+     */
+    private void revealHoleCard() {
+        Hand dealerHand = engine.getDealerHand();
+        dealerRevealed = true;
+        GameMessage msg = new GameMessage(GameMessage.MessageType.DEALER_CARD_DEALT);
+        msg.setSingleCard(dealerHand.getCards().get(1));
+        msg.setDealerValue(dealerHand.getValue());
+        msg.setStatusMessage("Dealer reveals. Waiting for dealer...");
+        sendMessage(msg);
+    }
+
+    /**
+     * Without a human dealer, draw by the dealer policy and settle.
+     */
+    private void playAutomaticDealer() {
+        if (humanDealer) {
+            return;
+        }
+        while (gameStarted && engine.dealerShouldHit()) {
+            dealerHit();
+        }
+        dealerStand();
+    }
+
+    /**
+     * Dealer hits - called by dealer GUI
+     */
+    void dealerHit() {
+        if (!isPlayerTurn && gameStarted) {
+            Card dealerCard = engine.dealerHit();
+            Hand dealerHand = engine.getDealerHand();
+            listener.onDealerCardReceived(dealerCard);
+
+            // Send card to player
+            GameMessage msg = new GameMessage(GameMessage.MessageType.DEALER_CARD_DEALT);
+            msg.setSingleCard(dealerCard);
+            msg.setDealerValue(dealerHand.getValue());
+            msg.setStatusMessage("Dealer hits. Waiting for dealer...");
+            sendMessage(msg);
+
+            if (dealerHand.isBust()) {
+                listener.onGameStateChanged("You busted! Player wins!");
+                calculateResults();
+            }
+        }
+    }
+
+    /**
+     * Dealer stands - called by dealer GUI
+     */
+    void dealerStand() {
+        if (!isPlayerTurn && gameStarted) {
+            listener.onGameStateChanged("You stand. Calculating results...");
+            calculateResults();
+        }
+    }
+
+    /**
+     * Settle the round and send the results
+     */
+    private void calculateResults() {
+        RoundResult roundResult = settleRound();
+        int playerValue = roundResult.playerValue();
+        int dealerValue = roundResult.dealerValue();
+        Hand dealerHand = engine.getDealerHand();
+
+        String result = switch (roundResult.outcome()) {
+            case DEALER_BUST -> "Dealer busted! You win!";
+            case PLAYER_BLACKJACK -> "Blackjack! You win!";
+            case DEALER_BLACKJACK -> "Dealer has Blackjack! Dealer wins.";
+            case PLAYER_WIN -> "You win! (" + playerValue + " vs " + dealerValue + ")";
+            case DEALER_WIN, PLAYER_BUST -> "Dealer wins. (" + playerValue + " vs " + dealerValue + ")";
+            case PUSH, BLACKJACK_PUSH -> "Push (tie). (" + playerValue + " vs " + dealerValue + ")";
+        };
+
+        // Send round end message
+        GameMessage endMsg = new GameMessage(GameMessage.MessageType.ROUND_END);
+        endMsg.setPlayerValue(playerValue);
+        endMsg.setDealerValue(dealerValue);
+        endMsg.setDealerBust(dealerHand.isBust());
+        endMsg.setStatusMessage(result);
+        endMsg.setRoundOver(true);
+        endMsg.setBetAmount(roundResult.payout());
+
+        gameStarted = false;
+        isPlayerTurn = false;
+        currentBet = 0;
+
+        sendMessage(endMsg);
+        listener.onGameStateChanged(result);
+        snapshotIfDue();
+    }
+
+    /**
+     * Settle the engine's round and pay the payout into the player's account.
+     */
+    private RoundResult settleRound() {
+        RoundResult result = engine.settle();
+        BalanceLedger.Result credit = ledger.credit(playerAccount, settleTransaction, result.payout());
+        if (!credit.replay()) {
+            stats.recordRound(engine, result);
+            if (!guest) {
+                leaderboard.recordRound(playerAccount, credit.balance(), result.outcome());
+            }
+            if (history != null && !guest) {
+                try {
+                    history.record(HandHistoryStore.playerId(playerAccount), engine, result);
+                } catch (IOException e) {
+                    listener.onError("Failed to record hand history: " + e.getMessage());
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Send the visible state of the table: the cards the player has seen,
+     * the bet and whose turn it is.
+     */
+    private void sendSnapshot() {
+        Hand playerHand = engine.getPlayerHand();
+        Hand dealerHand = engine.getDealerHand();
+        List<Card> dealerCards = dealerHand.getCards();
+        boolean allShown = dealerRevealed || dealerCards.isEmpty();
+
+        GameMessage snapshot = new GameMessage(GameMessage.MessageType.SNAPSHOT);
+        snapshot.setCards(new ArrayList<>(playerHand.getCards()));
+        snapshot.setDealerCards(new ArrayList<>(allShown ? dealerCards : dealerCards.subList(0, 1)));
+        snapshot.setPlayerValue(playerHand.getValue());
+        snapshot.setDealerValue(allShown ? dealerHand.getValue() : HIDDEN_VALUE);
+        snapshot.setBetAmount(gameStarted ? engine.getBet() : currentBet);
+        snapshot.setPlayerTurn(gameStarted && isPlayerTurn);
+        snapshot.setDealerTurn(gameStarted && !isPlayerTurn);
+        snapshot.setRoundOver(!gameStarted);
+        sendMessage(snapshot);
+        lastSnapshot = sequence;
+    }
+
+    /**
+     * Between rounds, send a snapshot if {@link #SNAPSHOT_INTERVAL} events
+     * have passed since the last one.
+     */
+    private void snapshotIfDue() {
+        if (!gameStarted && sequence - lastSnapshot >= SNAPSHOT_INTERVAL) {
+            sendSnapshot();
+        }
+    }
+
+    /**
+     * Send a message to the player, stamped with their balance and the next
+     * event number, and keep it for replay
+     */
+    private void sendMessage(GameMessage message) {
+        message.setChipBalance((int) ledger.getBalance(playerAccount));
+        message.setSequence(++sequence);
+        // Not changed after this, since the connection encodes it later
+        if (replay.size() == REPLAY_EVENTS) {
+            replay.removeFirst();
+        }
+        replay.addLast(message);
+        if (connection != null) {
+            connection.send(message);
+        }
+    }
+}
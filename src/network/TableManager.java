@@ -0,0 +1,215 @@
+package network;
+
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import logic.SessionStats;
+
+/**
+ * Creates, routes to and destroys the server's tables. Each table is an
+ * actor: messages for it wait in its own mailbox and are processed one at a
+ * time on a small shared pool, so table state needs no locks. An idle table
+ * is only its state and an empty queue; it holds no thread, so thousands of
+ * them cost little.
+ */
+public class TableManager {
+
+    /** Messages an actor processes before letting other tables use its thread. */
+    private static final int BATCH = 32;
+
+    /**
+     * Lifecycle and throughput counters at one moment.
+     *
+     * @param rounds  rounds settled by all tables so far
+     */
+    public record Metrics(long timeNanos, int tablesOpen, long tablesOpened, long tablesClosed,
+                          long messages, long rounds, int mailboxBacklog) {
+        /**
+         * Rounds settled per second between an earlier snapshot and this one.
+         */
+        public double roundsPerSecondSince(Metrics earlier) {
+            double seconds = (timeNanos - earlier.timeNanos) / 1e9;
+            return seconds <= 0 ? 0 : (rounds - earlier.rounds) / seconds;
+        }
+
+        public double messagesPerSecondSince(Metrics earlier) {
+            double seconds = (timeNanos - earlier.timeNanos) / 1e9;
+            return seconds <= 0 ? 0 : (messages - earlier.messages) / seconds;
+        }
+    }
+
+    /**
+     * A table and its mailbox.
+     */
+    private final class TableActor implements Runnable {
+        final Table table;
+        final Queue<Consumer<Table>> mailbox = new ConcurrentLinkedQueue<>();
+        final AtomicBoolean scheduled = new AtomicBoolean(false);
+
+        TableActor(Table table) {
+            this.table = table;
+        }
+
+        void tell(Consumer<Table> message) {
+            mailbox.add(message);
+            if (scheduled.compareAndSet(false, true)) {
+                submit();
+            }
+        }
+
+        private void submit() {
+            try {
+                pool.execute(this);
+            } catch (RejectedExecutionException e) {
+                // Shutting down: the remaining messages are dropped
+                mailbox.clear();
+            }
+        }
+
+        @Override
+        public void run() {
+            for (int i = 0; i < BATCH; i++) {
+                Consumer<Table> message = mailbox.poll();
+                if (message == null) {
+                    break;
+                }
+                try {
+                    message.accept(table);
+                } catch (RuntimeException e) {
+                    errors.accept("Table " + table.getId() + " failed: " + e);
+                }
+                messages.increment();
+            }
+            if (!mailbox.isEmpty()) {
+                submit();
+                return;
+            }
+            scheduled.set(false);
+            // A message may have arrived after the last poll but before the flag was cleared
+            if (!mailbox.isEmpty() && scheduled.compareAndSet(false, true)) {
+                submit();
+            }
+        }
+    }
+
+    private final Map<Long, TableActor> tables = new ConcurrentHashMap<>();
+    private final ExecutorService pool;
+    private final ScheduledExecutorService timer; // Only hands delayed messages to the mailboxes
+    private final SessionStats stats;
+    private final Consumer<String> errors;
+    private final AtomicInteger tablesOpen = new AtomicInteger();
+    private final LongAdder tablesOpened = new LongAdder();
+    private final LongAdder tablesClosed = new LongAdder();
+    private final LongAdder messages = new LongAdder();
+
+    /**
+     * @param threads  size of the pool shared by all tables
+     * @param stats    statistics the tables record their rounds in
+     * @param errors   told about messages that failed
+     */
+    public TableManager(int threads, SessionStats stats, Consumer<String> errors) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("At least one thread is required.");
+        }
+        this.stats = stats;
+        this.errors = errors;
+        AtomicInteger next = new AtomicInteger();
+        this.pool = Executors.newFixedThreadPool(threads, task -> {
+            Thread thread = new Thread(task, "TableManager-" + next.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.timer = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "TableManager-timer");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Start a table and queue its first message.
+     */
+    void open(Table table, Consumer<Table> first) {
+        TableActor actor = new TableActor(table);
+        if (tables.putIfAbsent(table.getId(), actor) != null) {
+            throw new IllegalStateException("Table " + table.getId() + " is already open.");
+        }
+        tablesOpen.incrementAndGet();
+        tablesOpened.increment();
+        actor.tell(first);
+    }
+
+    /**
+     * Queue a message for a table.
+     *
+     * @return false if the table is not open
+     */
+    boolean route(long tableId, Consumer<Table> message) {
+        TableActor actor = tables.get(tableId);
+        if (actor == null) {
+            return false;
+        }
+        actor.tell(message);
+        return true;
+    }
+
+    /**
+     * Queue a message for a table after a delay; dropped if the table has
+     * closed by then.
+     */
+    void routeLater(long tableId, Consumer<Table> message, long delay, TimeUnit unit) {
+        try {
+            timer.schedule(() -> route(tableId, message), delay, unit);
+        } catch (RejectedExecutionException e) {
+            // Shutting down
+        }
+    }
+
+    /**
+     * Destroy a table once the messages already queued and a last one have run.
+     */
+    void close(long tableId, Consumer<Table> last) {
+        TableActor actor = tables.remove(tableId);
+        if (actor != null) {
+            tablesOpen.decrementAndGet();
+            tablesClosed.increment();
+            actor.tell(last);
+        }
+    }
+
+    public int getTableCount() {
+        return tablesOpen.get();
+    }
+
+    public Metrics metrics() {
+        int backlog = 0;
+        for (TableActor actor : tables.values()) {
+            backlog += actor.mailbox.size();
+        }
+        return new Metrics(System.nanoTime(), tablesOpen.get(), tablesOpened.sum(), tablesClosed.sum(),
+                messages.sum(), stats.snapshot().rounds(), backlog);
+    }
+
+    /**
+     * Stop the pool, letting the messages already running finish.
+     */
+    public void shutdown() {
+        timer.shutdownNow();
+        pool.shutdown();
+        try {
+            pool.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
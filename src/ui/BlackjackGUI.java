@@ -1,35 +1,56 @@
 package ui;
 
 import data.Card;
+import data.ChipLedger;
 import data.ChipsDatabase;
+import data.GameSettings;
+import data.ProfileStore;
 import java.awt.*;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.awt.event.KeyEvent;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.List;
 import javax.swing.*;
-import logic.Deck;
 import logic.Hand;
+import logic.RoundEngine;
+import logic.RoundResult;
+import logic.SessionStats;
+import logic.history.HandHistoryStore;
+import logic.leaderboard.Leaderboard;
+import logic.strategy.CompositionEvaluator;
 import static ui.UIConstants.*;
 
 public class BlackjackGUI extends JFrame implements ActionListener {
 
+    private static final String LOCAL_PROFILE = "local"; // Profile and leaderboard id for single player
+    private static final String THINKING = "Thinking...";
+
     // Card layout to switch between menu and game
     private final CardLayout cardLayout;
     private final JPanel cardPanel;
     private final JPanel gamePanel; // Store reference to update background
 
-    private Deck deck;
-    private Hand playerHand;
-    private Hand dealerHand;
+    private final RoundEngine engine;
+    private CompositionEvaluator hintEvaluator; // For the current dealer policy; replaced when it changes
 
     // Database
     private final ChipsDatabase database;
+    private final HandHistoryStore history;
+    private final ProfileStore profiles;
+    private final Leaderboard leaderboard;
+    private final SessionStats stats = new SessionStats();
 
     // Betting and stats
     private int chips = 100;
     private int currentBet = 0;
     private int winStreak = 0;
+    private int bestStreak = 0;
+    private long decisionStart; // When the player's current decision began (System.nanoTime)
+    private int hintGeneration; // Changed by every deal and player action, so a hint knows when it is stale
 
     // Background settings
     private String currentBackground = "default"; // default, green_table, animated
@@ -56,6 +77,7 @@ public class BlackjackGUI extends JFrame implements ActionListener {
     private final RedButton standButton = new RedButton("Stand");
     private final RedButton doubleButton = new RedButton("Double Down");
     private final RedButton dealButton = new RedButton("Deal Cards");
+    private final RedButton hintButton = new RedButton("Hint");
 
     // Betting buttons
     private final RedButton bet5Button = new RedButton("Bet $5");
@@ -73,22 +95,37 @@ public class BlackjackGUI extends JFrame implements ActionListener {
         // Initialize database and load saved data
         database = new ChipsDatabase();
         chips = database.getChips();
-        ownGreenTable = database.getOwnGreenTable();
-        ownAnimatedBackground = database.getOwnAnimatedBackground();
-        currentBackground = database.getCurrentBackground();
-        difficulty = database.getDifficulty();
-        luckLevel = database.getLuckLevel();
+        GameSettings settings = database.getSettings();
+        ownGreenTable = settings.ownGreenTable();
+        ownAnimatedBackground = settings.ownAnimatedBackground();
+        currentBackground = settings.currentBackground();
+        difficulty = settings.difficulty();
+        luckLevel = settings.luckLevel();
+        engine = new RoundEngine(difficulty, luckLevel);
+        history = openHistory();
+        profiles = openProfiles();
+        leaderboard = new Leaderboard(profiles);
+        bestStreak = leaderboard.getBestStreak(LOCAL_PROFILE);
 
         // Initialize audio with saved settings
         AudioManager audio = AudioManager.getInstance();
-        audio.setVolumeLevel(database.getVolumeLevel());
+        audio.setVolumeLevel(settings.volumeLevel());
 
         // Set music enabled AFTER volume is set, so it can start properly
-        if (database.isMusicEnabled()) {
+        if (settings.musicEnabled()) {
             audio.setMusicEnabled(true);
         }
 
-        setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+        // Keep game state and audio in step with every later settings change
+        database.addSettingsListener(this::applySettings);
+
+        setDefaultCloseOperation(JFrame.DO_NOTHING_ON_CLOSE);
+        addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosing(WindowEvent e) {
+                exitGame();
+            }
+        });
 
         // Fullscreen dark window
         setUndecorated(true);
@@ -100,7 +137,7 @@ public class BlackjackGUI extends JFrame implements ActionListener {
         getRootPane().getActionMap().put("exitApp", new AbstractAction() {
             @Override
             public void actionPerformed(ActionEvent e) {
-                System.exit(0);
+                exitGame();
             }
         });
 
@@ -189,9 +226,10 @@ public class BlackjackGUI extends JFrame implements ActionListener {
             } else if (mode == MultiplayerDialog.Mode.JOIN) {
                 // Start client (player) mode
                 String serverIP = dialog.getServerIP();
+                String playerName = dialog.getPlayerName();
                 dispose(); // Close the main menu
                 SwingUtilities.invokeLater(() -> {
-                    MultiplayerClientGUI clientGUI = new MultiplayerClientGUI(serverIP);
+                    MultiplayerClientGUI clientGUI = new MultiplayerClientGUI(serverIP, playerName);
                     clientGUI.setVisible(true);
                 });
             }
@@ -210,7 +248,7 @@ public class BlackjackGUI extends JFrame implements ActionListener {
             cardLayout.show(cardPanel, "SETTINGS");
         });
 
-        quitButton.addActionListener(e -> System.exit(0));
+        quitButton.addActionListener(e -> exitGame());
 
         JPanel buttonPanel = new JPanel(new FlowLayout(FlowLayout.CENTER, 20, 10));
         buttonPanel.setOpaque(false);
@@ -252,6 +290,11 @@ public class BlackjackGUI extends JFrame implements ActionListener {
         statsPanel.add(winStreakLabel);
         statsPanel.add(betLabel);
 
+        RedButton statsButton = new RedButton("Stats");
+        statsButton.setPreferredSize(new Dimension(80, 35));
+        statsButton.addActionListener(e -> showSessionStats());
+        statsPanel.add(statsButton);
+
         // Menu button (top right)
         RedButton menuButton = new RedButton("Menu");
         menuButton.setPreferredSize(new Dimension(80, 35));
@@ -274,6 +317,7 @@ public class BlackjackGUI extends JFrame implements ActionListener {
 
             // Reset buttons
             hitButton.setEnabled(false);
+            hintButton.setEnabled(false);
             standButton.setEnabled(false);
             doubleButton.setEnabled(false);
             dealButton.setEnabled(false);
@@ -347,6 +391,7 @@ public class BlackjackGUI extends JFrame implements ActionListener {
         controlsPanel.add(hitButton);
         controlsPanel.add(doubleButton);
         controlsPanel.add(standButton);
+        controlsPanel.add(hintButton);
 
         JPanel bottomPanel = new JPanel(new BorderLayout());
         bottomPanel.setOpaque(false);
@@ -367,6 +412,7 @@ public class BlackjackGUI extends JFrame implements ActionListener {
         standButton.addActionListener(this);
         doubleButton.addActionListener(this);
         dealButton.addActionListener(this);
+        hintButton.addActionListener(this);
         bet5Button.addActionListener(this);
         bet10Button.addActionListener(this);
         bet25Button.addActionListener(this);
@@ -375,6 +421,7 @@ public class BlackjackGUI extends JFrame implements ActionListener {
 
         // Initial state on game screen
         hitButton.setEnabled(false);
+        hintButton.setEnabled(false);
         standButton.setEnabled(false);
         doubleButton.setEnabled(false);
         dealButton.setEnabled(false);
@@ -433,8 +480,8 @@ public class BlackjackGUI extends JFrame implements ActionListener {
         difficultyCombo.setSelectedIndex(difficulty - 1);
         difficultyCombo.setFont(new Font("SansSerif", Font.BOLD, 16));
         difficultyCombo.addActionListener(e -> {
-            difficulty = difficultyCombo.getSelectedIndex() + 1;
-            database.saveDifficulty(difficulty);
+            int level = difficultyCombo.getSelectedIndex() + 1;
+            database.updateSettings(s -> s.withDifficulty(level));
         });
 
         JPanel difficultyContentPanel = new JPanel(new GridLayout(2, 1, 5, 5));
@@ -468,8 +515,8 @@ public class BlackjackGUI extends JFrame implements ActionListener {
         luckCombo.setSelectedIndex(luckLevel - 1);
         luckCombo.setFont(new Font("SansSerif", Font.BOLD, 16));
         luckCombo.addActionListener(e -> {
-            luckLevel = luckCombo.getSelectedIndex() + 1;
-            database.saveLuckLevel(luckLevel);
+            int level = luckCombo.getSelectedIndex() + 1;
+            database.updateSettings(s -> s.withLuckLevel(level));
         });
 
         JPanel luckContentPanel = new JPanel(new GridLayout(2, 1, 5, 5));
@@ -500,12 +547,11 @@ public class BlackjackGUI extends JFrame implements ActionListener {
 
         String[] volumeLevels = {"Off", "Low", "Medium", "High"};
         JComboBox<String> volumeCombo = new JComboBox<>(volumeLevels);
-        volumeCombo.setSelectedIndex(database.getVolumeLevel());
+        volumeCombo.setSelectedIndex(database.getSettings().volumeLevel());
         volumeCombo.setFont(new Font("SansSerif", Font.BOLD, 16));
         volumeCombo.addActionListener(e -> {
             int level = volumeCombo.getSelectedIndex();
-            AudioManager.getInstance().setVolumeLevel(level);
-            database.saveVolumeLevel(level);
+            database.updateSettings(s -> s.withVolumeLevel(level));
         });
 
         JPanel volumeContentPanel = new JPanel(new GridLayout(2, 1, 5, 5));
@@ -536,12 +582,11 @@ public class BlackjackGUI extends JFrame implements ActionListener {
 
         String[] musicOptions = {"Off", "On"};
         JComboBox<String> musicCombo = new JComboBox<>(musicOptions);
-        musicCombo.setSelectedIndex(database.isMusicEnabled() ? 1 : 0);
+        musicCombo.setSelectedIndex(database.getSettings().musicEnabled() ? 1 : 0);
         musicCombo.setFont(new Font("SansSerif", Font.BOLD, 16));
         musicCombo.addActionListener(e -> {
             boolean enabled = musicCombo.getSelectedIndex() == 1;
-            AudioManager.getInstance().setMusicEnabled(enabled);
-            database.saveMusicEnabled(enabled);
+            database.updateSettings(s -> s.withMusicEnabled(enabled));
         });
 
         JPanel musicContentPanel = new JPanel(new GridLayout(2, 1, 5, 5));
@@ -596,9 +641,8 @@ public class BlackjackGUI extends JFrame implements ActionListener {
 
         purchaseGreenButton.addActionListener(e -> {
             if (chips >= 150 && !ownGreenTable) {
-                chips -= 150;
-                ownGreenTable = true;
-                database.saveOwnGreenTable(true);
+                changeChips(ChipLedger.EntryType.SHOP, -150);
+                database.updateSettings(s -> s.withOwnGreenTable(true));
                 settingsChipsLabel.setText("Your Chips: $" + chips);
                 updateStatsDisplay(); // Update game UI immediately
                 greenButtonPanel.removeAll();
@@ -612,8 +656,7 @@ public class BlackjackGUI extends JFrame implements ActionListener {
         });
 
         equipGreenButton.addActionListener(e -> {
-            currentBackground = "green_table";
-            database.saveCurrentBackground("green_table");
+            database.updateSettings(s -> s.withCurrentBackground("green_table"));
             updateGameBackground();
             greenButtonPanel.removeAll();
             greenButtonPanel.add(unequipGreenButton);
@@ -623,8 +666,7 @@ public class BlackjackGUI extends JFrame implements ActionListener {
         });
 
         unequipGreenButton.addActionListener(e -> {
-            currentBackground = "default";
-            database.saveCurrentBackground("default");
+            database.updateSettings(s -> s.withCurrentBackground("default"));
             updateGameBackground();
             greenButtonPanel.removeAll();
             greenButtonPanel.add(equipGreenButton);
@@ -660,8 +702,7 @@ public class BlackjackGUI extends JFrame implements ActionListener {
         }
 
         equipDefaultButton.addActionListener(e -> {
-            currentBackground = "default";
-            database.saveCurrentBackground("default");
+            database.updateSettings(s -> s.withCurrentBackground("default"));
             updateGameBackground();
             // Refresh menu panel
             cardPanel.remove(0); // Remove old menu
@@ -707,9 +748,8 @@ public class BlackjackGUI extends JFrame implements ActionListener {
 
         purchaseAnimatedButton.addActionListener(e -> {
             if (chips >= 200 && !ownAnimatedBackground) {
-                chips -= 200;
-                ownAnimatedBackground = true;
-                database.saveOwnAnimatedBackground(true);
+                changeChips(ChipLedger.EntryType.SHOP, -200);
+                database.updateSettings(s -> s.withOwnAnimatedBackground(true));
                 settingsChipsLabel.setText("Your Chips: $" + chips);
                 updateStatsDisplay(); // Update game UI immediately
                 animatedButtonPanel.removeAll();
@@ -723,8 +763,7 @@ public class BlackjackGUI extends JFrame implements ActionListener {
         });
 
         equipAnimatedButton.addActionListener(e -> {
-            currentBackground = "animated";
-            database.saveCurrentBackground("animated");
+            database.updateSettings(s -> s.withCurrentBackground("animated"));
             // Refresh menu panel
             cardPanel.remove(0); // Remove old menu
             JPanel newMenu = createMenuPanel();
@@ -737,8 +776,7 @@ public class BlackjackGUI extends JFrame implements ActionListener {
         });
 
         unequipAnimatedButton.addActionListener(e -> {
-            currentBackground = "default";
-            database.saveCurrentBackground("default");
+            database.updateSettings(s -> s.withCurrentBackground("default"));
             // Refresh menu panel
             cardPanel.remove(0); // Remove old menu
             JPanel newMenu = createMenuPanel();
@@ -781,7 +819,7 @@ public class BlackjackGUI extends JFrame implements ActionListener {
             paymentDialog.setVisible(true);
 
             if (paymentDialog.wasSuccessful()) {
-                chips += paymentDialog.getChipsToAdd();
+                changeChips(ChipLedger.EntryType.PURCHASE, paymentDialog.getChipsToAdd());
                 settingsChipsLabel.setText("Your Chips: $" + chips);
                 updateStatsDisplay();
             }
@@ -834,6 +872,73 @@ public class BlackjackGUI extends JFrame implements ActionListener {
         gamePanel.repaint();
     }
 
+    /**
+     * Mirror a settings change into the game state and audio.
+     */
+    private void applySettings(GameSettings oldSettings, GameSettings newSettings) {
+        ownGreenTable = newSettings.ownGreenTable();
+        ownAnimatedBackground = newSettings.ownAnimatedBackground();
+        currentBackground = newSettings.currentBackground();
+        difficulty = newSettings.difficulty();
+        luckLevel = newSettings.luckLevel();
+
+        AudioManager audio = AudioManager.getInstance();
+        if (newSettings.volumeLevel() != oldSettings.volumeLevel()) {
+            audio.setVolumeLevel(newSettings.volumeLevel());
+        }
+        if (newSettings.musicEnabled() != oldSettings.musicEnabled()) {
+            audio.setMusicEnabled(newSettings.musicEnabled());
+        }
+    }
+
+    /**
+     * Write any pending saves before leaving the game.
+     */
+    private void exitGame() {
+        database.close();
+        leaderboard.close();
+        if (profiles != null) {
+            try {
+                profiles.close();
+            } catch (IOException e) {
+                System.err.println("Error closing profiles: " + e.getMessage());
+            }
+        }
+        if (history != null) {
+            try {
+                history.close();
+            } catch (IOException e) {
+                System.err.println("Error closing hand history: " + e.getMessage());
+            }
+        }
+        System.exit(0);
+    }
+
+    /**
+     * Open the profile store that keeps the best win streak; without it the
+     * streak only lasts for the session.
+     */
+    private ProfileStore openProfiles() {
+        try {
+            return new ProfileStore(Path.of("").toAbsolutePath());
+        } catch (IOException e) {
+            System.err.println("Error opening profiles: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Open the hand history next to the save file; the game runs without one if it fails.
+     */
+    private HandHistoryStore openHistory() {
+        try {
+            return new HandHistoryStore(Path.of("").toAbsolutePath());
+        } catch (IOException e) {
+            System.err.println("Error opening hand history: " + e.getMessage());
+            return null;
+        }
+    }
+
     // Helper methods to reduce JOptionPane repetition
     private void showSuccess(String message) {
         JOptionPane.showMessageDialog(this, message, "Success", JOptionPane.INFORMATION_MESSAGE);
@@ -843,6 +948,13 @@ public class BlackjackGUI extends JFrame implements ActionListener {
         JOptionPane.showMessageDialog(this, message, "Warning", JOptionPane.WARNING_MESSAGE);
     }
 
+    private void showSessionStats() {
+        JTextArea text = new JTextArea(stats.snapshot().format());
+        text.setEditable(false);
+        text.setFont(new Font(Font.MONOSPACED, Font.PLAIN, 13));
+        JOptionPane.showMessageDialog(this, new JScrollPane(text), "Session Stats", JOptionPane.PLAIN_MESSAGE);
+    }
+
     // ---------- GAME LOGIC / ACTIONS ----------
 
     private void placeBet(int amount) {
@@ -850,7 +962,7 @@ public class BlackjackGUI extends JFrame implements ActionListener {
 
         if (chips >= amount) {
             currentBet += amount;
-            chips -= amount;
+            changeChips(ChipLedger.EntryType.BET, -amount);
             updateStatsDisplay();
 
             // Play bet sound
@@ -868,19 +980,40 @@ public class BlackjackGUI extends JFrame implements ActionListener {
     private void clearBet() {
         if (roundStarted) return;
 
-        chips += currentBet;
+        changeChips(ChipLedger.EntryType.REFUND, currentBet);
         currentBet = 0;
         dealButton.setEnabled(false);
         updateStatsDisplay();
         statusLabel.setText("Place your bet!");
     }
 
+    /**
+     * Apply a chip movement and record it in the ledger.
+     */
+    private void changeChips(ChipLedger.EntryType type, int delta) {
+        chips += delta;
+        database.recordChips(type, delta);
+    }
+
+    /**
+     * Credit a settled round, keeping luck bonuses as separate ledger entries.
+     */
+    private void recordPayout(RoundResult result) {
+        int payout = result.payout();
+        if (result.outcome().isPlayerWin()) {
+            changeChips(ChipLedger.EntryType.WIN, payout);
+        } else if (result.outcome().isPush()) {
+            changeChips(ChipLedger.EntryType.PUSH, result.bet());
+            changeChips(ChipLedger.EntryType.LUCK_BONUS, payout - result.bet());
+        } else {
+            changeChips(ChipLedger.EntryType.LUCK_BONUS, payout);
+        }
+    }
+
     private void updateStatsDisplay() {
         chipsLabel.setText("Chips: $" + chips);
         betLabel.setText("Current Bet: $" + currentBet);
-        winStreakLabel.setText("Win Streak: " + winStreak);
-        // Save chips to database whenever stats update
-        database.saveChips(chips);
+        winStreakLabel.setText("Win Streak: " + winStreak + " (Best: " + bestStreak + ")");
     }
 
     private void dealInitialCards() {
@@ -889,17 +1022,13 @@ public class BlackjackGUI extends JFrame implements ActionListener {
             return;
         }
 
-        deck = new Deck();
-        deck.shuffle();
-        playerHand = new Hand();
-        dealerHand = new Hand();
+        engine.setDifficulty(difficulty);
+        engine.setLuckLevel(luckLevel);
+        engine.deal(currentBet);
         roundOver = false;
         roundStarted = true;
-
-        playerHand.addCard(deck.drawCard());
-        dealerHand.addCard(deck.drawCard());
-        playerHand.addCard(deck.drawCard());
-        dealerHand.addCard(deck.drawCard());
+        decisionStart = System.nanoTime();
+        hintGeneration++;
 
         updateLabels(false);
 
@@ -913,10 +1042,11 @@ public class BlackjackGUI extends JFrame implements ActionListener {
 
         // Enable playing
         hitButton.setEnabled(true);
+        hintButton.setEnabled(true);
         standButton.setEnabled(true);
 
         // Enable double down only if player has enough chips and exactly 2 cards
-        if (chips >= currentBet && playerHand.getCards().size() == 2) {
+        if (chips >= currentBet && engine.canDouble()) {
             doubleButton.setEnabled(true);
             statusLabel.setText("Hit, Double Down, or Stand?");
         } else {
@@ -926,6 +1056,9 @@ public class BlackjackGUI extends JFrame implements ActionListener {
     }
 
     private void updateLabels(boolean showDealerFull) {
+        Hand playerHand = engine.getPlayerHand();
+        Hand dealerHand = engine.getDealerHand();
+
         // PLAYER cards
         playerCardsPanel.removeAll();
         for (Card c : playerHand.getCards()) {
@@ -966,23 +1099,22 @@ public class BlackjackGUI extends JFrame implements ActionListener {
 
     private void playerHit() {
         if (roundOver || !roundStarted) return;
+        hintGeneration++;
 
-        Card drawn = deck.drawCard();
-        playerHand.addCard(drawn);
+        engine.hit();
         updateLabels(false);
 
         // After first hit, can't double down anymore
         doubleButton.setEnabled(false);
 
-        if (playerHand.isBust()) {
+        if (engine.getPlayerHand().isBust()) {
             roundOver = true;
             hitButton.setEnabled(false);
+            hintButton.setEnabled(false);
             standButton.setEnabled(false);
             updateLabels(true);
-            int lostAmount = currentBet;
-            endRound(false);
-            statusLabel.setText("You busted! Dealer wins. Lost $" + lostAmount);
-        } else if (playerHand.getValue() == 21) {
+            endRound(engine.settle());
+        } else if (engine.getPlayerHand().getValue() == 21) {
             playerStand();
         }
     }
@@ -993,28 +1125,25 @@ public class BlackjackGUI extends JFrame implements ActionListener {
             statusLabel.setText("Not enough chips to double!");
             return;
         }
+        hintGeneration++;
 
-        // Double the bet
-        chips -= currentBet;
-        currentBet *= 2;
+        // Double the bet and draw exactly one card
+        changeChips(ChipLedger.EntryType.BET, -currentBet);
+        engine.doubleDown();
+        currentBet = engine.getBet();
         updateStatsDisplay();
-
-        // Draw exactly one card
-        Card drawn = deck.drawCard();
-        playerHand.addCard(drawn);
         updateLabels(false);
 
         // Disable all actions
         hitButton.setEnabled(false);
+        hintButton.setEnabled(false);
         standButton.setEnabled(false);
         doubleButton.setEnabled(false);
 
-        if (playerHand.isBust()) {
+        if (engine.getPlayerHand().isBust()) {
             roundOver = true;
             updateLabels(true);
-            int lostAmount = currentBet;
-            endRound(false);
-            statusLabel.setText("You busted! Dealer wins. Lost $" + lostAmount);
+            endRound(engine.settle());
         } else {
             // Automatically stand after doubling
             dealerTurn();
@@ -1024,160 +1153,169 @@ public class BlackjackGUI extends JFrame implements ActionListener {
 
     private void playerStand() {
         if (roundOver || !roundStarted) return;
+        hintGeneration++;
 
         hitButton.setEnabled(false);
+        hintButton.setEnabled(false);
         standButton.setEnabled(false);
         doubleButton.setEnabled(false);
 
+        engine.stand();
         dealerTurn();
         roundOver = true;
     }
 
     /**
-     * 
+     * Suggest the best play for the cards left in the shoe. The evaluation
+     * runs off the EDT on a snapshot of the hand, and is dropped if the
+     * player has acted or a new round has been dealt by the time it finishes.
+     */
+    private void showHint() {
+        if (roundOver || !roundStarted || !engine.isPlayerTurn()) return;
+        if (engine.getPlayerHand().getValue() >= 21) return;
+
+        Hand hand = new Hand();
+        Hand playerHand = engine.getPlayerHand();
+        for (int i = 0; i < playerHand.getCardCount(); i++) {
+            hand.addCode(playerHand.getCode(i));
+        }
+        int upcard = engine.getDealerHand().getCode(0);
+        int[] unseen = CompositionEvaluator.unseenCounts(engine.getShoe(), engine.getDealerHand());
+        boolean canDouble = doubleButton.isEnabled();
+        if (hintEvaluator == null || hintEvaluator.getPolicy() != engine.getDealerPolicy()) {
+            hintEvaluator = new CompositionEvaluator(engine.getDealerPolicy());
+        }
+        CompositionEvaluator evaluator = hintEvaluator;
+
+        int generation = hintGeneration;
+        hintButton.setEnabled(false);
+        statusLabel.setText(THINKING);
+
+        new SwingWorker<CompositionEvaluator.Evaluation, Void>() {
+            @Override
+            protected CompositionEvaluator.Evaluation doInBackground() {
+                return evaluator.evaluate(hand, upcard, unseen);
+            }
+
+            @Override
+            protected void done() {
+                boolean playerTurn = roundStarted && !roundOver && engine.isPlayerTurn();
+                hintButton.setEnabled(playerTurn && engine.getPlayerHand().getValue() < 21);
+                if (generation != hintGeneration) {
+                    // The player acted in the meantime, so the hint is for a hand that is gone
+                    if (playerTurn && THINKING.equals(statusLabel.getText())) {
+                        statusLabel.setText(doubleButton.isEnabled() ? "Hit, Double Down, or Stand?" : "Your move: Hit or Stand?");
+                    }
+                    return;
+                }
+                try {
+                    CompositionEvaluator.Evaluation hint = get();
+                    String advice = switch (hint.best(canDouble)) {
+                        case HIT -> "Hit";
+                        case STAND -> "Stand";
+                        case DOUBLE_DOWN -> "Double Down";
+                    };
+                    String text = String.format("Hint: %s (EV stand %+.2f, hit %+.2f", advice, hint.stand(), hint.hit());
+                    if (canDouble) {
+                        text += String.format(", double %+.2f", hint.doubleDown());
+                    }
+                    statusLabel.setText(text + ")");
+                } catch (Exception e) {
+                    statusLabel.setText("Hint unavailable.");
+                }
+            }
+        }.execute();
+    }
+
+    /**
+     * Reveal the dealer's hand and let the engine draw dealer cards, one per
+     * timer tick so the draws are animated.
      */
     private void dealerTurn() {
         updateLabels(true);
 
-        if (playerHand.isBlackjack() || dealerHand.isBlackjack()) {
-            if (playerHand.isBlackjack() && dealerHand.isBlackjack()) {
-                int pushAmount = currentBet;
-                endRound(null);  // Push
-                statusLabel.setText("Both have Blackjack! It's a push. Returned $" + pushAmount);
-            } else if (playerHand.isBlackjack()) {
-                double luckMultiplier = 1.0;
-                if (luckLevel == 2) luckMultiplier = 1.1;
-                else if (luckLevel == 3) luckMultiplier = 1.25;
-                int winAmount = (int)(currentBet * 2.5 * luckMultiplier); // Blackjack pays 3:2 + luck bonus
-                endRound(true);
-                statusLabel.setText("Blackjack! You win $" + winAmount + "!");
-            } else {
-                int lostAmount = currentBet;
-                endRound(false);
-                statusLabel.setText("Dealer has Blackjack! You lose. Lost $" + lostAmount);
-            }
+        // Blackjacks are settled immediately, without dealer draws
+        if (!engine.dealerShouldHit()) {
+            finishDealerTurn();
             return;
         }
 
-        // Dealer hit threshold based on difficulty
-        final int dealerThreshold;
-        switch (difficulty) {
-            case 1 -> dealerThreshold = 16; // Easy: Dealer hits on 16 or less
-            case 2 -> dealerThreshold = 17; // Medium: Standard blackjack rules
-            case 3 -> dealerThreshold = 17; // Hard: Dealer is smarter with soft hands
-            default -> dealerThreshold = 17;
-        }
-
         // Use Timer to animate dealer draws without blocking the EDT
         Timer dealerTimer = new Timer(250, null);
         dealerTimer.addActionListener(e -> {
-            if (dealerHand.getValue() < dealerThreshold) {
-                Card drawn = deck.drawCard();
-                dealerHand.addCard(drawn);
+            if (engine.dealerShouldHit()) {
+                engine.dealerHit();
                 updateLabels(true);
             } else {
                 dealerTimer.stop();
-                // Check for soft 17 on hard difficulty
-                if (difficulty == 3 && dealerHand.getValue() == 17 && hasSoftAce()) {
-                    Card drawn = deck.drawCard();
-                    dealerHand.addCard(drawn);
-                    updateLabels(true);
-                }
                 finishDealerTurn();
             }
         });
         dealerTimer.start();
     }
 
-    private boolean hasSoftAce() {
-        for (Card c : dealerHand.getCards()) {
-            if (c.getRank().getValue() == 1) { // Ace
-                int valueWithoutAce = dealerHand.getValue() - 11;
-                if (valueWithoutAce + 1 <= 10) {
-                    return true;
-                }
-            }
-        }
-        return false;
-    }
-
     private void finishDealerTurn() {
-        int playerValue = playerHand.getValue();
-        int dealerValue = dealerHand.getValue();
-
         updateLabels(true);
+        endRound(engine.settle());
+    }
 
-        if (dealerHand.isBust()) {
-            double luckMultiplier = 1.0;
-            if (luckLevel == 2) luckMultiplier = 1.1;
-            else if (luckLevel == 3) luckMultiplier = 1.25;
-            int winAmount = (int)(currentBet * 2 * luckMultiplier);
-            endRound(true);
-            statusLabel.setText("Dealer busted! You win $" + winAmount + "!");
-        } else if (playerValue > dealerValue) {
-            double luckMultiplier = 1.0;
-            if (luckLevel == 2) luckMultiplier = 1.1;
-            else if (luckLevel == 3) luckMultiplier = 1.25;
-            int winAmount = (int)(currentBet * 2 * luckMultiplier);
-            endRound(true);
-            statusLabel.setText("You win! (" + playerValue + " vs " + dealerValue + ") Won $" + winAmount);
-        } else if (playerValue < dealerValue) {
-            int lostAmount = currentBet;
-            endRound(false);
-            statusLabel.setText("Dealer wins. (" + playerValue + " vs " + dealerValue + ") Lost $" + lostAmount);
-        } else {
-            int pushAmount = currentBet;
-            endRound(null);  // Push
-            statusLabel.setText("It's a push (tie). (" + playerValue + " vs " + dealerValue + ") Returned $" + pushAmount);
-        }
+    /**
+     * Status line shown for a settled round.
+     */
+    private String describeResult(RoundResult result) {
+        int playerValue = result.playerValue();
+        int dealerValue = result.dealerValue();
+        String score = "(" + playerValue + " vs " + dealerValue + ")";
+
+        return switch (result.outcome()) {
+            case PLAYER_BUST -> "You busted! Dealer wins. Lost $" + result.bet();
+            case BLACKJACK_PUSH -> "Both have Blackjack! It's a push. Returned $" + result.bet();
+            case PLAYER_BLACKJACK -> "Blackjack! You win $" + result.payout() + "!";
+            case DEALER_BLACKJACK -> "Dealer has Blackjack! You lose. Lost $" + result.bet();
+            case DEALER_BUST -> "Dealer busted! You win $" + result.payout() + "!";
+            case PLAYER_WIN -> "You win! " + score + " Won $" + result.payout();
+            case DEALER_WIN -> "Dealer wins. " + score + " Lost $" + result.bet();
+            case PUSH -> "It's a push (tie). " + score + " Returned $" + result.bet();
+        };
     }
 
-    private void endRound(Boolean playerWon) {
+    private void endRound(RoundResult result) {
         roundStarted = false;
 
-        if (playerWon == null) {
-            // Push - return bet
-            chips += currentBet;
-            AudioManager.getInstance().playPushSound(); // Play push sound
-            // Luck bonus: On Lucky or Very Lucky, sometimes win on a push
-            if (luckLevel >= 2) {
-                double pushWinChance = (luckLevel == 2) ? 0.15 : 0.25; // 15% for Lucky, 25% for Very Lucky
-                if (Math.random() < pushWinChance) {
-                    chips += currentBet; // Get an extra bet as bonus
-                    statusLabel.setText(statusLabel.getText() + " - Lucky bonus!");
-                }
-            }
-        } else if (playerWon) {
-            // Player wins
-            AudioManager.getInstance().playWinSound(); // Play win sound
-            double luckMultiplier = 1.0;
-            if (luckLevel == 2) {
-                luckMultiplier = 1.1; // 10% bonus on Lucky
-            } else if (luckLevel == 3) {
-                luckMultiplier = 1.25; // 25% bonus on Very Lucky
+        String status = describeResult(result);
+        recordPayout(result);
+        stats.recordRound(engine, result);
+        if (history != null) {
+            try {
+                history.record(HandHistoryStore.LOCAL_PLAYER, engine, result);
+            } catch (IOException e) {
+                System.err.println("Error saving hand history: " + e.getMessage());
             }
+        }
 
-            if (playerHand.isBlackjack()) {
-                chips += (int)(currentBet * 2.5 * luckMultiplier); // Blackjack pays 3:2 + luck bonus
-            } else {
-                chips += (int)(currentBet * 2 * luckMultiplier);
+        if (result.outcome().isPush()) {
+            AudioManager.getInstance().playPushSound(); // Play push sound
+            if (result.luckBonus()) {
+                status += " - Lucky bonus!";
             }
+        } else if (result.outcome().isPlayerWin()) {
+            AudioManager.getInstance().playWinSound(); // Play win sound
             winStreak++;
+            bestStreak = Math.max(bestStreak, winStreak);
         } else {
-            // Player loses
             AudioManager.getInstance().playLoseSound(); // Play lose sound
-            // Luck can sometimes save you from a loss
-            if (luckLevel == 3 && Math.random() < 0.1) { // 10% chance on Very Lucky
-                chips += currentBet; // Get bet back
-                statusLabel.setText(statusLabel.getText() + " - Very Lucky! Bet returned!");
+            if (result.luckBonus()) {
+                status += " - Very Lucky! Bet returned!";
             }
             winStreak = 0;
         }
 
         currentBet = 0;
+        leaderboard.recordRound(LOCAL_PROFILE, chips, result.outcome());
 
         // Reset for next round
         hitButton.setEnabled(false);
+        hintButton.setEnabled(false);
         standButton.setEnabled(false);
         doubleButton.setEnabled(false);
         dealButton.setEnabled(false);
@@ -1193,10 +1331,11 @@ public class BlackjackGUI extends JFrame implements ActionListener {
         dealerValueLabel.setText("");
 
         updateStatsDisplay();
+        statusLabel.setText(status);
 
         // Check if player is out of chips
         if (chips == 0) {
-            statusLabel.setText("Out of chips! Game Over.");
+            statusLabel.setText(status + " Out of chips! Game Over.");
             bet5Button.setEnabled(false);
             bet10Button.setEnabled(false);
             bet25Button.setEnabled(false);
@@ -1212,18 +1351,33 @@ public class BlackjackGUI extends JFrame implements ActionListener {
         }
     }
 
+    /**
+     * Time the player took for the action just chosen; the next decision starts now.
+     */
+    private void recordDecision() {
+        if (roundOver || !roundStarted) return;
+        long now = System.nanoTime();
+        stats.recordDecision(now - decisionStart);
+        decisionStart = now;
+    }
+
     @Override
     public void actionPerformed(ActionEvent e) {
         Object src = e.getSource();
 
         if (src == hitButton) {
+            recordDecision();
             playerHit();
         } else if (src == standButton) {
+            recordDecision();
             playerStand();
         } else if (src == doubleButton) {
+            recordDecision();
             playerDouble();
         } else if (src == dealButton) {
             dealInitialCards();
+        } else if (src == hintButton) {
+            showHint();
         } else if (src == bet5Button) {
             placeBet(5);
         } else if (src == bet10Button) {
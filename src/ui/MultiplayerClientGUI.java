@@ -7,6 +7,7 @@ import network.GameMessage;
 import javax.swing.*;
 import java.awt.*;
 import java.awt.event.KeyEvent;
+import java.util.ArrayList;
 import java.util.List;
 
 import static ui.UIConstants.*;
@@ -18,6 +19,7 @@ public class MultiplayerClientGUI extends JFrame implements GameClient.ClientLis
 
     private GameClient client;
     private final String serverIP;
+    private final String playerName;
 
     private final JLabel statusLabel;
     private final JLabel connectionLabel;
@@ -38,13 +40,23 @@ public class MultiplayerClientGUI extends JFrame implements GameClient.ClientLis
     private final RedButton bet50Button;
     private final RedButton clearBetButton;
 
-    private int chips = 100;
+    private int chips = 100; // Chips available to bet: the server balance minus any bet not yet taken
+    private int balance = 100; // Balance last reported by the server
     private int currentBet = 0;
     private boolean roundStarted = false;
+    private boolean betDebited = false; // Whether the server has taken the current bet
 
-    public MultiplayerClientGUI(String serverIP) {
+    // Cards on screen, kept to check snapshots against
+    private final List<Card> shownPlayerCards = new ArrayList<>();
+    private final List<Card> shownDealerCards = new ArrayList<>();
+
+    /**
+     * @param playerName  name the server keeps the chips under; empty for a guest
+     */
+    public MultiplayerClientGUI(String serverIP, String playerName) {
         super("Blackjack - Multiplayer Player");
         this.serverIP = serverIP;
+        this.playerName = playerName;
 
         setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
         setUndecorated(true);
@@ -224,7 +236,7 @@ public class MultiplayerClientGUI extends JFrame implements GameClient.ClientLis
     }
 
     private void connectToServer() {
-        client = new GameClient(this);
+        client = new GameClient(this, playerName.isEmpty() ? null : playerName);
         client.connect(serverIP);
     }
 
@@ -265,6 +277,7 @@ public class MultiplayerClientGUI extends JFrame implements GameClient.ClientLis
 
         // Send bet and wait for dealer to start game
         client.placeBet(currentBet);
+        client.requestDeal();
         roundStarted = true;
         disableBetting();
         dealButton.setEnabled(false);
@@ -274,20 +287,13 @@ public class MultiplayerClientGUI extends JFrame implements GameClient.ClientLis
     private void sendAction(GameMessage.PlayerAction action) {
         client.sendAction(action);
 
-        if (action == GameMessage.PlayerAction.DOUBLE_DOWN) {
-            if (chips >= currentBet) {
-                chips -= currentBet;
-                currentBet *= 2;
-                updateStatsDisplay();
-            }
-        }
-
         hitButton.setEnabled(false);
         standButton.setEnabled(false);
         doubleButton.setEnabled(false);
     }
 
     private void updateStatsDisplay() {
+        chips = betDebited ? balance : balance - currentBet;
         chipsLabel.setText("Chips: $" + chips);
         betLabel.setText("Current Bet: $" + currentBet);
     }
@@ -329,6 +335,14 @@ public class MultiplayerClientGUI extends JFrame implements GameClient.ClientLis
         });
     }
 
+    @Override
+    public void onReconnecting() {
+        SwingUtilities.invokeLater(() -> {
+            connectionLabel.setText("Reconnecting...");
+            connectionLabel.setForeground(CHIPS_GOLD);
+        });
+    }
+
     @Override
     public void onDisconnected() {
         SwingUtilities.invokeLater(() -> {
@@ -348,8 +362,29 @@ public class MultiplayerClientGUI extends JFrame implements GameClient.ClientLis
     }
 
     private void handleMessage(GameMessage message) {
+        // The server owns the balance; every message carries its current value
+        balance = message.getChipBalance();
+
         switch (message.getType()) {
-            case CONNECT_ACCEPT -> statusLabel.setText(message.getData());
+            case CONNECT_ACCEPT -> {
+                // After a reconnect the old session may have expired; its round is gone
+                if (roundStarted) {
+                    updatePlayerCards(List.of());
+                    updateDealerCards(List.of());
+                    endRound(message);
+                }
+                connectionLabel.setText("Connected");
+                connectionLabel.setForeground(WIN_STREAK_GREEN);
+                statusLabel.setText(message.getData());
+                updateStatsDisplay();
+            }
+
+            case RESUME_ACCEPT -> {
+                connectionLabel.setText("Connected");
+                connectionLabel.setForeground(WIN_STREAK_GREEN);
+                statusLabel.setText(message.getStatusMessage());
+                updateStatsDisplay();
+            }
 
             case TURN_CHANGED -> {
                 // Turn changed - show waiting message
@@ -363,19 +398,18 @@ public class MultiplayerClientGUI extends JFrame implements GameClient.ClientLis
             }
 
             case DEALER_CARD_DEALT -> {
-                // Dealer drew a card
+                // Dealer turned over the hole card or drew a card
                 if (message.getSingleCard() != null) {
                     addDealerCard(message.getSingleCard());
-                }
-                if (message.getDealerCards() != null && !message.getDealerCards().isEmpty()) {
-                    updateDealerCards(message.getDealerCards());
                     dealerValueLabel.setText("Value: " + message.getDealerValue());
                 }
                 statusLabel.setText(message.getStatusMessage());
             }
 
             case UPDATE_GAME_STATE -> {
-                // Initial cards dealt
+                // Initial cards dealt, and the bet taken from the balance
+                betDebited = true;
+                updateStatsDisplay();
                 updatePlayerCards(message.getCards());
                 playerValueLabel.setText("Value: " + message.getPlayerValue());
 
@@ -400,7 +434,11 @@ public class MultiplayerClientGUI extends JFrame implements GameClient.ClientLis
             }
 
             case CARD_DEALT -> {
-                // Player received a card
+                // Player received a card; a double down also reports the doubled bet
+                if (message.getBetAmount() > 0) {
+                    currentBet = message.getBetAmount();
+                }
+                updateStatsDisplay();
                 if (message.getSingleCard() != null) {
                     addPlayerCard(message.getSingleCard());
                     playerValueLabel.setText("Value: " + message.getPlayerValue());
@@ -424,36 +462,64 @@ public class MultiplayerClientGUI extends JFrame implements GameClient.ClientLis
             }
 
             case ROUND_END -> {
-                // Show all dealer cards
-                if (message.getDealerCards() != null && !message.getDealerCards().isEmpty()) {
-                    updateDealerCards(message.getDealerCards());
-                }
+                // The dealer's cards have all been shown by now
                 dealerValueLabel.setText("Value: " + message.getDealerValue());
 
                 statusLabel.setText(message.getStatusMessage());
 
-                // Update chips based on result
-                int winnings = message.getBetAmount();
-                if (winnings > 0) {
-                    chips += winnings;
-                } else {
-                    // Check for push
-                    if (message.getPlayerValue() == message.getDealerValue() &&
-                            !message.isPlayerBust() && !message.isDealerBust()) {
-                        chips += currentBet; // Return bet
-                    }
-                }
-
+                // Winnings are already in the balance the server sent
                 endRound(message);
             }
 
+            case SNAPSHOT -> applySnapshot(message);
+
             default -> {
             }
         }
         // Handle other message types that don't need client action
             }
 
+    /**
+     * Check the table against the server's snapshot, redrawing only the
+     * hands that differ from it.
+     */
+    private void applySnapshot(GameMessage snapshot) {
+        if (!snapshot.getCards().equals(shownPlayerCards)) {
+            updatePlayerCards(snapshot.getCards());
+        }
+        if (!snapshot.getCards().isEmpty()) {
+            playerValueLabel.setText("Value: " + snapshot.getPlayerValue());
+        }
+        if (!snapshot.getDealerCards().equals(shownDealerCards)) {
+            updateDealerCards(snapshot.getDealerCards());
+        }
+        if (!snapshot.getDealerCards().isEmpty()) {
+            dealerValueLabel.setText(snapshot.getDealerValue() < 0 ? "Value: ?" : "Value: " + snapshot.getDealerValue());
+        }
+
+        if (snapshot.isRoundOver()) {
+            // The round may have ended while events were missed, taking its result with them
+            if (roundStarted && betDebited) {
+                statusLabel.setText("Round over. Place your bet!");
+                endRound(snapshot);
+            }
+        } else {
+            roundStarted = true;
+            betDebited = true;
+            currentBet = snapshot.getBetAmount();
+            disableBetting();
+            dealButton.setEnabled(false);
+            updateStatsDisplay();
+            hitButton.setEnabled(snapshot.isPlayerTurn());
+            standButton.setEnabled(snapshot.isPlayerTurn());
+            doubleButton.setEnabled(snapshot.isPlayerTurn() && shownPlayerCards.size() == 2 && chips >= currentBet);
+        }
+        updateStatsDisplay();
+    }
+
     private void updatePlayerCards(List<Card> cards) {
+        shownPlayerCards.clear();
+        shownPlayerCards.addAll(cards);
         playerCardsPanel.removeAll();
         for (Card card : cards) {
             JLabel lbl = new JLabel(CardImages.getIcon(card));
@@ -465,6 +531,7 @@ public class MultiplayerClientGUI extends JFrame implements GameClient.ClientLis
     }
 
     private void addPlayerCard(Card card) {
+        shownPlayerCards.add(card);
         JLabel lbl = new JLabel(CardImages.getIcon(card));
         lbl.setToolTipText(card.toString());
         playerCardsPanel.add(lbl);
@@ -473,6 +540,8 @@ public class MultiplayerClientGUI extends JFrame implements GameClient.ClientLis
     }
 
     private void updateDealerCards(List<Card> cards) {
+        shownDealerCards.clear();
+        shownDealerCards.addAll(cards);
         dealerCardsPanel.removeAll();
         for (Card card : cards) {
             JLabel lbl = new JLabel(CardImages.getIcon(card));
@@ -484,6 +553,7 @@ public class MultiplayerClientGUI extends JFrame implements GameClient.ClientLis
     }
 
     private void addDealerCard(Card card) {
+        shownDealerCards.add(card);
         JLabel lbl = new JLabel(CardImages.getIcon(card));
         lbl.setToolTipText(card.toString());
         dealerCardsPanel.add(lbl);
@@ -494,6 +564,7 @@ public class MultiplayerClientGUI extends JFrame implements GameClient.ClientLis
     private void endRound(@SuppressWarnings("unused") GameMessage message) {
         roundStarted = false;
         currentBet = 0;
+        betDebited = false;
 
         hitButton.setEnabled(false);
         standButton.setEnabled(false);
@@ -518,10 +589,11 @@ public class MultiplayerClientGUI extends JFrame implements GameClient.ClientLis
 
     public static void main(String[] args) {
         if (args.length < 1) {
-            System.err.println("Usage: MultiplayerClientGUI <server-ip>");
+            System.err.println("Usage: MultiplayerClientGUI <server-ip> [player-name]");
             System.exit(1);
         }
         String serverIP = args[0];
-        SwingUtilities.invokeLater(() -> new MultiplayerClientGUI(serverIP));
+        String playerName = args.length > 1 ? args[1] : System.getProperty("user.name", "");
+        SwingUtilities.invokeLater(() -> new MultiplayerClientGUI(serverIP, playerName));
     }
 }
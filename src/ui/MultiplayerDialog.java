@@ -16,6 +16,7 @@ public class MultiplayerDialog extends JDialog {
 
     private Mode selectedMode = Mode.NONE;
     private String serverIP = "";
+    private String playerName = "";
     private int port = 7777;
 
     public MultiplayerDialog(JFrame parent) {
@@ -84,8 +85,16 @@ public class MultiplayerDialog extends JDialog {
         JTextField ipField = new JTextField(15);
         ipField.setText("localhost");
 
+        JLabel nameLabel = new JLabel("Name:");
+        nameLabel.setForeground(Color.WHITE);
+
+        JTextField nameField = new JTextField(10);
+        nameField.setText(System.getProperty("user.name", ""));
+
         joinInputPanel.add(ipLabel);
         joinInputPanel.add(ipField);
+        joinInputPanel.add(nameLabel);
+        joinInputPanel.add(nameField);
 
         RedButton joinButton = new RedButton("Join Game");
         joinButton.setPreferredSize(new Dimension(150, 40));
@@ -98,6 +107,7 @@ public class MultiplayerDialog extends JDialog {
                         JOptionPane.ERROR_MESSAGE);
                 return;
             }
+            playerName = nameField.getText().trim();
             selectedMode = Mode.JOIN;
             dispose();
         });
@@ -140,6 +150,13 @@ public class MultiplayerDialog extends JDialog {
         return serverIP;
     }
 
+    /**
+     * Name to keep the player's chips under; empty to play as a guest.
+     */
+    public String getPlayerName() {
+        return playerName;
+    }
+
     public int getPort() {
         return port;
     }
@@ -3,6 +3,7 @@ package ui;
 import javax.swing.*;
 import java.awt.*;
 import java.awt.event.ActionEvent;
+import logic.GameRandom;
 
 public class PaymentDialog extends JDialog {
 
@@ -163,7 +164,7 @@ public class PaymentDialog extends JDialog {
 
     private void fillTestCardData() {
         // Fill with a random test card
-        int randomIndex = (int)(Math.random() * TEST_CARDS.length);
+        int randomIndex = GameRandom.current().nextInt(TEST_CARDS.length);
         cardNumberField.setText(TEST_CARDS[randomIndex]);
         expiryField.setText("12/25");
         cvvField.setText("123");
@@ -255,7 +256,7 @@ public class PaymentDialog extends JDialog {
                     progressDialog.dispose();
 
                     // Simulate random success/failure for non-test cards
-                    boolean success = isTestCard || Math.random() > 0.2; // 80% success for non-test
+                    boolean success = isTestCard || GameRandom.current().nextDouble() > 0.2; // 80% success for non-test
 
                     if (success) {
                         int selectedIndex = chipPackageCombo.getSelectedIndex();